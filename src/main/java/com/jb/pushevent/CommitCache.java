@@ -0,0 +1,174 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Commit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the created and serialized commits of a repository, so that a commit which is part of several pushes, e.g.
+ * after a merge, during a backfill or a redelivery, is neither created nor serialized again. The payload of such a push
+ * contains a copy of the serialized bytes of the commit.
+ * <p>
+ * The size of the cache is limited by {@link PushEventConfiguration#getCommitCacheBytes()}. A commit is only reused
+ * with the configuration it was created with, so a changed configuration never sends commits in an outdated shape. The
+ * {@link com.jb.pushevent.user.AuthorResolver} forgets all commits when a user is changed, because the commits contain
+ * the resolved user of their author.
+ */
+@Singleton
+public class CommitCache {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CommitCache.class);
+
+  static final long EXPIRY_MINUTES = 10;
+
+  private final AtomicReference<Store> store = new AtomicReference<>(new Store(0));
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param repositoryId  id of the repository
+   * @param commitId      id of the commit
+   * @param configuration effective configuration of the repository
+   * @return the commit created for the configuration or null
+   */
+  public Commit get(String repositoryId, String commitId, PushEventConfiguration configuration) {
+    Cache<String, CachedCommit> commits = store(configuration);
+    if (commits == null) {
+      return null;
+    }
+    CachedCommit cached = commits.getIfPresent(key(repositoryId, commitId));
+    if (cached == null || cached.configuration != configuration) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return cached.commit;
+  }
+
+  /**
+   * serializes the commit and keeps it, the commit must not be modified afterwards
+   *
+   * @param repositoryId  id of the repository
+   * @param commit        completely created commit
+   * @param configuration effective configuration of the repository which was used to create the commit
+   */
+  public void put(String repositoryId, Commit commit, PushEventConfiguration configuration) {
+    Cache<String, CachedCommit> commits = store(configuration);
+    if (commits == null) {
+      return;
+    }
+    try {
+      long size = commit.preserialize();
+      commits.put(key(repositoryId, commit.getCommitId()), new CachedCommit(commit, configuration, size));
+    } catch (IOException e) {
+      LOG.warn("could not serialize commit {} of repository {}", commit.getCommitId(), repositoryId, e);
+    }
+  }
+
+  /**
+   * forgets all commits, e.g. because the users of their authors may have changed
+   */
+  public void invalidateAll() {
+    Cache<String, CachedCommit> commits = store.get().commits;
+    if (commits != null) {
+      commits.invalidateAll();
+    }
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return approximate size of the cached commits in bytes
+   */
+  public long getSize() {
+    long size = 0;
+    Cache<String, CachedCommit> commits = store.get().commits;
+    if (commits != null) {
+      for (CachedCommit cached : commits.asMap().values()) {
+        size += cached.size;
+      }
+    }
+    return size;
+  }
+
+  private Cache<String, CachedCommit> store(PushEventConfiguration configuration) {
+    long maxBytes = configuration.getCommitCacheBytes();
+    Store current = store.get();
+    if (current.maxBytes != maxBytes) {
+      // a changed limit starts with an empty cache, the commits would be created again for the new configuration anyway
+      Store created = new Store(maxBytes);
+      current = store.compareAndSet(current, created) ? created : store.get();
+    }
+    return current.commits;
+  }
+
+  private static String key(String repositoryId, String commitId) {
+    return repositoryId + "/" + commitId;
+  }
+
+  private static class Store {
+
+    private final long maxBytes;
+    private final Cache<String, CachedCommit> commits;
+
+    Store(long maxBytes) {
+      this.maxBytes = maxBytes;
+      this.commits = maxBytes > 0 ? CacheBuilder.newBuilder()
+        .maximumWeight(maxBytes)
+        .weigher((String key, CachedCommit cached) -> (int) Math.min(Integer.MAX_VALUE, cached.size + key.length()))
+        .expireAfterWrite(EXPIRY_MINUTES, TimeUnit.MINUTES)
+        .build() : null;
+    }
+  }
+
+  private static class CachedCommit {
+
+    private final Commit commit;
+    private final PushEventConfiguration configuration;
+    private final long size;
+
+    CachedCommit(Commit commit, PushEventConfiguration configuration, long size) {
+      this.commit = commit;
+      this.configuration = configuration;
+      this.size = size;
+    }
+  }
+}
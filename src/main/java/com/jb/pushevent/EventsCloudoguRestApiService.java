@@ -23,15 +23,16 @@
  */
 package com.jb.pushevent;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Strings;
+import com.jb.pushevent.config.PushEventConfiguration;
 import com.jb.pushevent.config.PushEventConfigurationStore;
-import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.signing.PayloadSigner;
 import lombok.extern.slf4j.Slf4j;
 import sonia.scm.net.ahc.AdvancedHttpClient;
 import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
 import sonia.scm.net.ahc.AdvancedHttpResponse;
 
+import javax.ws.rs.core.MediaType;
 import java.io.IOException;
 
 @Slf4j
@@ -41,36 +42,68 @@ public class EventsCloudoguRestApiService {
   private String token = "";
 
   private final AdvancedHttpClient httpClient;
+  private final PayloadSigner signer;
 
   public EventsCloudoguRestApiService(AdvancedHttpClient httpClient, PushEventConfigurationStore pushEventConfigurationStore) {
+    this(httpClient, pushEventConfigurationStore.get());
+  }
+
+  /**
+   * creates a service for the url and token of the configuration, later changes of the configuration are not applied
+   *
+   * @param httpClient    client for the requests
+   * @param configuration configuration with the url and token of the endpoint
+   */
+  public EventsCloudoguRestApiService(AdvancedHttpClient httpClient, PushEventConfiguration configuration) {
     this.httpClient = httpClient;
-    String configUrl = pushEventConfigurationStore.get().getUrl();
+    String configUrl = configuration.getUrl();
     if (!Strings.isNullOrEmpty(configUrl)) {
       this.endpointUrl = configUrl;
     }
-    String configToken = pushEventConfigurationStore.get().getToken();
+    String configToken = configuration.getToken();
     if (!Strings.isNullOrEmpty(configToken)) {
       this.token = configToken;
     }
+    this.signer = PayloadSigner.of(configuration.getSigningSecret());
   }
 
-  private AdvancedHttpRequestWithBody createPutRequest(JsonNode payload) {
+  private AdvancedHttpRequestWithBody createPutRequest(byte[] payload) {
     final AdvancedHttpRequestWithBody putRequest = this.httpClient.put(endpointUrl + "event/" + System.currentTimeMillis());
-    putRequest.jsonContent(payload);
+    putRequest.contentType(MediaType.APPLICATION_JSON);
+    putRequest.rawContent(payload);
     putRequest.header("Authorization", "Bearer " + token);
+    if (signer != null) {
+      long timestamp = System.currentTimeMillis() / 1000;
+      putRequest.header(PayloadSigner.TIMESTAMP_HEADER, timestamp);
+      putRequest.header(PayloadSigner.SIGNATURE_HEADER, signer.sign(timestamp, payload));
+    }
     return putRequest;
   }
 
-  public void sendPush(Event eventDto) {
-    AdvancedHttpRequestWithBody putRequest = createPutRequest(eventDto.toJsonNode());
+  /**
+   * sends an already serialized event to the endpoint, signed with the signing secret of the configuration. The method
+   * does not keep any state, so it can be called by several threads at the same time.
+   *
+   * @param payload serialized event
+   * @return null if the endpoint accepted the event, otherwise the reason of the failure
+   */
+  public String deliver(byte[] payload) {
+    AdvancedHttpRequestWithBody putRequest = createPutRequest(payload);
 
     try {
       AdvancedHttpResponse putPushResponse = putRequest.request();
       if (!putPushResponse.isSuccessful()) {
         log.error("Push was not transmitted to endpoint");
+        return "endpoint responded with status " + putPushResponse.getStatus();
       }
+      return null;
     } catch (IOException e) {
       log.error("An IOException occurred during the processing of an event. The end point may not be reachable. You may check your plugin configuration. " + e.getMessage());
+      return e.getClass().getSimpleName() + ": " + e.getMessage();
     }
   }
+
+  public String getEndpointUrl() {
+    return endpointUrl;
+  }
 }
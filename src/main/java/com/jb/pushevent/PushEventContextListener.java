@@ -0,0 +1,82 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent;
+
+import com.jb.pushevent.backfill.BackfillService;
+import com.jb.pushevent.deadletter.DeadLetterService;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.PushCoalescer;
+import com.jb.pushevent.journal.DeliveryJournal;
+import com.jb.pushevent.sampling.EventSampler;
+import com.jb.pushevent.stats.StageLatencyLogger;
+import sonia.scm.plugin.Extension;
+
+import javax.inject.Inject;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Resumes the background workers of the plugin which have work left from a previous run when SCM-Manager starts and
+ * stops all workers when it shuts down.
+ */
+@Extension
+public class PushEventContextListener implements ServletContextListener {
+
+  private final PushCoalescer pushCoalescer;
+  private final EventDispatcher eventDispatcher;
+  private final BackfillService backfillService;
+  private final DeliveryJournal deliveryJournal;
+  private final DeadLetterService deadLetterService;
+  private final StageLatencyLogger stageLatencyLogger;
+  private final EventSampler eventSampler;
+
+  @Inject
+  public PushEventContextListener(PushCoalescer pushCoalescer, EventDispatcher eventDispatcher, BackfillService backfillService, DeliveryJournal deliveryJournal, DeadLetterService deadLetterService, StageLatencyLogger stageLatencyLogger, EventSampler eventSampler) {
+    this.pushCoalescer = pushCoalescer;
+    this.eventDispatcher = eventDispatcher;
+    this.backfillService = backfillService;
+    this.deliveryJournal = deliveryJournal;
+    this.deadLetterService = deadLetterService;
+    this.stageLatencyLogger = stageLatencyLogger;
+    this.eventSampler = eventSampler;
+  }
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    // the other workers are started on demand
+    eventDispatcher.resume();
+    deliveryJournal.resume();
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    eventSampler.stop();
+    backfillService.stop();
+    deadLetterService.stop();
+    pushCoalescer.stop();
+    eventDispatcher.stop();
+    deliveryJournal.stop();
+    stageLatencyLogger.stop();
+  }
+}
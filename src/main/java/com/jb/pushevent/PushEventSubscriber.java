@@ -24,17 +24,23 @@
 package com.jb.pushevent;
 
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.github.legman.Subscribe;
-import com.google.common.collect.Iterables;
+import com.jb.pushevent.config.FileChangesMode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
 import com.jb.pushevent.config.PushEventConfigurationStore;
-import com.jb.pushevent.dto.Commit;
-import com.jb.pushevent.dto.Event;
-import com.jb.pushevent.dto.FileChanges;
+import com.jb.pushevent.delivery.PushCoalescer;
+import com.jb.pushevent.dto.FieldProjection;
 import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.execution.ProcessingBudget;
+import com.jb.pushevent.execution.PushEventExecutor;
 import com.jb.pushevent.pathcollect.PathCollectFactory;
 import com.jb.pushevent.pathcollect.PathCollector;
+import com.jb.pushevent.refs.RefEventPublisher;
+import com.jb.pushevent.sampling.EventSampler;
+import com.jb.pushevent.stats.DegradationStatistics;
+import com.jb.pushevent.stats.StageLatencies;
+import com.jb.pushevent.user.AuthorResolver;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.shiro.SecurityUtils;
 import org.apache.shiro.subject.Subject;
@@ -42,7 +48,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import sonia.scm.EagerSingleton;
 import sonia.scm.SCMContextProvider;
-import sonia.scm.net.ahc.AdvancedHttpClient;
 import sonia.scm.plugin.Extension;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.PostReceiveRepositoryHookEvent;
@@ -53,11 +58,9 @@ import sonia.scm.repository.api.HookFeature;
 import sonia.scm.security.Role;
 
 import javax.inject.Inject;
-import javax.inject.Provider;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.List;
+import java.util.function.Supplier;
 
 @Slf4j
 @Extension
@@ -65,43 +68,91 @@ import java.util.List;
 public class PushEventSubscriber {
 
   private final PathCollectFactory pathCollectorFactory;
-  private final Provider<AdvancedHttpClient> httpClientProvider;
 
   private static final Logger logger = LoggerFactory.getLogger(PushEventSubscriber.class);
   private final PushEventConfigurationStore pushEventConfigurationStore;
+  private final PushCoalescer pushCoalescer;
+  private final PushEventExecutor executor;
+  private final DegradationStatistics degradationStatistics;
+  private final AuthorResolver authorResolver;
+  private final StageLatencies stageLatencies;
+  private final PushEventConfigurationResolver configurationResolver;
+  private final EventSampler eventSampler;
+  private final CommitCache commitCache;
+  private final RefEventPublisher refEventPublisher;
 
   @Inject
-  public PushEventSubscriber(PathCollectFactory pathCollectorFactory, Provider<AdvancedHttpClient> httpClientProvider, PushEventConfigurationStore pushEventConfigurationStore) {
+  public PushEventSubscriber(PathCollectFactory pathCollectorFactory, PushEventConfigurationStore pushEventConfigurationStore, PushCoalescer pushCoalescer, PushEventExecutor executor, DegradationStatistics degradationStatistics, AuthorResolver authorResolver, StageLatencies stageLatencies, PushEventConfigurationResolver configurationResolver, EventSampler eventSampler, CommitCache commitCache, RefEventPublisher refEventPublisher) {
     this.pathCollectorFactory = pathCollectorFactory;
-    this.httpClientProvider = httpClientProvider;
     this.pushEventConfigurationStore = pushEventConfigurationStore;
+    this.pushCoalescer = pushCoalescer;
+    this.executor = executor;
+    this.degradationStatistics = degradationStatistics;
+    this.authorResolver = authorResolver;
+    this.stageLatencies = stageLatencies;
+    this.configurationResolver = configurationResolver;
+    this.eventSampler = eventSampler;
+    this.commitCache = commitCache;
+    this.refEventPublisher = refEventPublisher;
   }
 
   @Subscribe
   public void onEvent(PostReceiveRepositoryHookEvent event) {
-    if (pushEventConfigurationStore.get().getActive()) {
+    long received = System.nanoTime();
+    Repository repository = event.getRepository();
+    // the settings of the repository are applied, so that the whole processing uses the effective configuration
+    PushEventConfiguration configuration = repository != null ? configurationResolver.resolve(repository.getId()) : pushEventConfigurationStore.get();
+    if (configuration.getActive()) {
+      // sampled out pushes are dropped before the repository is accessed
+      if (repository != null && !eventSampler.accept(repository, configuration)) {
+        log.debug("Event of repository {} was sampled out", repository.getId());
+        return;
+      }
       log.info("Propagate event: " + event.toString());
-      handlePushEvent(event);
+      // the subject is bound to the current thread, so it has to be resolved before the push is processed
+      Subject subject = SecurityUtils.getSubject();
+      ProcessingBudget budget = new ProcessingBudget(received, configuration.getProcessingBudgetMillis(), configuration.getDegradationMode());
+      Runnable task = () -> handlePushEvent(event, configuration, subject, budget);
+      // if the pool is saturated the hook thread processes the push itself, so that no push is lost
+      if (repository != null) {
+        // the pushes of a repository are processed one after another, so that their events keep the order of the pushes
+        executor.executeInOrder(repository.getId(), task, configuration);
+      } else {
+        executor.executeOrRun(task, configuration);
+      }
+    } else if (pushEventConfigurationStore.get().getActive()) {
+      log.debug("Event was not propagated as the repository {} is excluded", repository.getId());
     } else {
       log.warn("Event was not propagated as the event propagation is turned off. If you want to propagate events go to the settings of this plugin and mark it as active.");
     }
   }
 
-  private void handlePushEvent(RepositoryHookEvent event) {
+  private void handlePushEvent(RepositoryHookEvent event, PushEventConfiguration configuration, Subject subject, ProcessingBudget budget) {
     Repository repository = event.getRepository();
     if (repository != null) {
-      Iterable<Changeset> changesets = event.getContext().getChangesetProvider().getChangesets();
+      HookContext context = event.getContext();
+      Supplier<String> username = () -> resolveUsername(subject);
+      boolean refEvents = configuration.isSendRefEvents();
+      if (refEvents) {
+        refEventPublisher.publishRefChanges(repository, context, username, configuration);
+        if (RefEventPublisher.isRefOnly(context)) {
+          // no branch was created or moved, so there are no commits and the changesets are not read at all
+          return;
+        }
+      }
+      // the provider may be lazily backed by the repository, so it is only iterated once
+      Iterator<Changeset> changesets = context.getChangesetProvider().getChangesets().iterator();
 
-      if (!Iterables.isEmpty(changesets)) {
+      if (changesets.hasNext()) {
         try {
-          Event eventDto = handlePush(repository, changesets, event);
-          // send Push to REST-Api
-          EventsCloudoguRestApiService restApiService = new EventsCloudoguRestApiService(httpClientProvider.get(), pushEventConfigurationStore);
-          restApiService.sendPush(eventDto);
+          // queue Push for the delivery to the REST-Api, oversized pushes are queued in chunks while they are created
+          createPushesFromEvent(repository, changesets, event, subject, configuration, budget, push -> pushCoalescer.submit(push, configuration));
         } catch (IOException e) {
           log.error("An IOException occurred during the processing of an event. The end point may not be reachable. You may check your plugin configuration. " + e.getMessage());
+        } catch (RuntimeException e) {
+          log.error("Could not process push to repository " + repository.getId(), e);
         }
-      } else {
+      } else if (!refEvents || refEventPublisher.publishUpdatedBranches(repository, context, username, configuration) == 0) {
         logger.warn("received hook without changesets");
       }
     } else {
@@ -109,73 +160,93 @@ public class PushEventSubscriber {
     }
   }
 
-  private Event handlePush(Repository repository, Iterable<Changeset> changesets, RepositoryHookEvent event) throws IOException {
-    Push push = createPushDtoFromEvent(repository, changesets, event,  SecurityUtils.getSubject());
-    Event eventDto = new Event(new ObjectMapper().createObjectNode());
-    eventDto.setData(push);
-    eventDto.setId("id");
-    eventDto.setTime("time");
-    return eventDto;
+  void createPushesFromEvent(Repository repository, Iterator<Changeset> changesets, RepositoryHookEvent event, Subject subject, PushEventConfiguration configuration, ProcessingBudget budget, PushConsumer consumer) throws IOException {
+    String username = resolveUsername(subject);
+    PathCollector collector = collectsPaths(configuration) ? createPathCollector(event.getContext(), repository) : null;
+    PushStream stream = new PushStream(repository, changesets, username, collector, authorResolver, stageLatencies, commitCache, configuration, budget);
+    boolean deferred = false;
+    try {
+      if (!stream.process(consumer)) {
+        // the stream keeps the collector open until the remainder is processed, the remainder is processed before the
+        // following pushes of the repository
+        executor.executeNext(repository.getId(), () -> processDeferred(repository, stream, consumer), configuration);
+        deferred = true;
+      }
+    } finally {
+      if (!deferred) {
+        stream.close();
+      }
+      if (budget.isLimited()) {
+        degradationStatistics.record(budget.getDegradation());
+      }
+    }
   }
 
-  Push createPushDtoFromEvent(Repository repository, Iterable<Changeset> changesets, RepositoryHookEvent event, Subject subject) throws IOException {
-    ObjectNode objectNode = new ObjectMapper().createObjectNode();
-    Push push = new Push(objectNode);
-
-    push.setRepositoryId(repository.getId());
-    push.setRepositoryName(repository.getName());
-    push.setRepositoryNamespace(repository.getNamespace());
-    // push.setInstanceId("NO YET IMPLEMENTED"); Maybe a InstanceId can be used later
+  private void processDeferred(Repository repository, PushStream stream, PushConsumer consumer) {
+    try (PushStream deferred = stream) {
+      deferred.process(consumer);
+    } catch (IOException | RuntimeException e) {
+      log.error("Could not process the deferred commits of a push to repository " + repository.getId(), e);
+    }
+  }
 
+  private String resolveUsername(Subject subject) {
+    String username = null;
     if (subject.hasRole(Role.USER)) {
-      String username = (String) subject.getPrincipal();
+      username = (String) subject.getPrincipal();
 
-      if (username != null && !username.equals("")) {
-        push.setUser(username);
-      } else {
+      if (username == null || username.equals("")) {
         logger.warn("username is null or empty");
       }
     } else {
       logger.warn("subject has no user role, skip");
     }
+    return username;
+  }
 
-    Iterator<Changeset> changesetsIter = changesets.iterator();
-
-    while (changesetsIter.hasNext()) {
-      Changeset changeset = changesetsIter.next();
-
-      Commit commit = new Commit(new ObjectMapper().createObjectNode());
-
-      commit.setCommitId(changeset.getId());
-      commit.setCommitMessage(changeset.getDescription());
-      commit.setDateCommitted(changeset.getCreationDate());
-      // TODO find SCMM User
-      commit.setAuthor(changeset.getAuthor().toString());
-      commit.setBranches(changeset.getBranches());
-
-      FileChanges fileChanges = collectPaths(event.getContext(), repository, changeset);
-
-      commit.setFilesChanged(fileChanges);
+  /**
+   * creates the pushes for the given changesets the same way as for a received hook, the commits are split into chunks
+   * of at most
+   * {@link PushEventConfiguration#getMaxCommitsPerEvent()} commits and about
+   * {@link PushEventConfiguration#getMaxEventBytes()} bytes. Every chunk is passed to the consumer as soon as it is
+   * complete, so that only a single chunk is held in memory.
+   *
+   * @param repository    repository of the changesets
+   * @param changesets    changesets of the push
+   * @param username      the user who pushed or null if unknown
+   * @param collector     collector for the changed paths or null if paths cannot be collected
+   * @param configuration configuration of the plugin
+   * @param consumer      receives the push or its chunks in order
+   * @throws IOException if the changed paths could not be read or the consumer failed
+   */
+  public void createPushes(Repository repository, Iterable<Changeset> changesets, String username, PathCollector collector, PushEventConfiguration configuration, PushConsumer consumer) throws IOException {
+    new PushStream(repository, changesets.iterator(), username, collector, authorResolver, stageLatencies, commitCache, configuration, ProcessingBudget.UNLIMITED).process(consumer);
+  }
 
-      push.addCommit(commit);
-      // last commit reached
-      if (!changesetsIter.hasNext()) {
-        push.setDatePushed(commit.getDateCommitted());
-      }
-    }
-    push.setCommits(push.getCommits()); // this is necessary as addCommit does not update the json-node
-    return push;
+  /**
+   * @param configuration configuration of the plugin
+   * @return true if the changed paths are part of the payload and have to be looked up
+   */
+  public static boolean collectsPaths(PushEventConfiguration configuration) {
+    FieldProjection projection = configuration.getFieldProjection();
+    FileChangesMode fileChangesMode = configuration.getFileChangesMode();
+    return (fileChangesMode.includesPerCommit() && projection.includes("commits.fileChanges"))
+      || (fileChangesMode.includesAggregated() && projection.includes("fileChanges"));
   }
 
-  private FileChanges collectPaths(HookContext eventContext, Repository repository, Changeset changeset) throws IOException {
+  private PathCollector createPathCollector(HookContext eventContext, Repository repository) {
     if (eventContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)) {
-      try (PathCollector collector = pathCollectorFactory.create(repository)) {
-        List<Changeset> tmpList = new ArrayList<>();
-        tmpList.add(changeset);
-        return collector.collectAll(tmpList);
-      }
+      return pathCollectorFactory.create(repository);
     }
-    return new FileChanges(new ObjectMapper().createObjectNode()); //empty object
+    return null;
+  }
+
+  /**
+   * receives created pushes
+   */
+  @FunctionalInterface
+  public interface PushConsumer {
+    void accept(Push push) throws IOException;
   }
 
 }
@@ -0,0 +1,309 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.jb.pushevent.config.DegradationMode;
+import com.jb.pushevent.config.FileChangesMode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Commit;
+import com.jb.pushevent.dto.FieldProjection;
+import com.jb.pushevent.dto.FileChanges;
+import com.jb.pushevent.dto.PreserializedNode;
+import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.execution.ProcessingBudget;
+import com.jb.pushevent.pathcollect.NetFileChanges;
+import com.jb.pushevent.pathcollect.PathCollector;
+import com.jb.pushevent.stats.PipelineStage;
+import com.jb.pushevent.stats.StageLatencies;
+import com.jb.pushevent.user.AuthorResolver;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Creates the pushes for the changesets of a single push in one pass.
+ * <p>
+ * The commits are appended to the current push while they are read. Once the push reaches the configured limits it is
+ * passed to the consumer as a chunk and a new push is started. If the processing budget is exceeded, the remaining
+ * commits are degraded or the stream stops, so that the remainder can be processed later by calling
+ * {@link #process} again.
+ */
+class PushStream implements Closeable {
+
+  private final Repository repository;
+  private final Iterator<Changeset> changesets;
+  private final String username;
+  private final PathCollector collector;
+  private final AuthorResolver authorResolver;
+  private final StageLatencies latencies;
+  private final CommitCache commitCache;
+  private final PushEventConfiguration configuration;
+  private final ProcessingBudget budget;
+  private final int maxCommits;
+  private final long maxBytes;
+
+  private final FieldProjection projection;
+  private final FieldProjection commitProjection;
+  private final boolean perCommitPaths;
+  private final NetFileChanges aggregate;
+  private final boolean cacheable;
+
+  private Push push;
+  private String pushId;
+  private int chunkIndex;
+  private int chunkCommits;
+  private long chunkBytes;
+  private Long lastCommitDate;
+  private boolean deferred;
+
+  /**
+   * @param repository     repository of the changesets
+   * @param changesets     changesets of the push
+   * @param username       the user who pushed or null if unknown
+   * @param collector      collector for the changed paths or null if paths cannot be collected, it is closed with the stream
+   * @param authorResolver resolves the users of the authors
+   * @param latencies      records the latencies of the processing stages
+   * @param commitCache    commits which were already created for previous pushes
+   * @param configuration  configuration of the plugin
+   * @param budget         processing budget of the push
+   */
+  PushStream(Repository repository, Iterator<Changeset> changesets, String username, PathCollector collector, AuthorResolver authorResolver, StageLatencies latencies, CommitCache commitCache, PushEventConfiguration configuration, ProcessingBudget budget) {
+    this.repository = repository;
+    this.changesets = changesets;
+    this.username = username;
+    this.collector = collector;
+    this.authorResolver = authorResolver;
+    this.latencies = latencies;
+    this.commitCache = commitCache;
+    this.configuration = configuration;
+    this.budget = budget;
+    this.maxCommits = configuration.getMaxCommitsPerEvent();
+    this.maxBytes = configuration.getMaxEventBytes();
+
+    this.projection = configuration.getFieldProjection();
+    this.commitProjection = projection.nested("commits");
+    // paths are only looked up if they are part of the payload
+    FileChangesMode fileChangesMode = configuration.getFileChangesMode();
+    this.perCommitPaths = fileChangesMode.includesPerCommit() && projection.includes("commits.fileChanges");
+    this.aggregate = fileChangesMode.includesAggregated() && projection.includes("fileChanges") ? new NetFileChanges() : null;
+    // a cached commit can only contribute to the net changes of the push if it contains its file changes, commits
+    // which are not part of the payload are not worth caching
+    this.cacheable = projection.includes("commits") && (aggregate == null || perCommitPaths);
+    if (collector != null) {
+      collector.setRenameDetection(configuration.getRenameDetection());
+    }
+
+    this.push = createEmptyPush();
+  }
+
+  /**
+   * processes the remaining changesets. If the budget is exceeded with {@link DegradationMode#DEFER}, the processed
+   * commits are passed to the consumer as a chunk and the processing stops. The next call processes the remainder
+   * without a budget.
+   *
+   * @param consumer receives the chunks and the last push in order
+   * @return true if all changesets are processed, false if the remainder is deferred
+   * @throws IOException if the changed paths could not be read or the consumer failed
+   */
+  boolean process(PushEventSubscriber.PushConsumer consumer) throws IOException {
+    // the iteration includes hasNext, because lazy providers read the next page there
+    long start = latencies.start();
+    while (changesets.hasNext()) {
+      DegradationMode degradation = deferred ? null : budget.check();
+      if (degradation == DegradationMode.DEFER) {
+        deferred = true;
+        if (chunkCommits > 0) {
+          emitChunk(consumer);
+        }
+        return false;
+      }
+
+      Changeset changeset = changesets.next();
+      latencies.record(PipelineStage.CHANGESET_ITERATION, start);
+      Commit commit = createCommit(changeset, degradation);
+
+      long commitBytes = maxBytes > 0 ? commit.serializedSize() : 0;
+      if (chunkCommits > 0 && ((maxCommits > 0 && chunkCommits >= maxCommits) || (maxBytes > 0 && chunkBytes + commitBytes > maxBytes))) {
+        emitChunk(consumer);
+      }
+
+      push.addCommit(commit);
+      chunkCommits++;
+      chunkBytes += commitBytes;
+      lastCommitDate = commit.getDateCommitted();
+      start = latencies.start();
+    }
+    completePush();
+    if (pushId != null) {
+      push.setChunk(pushId, chunkIndex, true);
+    }
+    // the net changes are only known at the end, so they are part of the last chunk
+    if (aggregate != null) {
+      push.setFileChanges(aggregate.toFileChanges());
+    }
+    consumer.accept(push);
+    return true;
+  }
+
+  private Commit createCommit(Changeset changeset, DegradationMode degradation) throws IOException {
+    long start = latencies.start();
+    if (cacheable) {
+      Commit cached = commitCache.get(repository.getId(), changeset.getId(), configuration);
+      if (cached != null) {
+        Commit commit = reuse(cached, changeset);
+        latencies.record(PipelineStage.DTO_BUILD, start);
+        return commit;
+      }
+    }
+    Commit commit = new Commit(new PreserializedNode(), commitProjection);
+
+    // id and date are always set, they are required to merge pushes
+    commit.setCommitId(changeset.getId());
+    commit.setDateCommitted(changeset.getCreationDate());
+    if (degradation == DegradationMode.SUMMARIZE) {
+      commit.setDegraded(true);
+      latencies.record(PipelineStage.DTO_BUILD, start);
+      return commit;
+    }
+
+    if (commitProjection.includes("message")) {
+      commit.setCommitMessage(changeset.getDescription());
+    }
+    if (commitProjection.includes("author")) {
+      commit.setAuthor(changeset.getAuthor().toString());
+    }
+    if (commitProjection.includes("authorUser")) {
+      String authorUser = authorResolver.resolve(changeset.getAuthor());
+      if (authorUser != null) {
+        commit.setAuthorUser(authorUser);
+      }
+    }
+    if (commitProjection.includes("branches")) {
+      commit.setBranches(changeset.getBranches());
+    }
+
+    long built = latencies.record(PipelineStage.DTO_BUILD, start);
+
+    if (degradation == DegradationMode.SKIP_PATHS) {
+      // the paths are missing in the aggregated changes as well, which is reflected by the degradation of the push
+      commit.setDegraded(true);
+    } else if (perCommitPaths) {
+      FileChanges fileChanges = collectPaths(changeset);
+      commit.setFilesChanged(fileChanges);
+      latencies.record(PipelineStage.MODIFICATIONS, built);
+    } else if (collector != null && aggregate != null) {
+      collector.aggregate(Collections.singletonList(changeset), aggregate);
+      latencies.record(PipelineStage.MODIFICATIONS, built);
+    }
+    if (cacheable && degradation == null) {
+      // only complete commits are reused
+      commitCache.put(repository.getId(), commit, configuration);
+    }
+    return commit;
+  }
+
+  /**
+   * reuses a commit of a previous push. The branches are the only values which depend on the push, if they differ the
+   * commit is copied, otherwise the serialized commit is shared.
+   */
+  private Commit reuse(Commit cached, Changeset changeset) {
+    if (aggregate != null) {
+      aggregate.apply(cached.getFileChanges());
+    }
+    if (!commitProjection.includes("branches") || Objects.equals(cached.getBranches(), changeset.getBranches())) {
+      return cached;
+    }
+    Commit commit = cached.copy();
+    commit.setBranches(changeset.getBranches());
+    commitCache.put(repository.getId(), commit, configuration);
+    return commit;
+  }
+
+  private void emitChunk(PushEventSubscriber.PushConsumer consumer) throws IOException {
+    if (pushId == null) {
+      pushId = UUID.randomUUID().toString();
+    }
+    completePush();
+    push.setChunk(pushId, chunkIndex++, false);
+    consumer.accept(push);
+
+    push = createEmptyPush();
+    chunkCommits = 0;
+    chunkBytes = 0;
+  }
+
+  private Push createEmptyPush() {
+    ObjectNode objectNode = new ObjectMapper().createObjectNode();
+    Push emptyPush = new Push(objectNode, projection);
+
+    emptyPush.setRepositoryId(repository.getId());
+    if (projection.includes("repositoryName")) {
+      emptyPush.setRepositoryName(repository.getName());
+    }
+    if (projection.includes("repositoryNamespace")) {
+      emptyPush.setRepositoryNamespace(repository.getNamespace());
+    }
+    // push.setInstanceId("NO YET IMPLEMENTED"); Maybe a InstanceId can be used later
+
+    if (username != null && !username.equals("")) {
+      emptyPush.setUser(username);
+    }
+    return emptyPush;
+  }
+
+  private void completePush() {
+    if (lastCommitDate != null) {
+      push.setDatePushed(lastCommitDate);
+    }
+    DegradationMode degradation = budget.getDegradation();
+    if (degradation != null) {
+      push.setDegradation(degradation.name());
+    }
+  }
+
+  private FileChanges collectPaths(Changeset changeset) throws IOException {
+    if (collector != null) {
+      if (aggregate != null) {
+        return collector.collectAll(Collections.singletonList(changeset), aggregate);
+      }
+      return collector.collectAll(Collections.singletonList(changeset));
+    }
+    return new FileChanges(new ObjectMapper().createObjectNode()); //empty object
+  }
+
+  @Override
+  public void close() {
+    if (collector != null) {
+      collector.close();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.backfill;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+@Singleton
+public class BackfillCursorStore {
+
+  private static final String NAME = "pushevent-backfill";
+
+  private final DataStoreFactory storeFactory;
+
+  @Inject
+  public BackfillCursorStore(DataStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  public BackfillCursor get(String repositoryId) {
+    return createStore().get(repositoryId);
+  }
+
+  public void put(BackfillCursor cursor) {
+    cursor.setUpdated(System.currentTimeMillis());
+    createStore().put(cursor.getRepositoryId(), cursor);
+  }
+
+  private DataStore<BackfillCursor> createStore() {
+    return storeFactory.withType(BackfillCursor.class).withName(NAME).build();
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.backfill;
+
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.VndMediaType;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+@Path(BackfillResource.PUSHEVENT_BACKFILL_PATH_V2)
+public class BackfillResource {
+
+  static final String PUSHEVENT_BACKFILL_PATH_V2 = "v2/pushevent/backfill";
+
+  private final RepositoryManager repositoryManager;
+  private final BackfillService backfillService;
+
+  @Inject
+  public BackfillResource(RepositoryManager repositoryManager, BackfillService backfillService) {
+    this.repositoryManager = repositoryManager;
+    this.backfillService = backfillService;
+  }
+
+  @GET
+  @Path("{namespace}/{name}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Get backfill state",
+    description = "Returns the progress of the last backfill of the repository.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_get_backfill"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = BackfillCursorDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(responseCode = "404", description = "not found, no repository or no backfill available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response get(@PathParam("namespace") String namespace, @PathParam("name") String name) {
+    ConfigurationPermissions.write("pushevent").check();
+    BackfillCursor cursor = backfillService.getCursor(getRepository(namespace, name));
+    if (cursor == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.ok(BackfillCursorDto.from(cursor)).build();
+  }
+
+  @POST
+  @Path("{namespace}/{name}")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Start backfill",
+    description = "Sends push events for the commits of the revision range in the background.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_start_backfill"
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "backfill started",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = BackfillCursorDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid body")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(responseCode = "404", description = "not found, no repository available")
+  @ApiResponse(responseCode = "409", description = "conflict, a backfill of the repository is already running")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response start(@PathParam("namespace") String namespace, @PathParam("name") String name, BackfillRequestDto request) throws IOException {
+    ConfigurationPermissions.write("pushevent").check();
+    if (request == null || request.getTo() == null || request.getTo().isEmpty()) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    BackfillCursor cursor = backfillService.start(getRepository(namespace, name), request.getFrom(), request.getTo());
+    return accepted(cursor);
+  }
+
+  @POST
+  @Path("{namespace}/{name}/resume")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Resume backfill",
+    description = "Resumes a failed backfill at its last persisted position.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_resume_backfill"
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "backfill resumed",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = BackfillCursorDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(responseCode = "404", description = "not found, no repository available")
+  @ApiResponse(responseCode = "409", description = "conflict, the backfill is running, finished or was never started")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response resume(@PathParam("namespace") String namespace, @PathParam("name") String name) {
+    ConfigurationPermissions.write("pushevent").check();
+    return accepted(backfillService.resume(getRepository(namespace, name)));
+  }
+
+  private Response accepted(BackfillCursor cursor) {
+    if (cursor == null) {
+      return Response.status(Response.Status.CONFLICT).build();
+    }
+    return Response.accepted(BackfillCursorDto.from(cursor)).build();
+  }
+
+  private Repository getRepository(String namespace, String name) {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    Repository repository = repositoryManager.get(namespaceAndName);
+    if (repository == null) {
+      throw notFound(entity(namespaceAndName));
+    }
+    return repository;
+  }
+}
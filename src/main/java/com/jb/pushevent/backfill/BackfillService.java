@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.backfill;
+
+import com.google.common.base.Strings;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.PushEventSubscriber;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.EventQueue;
+import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.pathcollect.PathCollectFactory;
+import com.jb.pushevent.pathcollect.PathCollector;
+import org.apache.shiro.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Sends events for commits which were pushed before the plugin was configured.
+ * <p>
+ * The log of the revision range is read in chunks of {@link PushEventConfiguration#getBackfillChunkSize()} commits,
+ * starting with the oldest commit, every chunk is sent as one push event, exactly as the subscriber would create it. Only one chunk is held in memory at
+ * a time and the cursor is persisted after each chunk, so that a failed backfill can be resumed. Backfills run one
+ * after another on a single thread and a chunk is only queued if the delivery queue is at most half full, so that live
+ * pushes are not delayed.
+ */
+@Singleton
+public class BackfillService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BackfillService.class);
+
+  private static final long MIN_IDLE_WAIT_MILLIS = 50;
+
+  private final RepositoryServiceFactory repositoryServiceFactory;
+  private final PathCollectFactory pathCollectFactory;
+  private final PushEventSubscriber subscriber;
+  private final EventDispatcher dispatcher;
+  private final EventQueue queue;
+  private final PushEventConfigurationResolver configurationResolver;
+  private final BackfillCursorStore cursorStore;
+
+  private final Set<String> running = ConcurrentHashMap.newKeySet();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pushevent-backfill");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @Inject
+  public BackfillService(RepositoryServiceFactory repositoryServiceFactory, PathCollectFactory pathCollectFactory,
+                         PushEventSubscriber subscriber, EventDispatcher dispatcher, EventQueue queue,
+                         PushEventConfigurationResolver configurationResolver, BackfillCursorStore cursorStore) {
+    this.repositoryServiceFactory = repositoryServiceFactory;
+    this.pathCollectFactory = pathCollectFactory;
+    this.subscriber = subscriber;
+    this.dispatcher = dispatcher;
+    this.queue = queue;
+    this.configurationResolver = configurationResolver;
+    this.cursorStore = cursorStore;
+  }
+
+  /**
+   * starts a new backfill for the repository, the cursor of a previous backfill is replaced
+   *
+   * @param repository the repository
+   * @param from       oldest revision of the range or null for the whole history
+   * @param to         newest revision of the range, e.g. a branch or a changeset id
+   * @return the cursor of the backfill or null if a backfill of the repository is already running
+   * @throws IOException if the range could not be read
+   */
+  public BackfillCursor start(Repository repository, String from, String to) throws IOException {
+    if (running.contains(repository.getId())) {
+      return null;
+    }
+    BackfillCursor cursor = new BackfillCursor();
+    cursor.setRepositoryId(repository.getId());
+    cursor.setFrom(Strings.emptyToNull(from));
+
+    try (RepositoryService service = repositoryServiceFactory.create(repository)) {
+      // resolve the newest revision, so that new commits do not shift the pages while the backfill is running
+      ChangesetPagingResult head = log(service, cursor.getFrom(), to).setPagingStart(0).setPagingLimit(1).getChangesets();
+      List<Changeset> changesets = head.getChangesets();
+      cursor.setTo(changesets.isEmpty() ? to : changesets.get(0).getId());
+      cursor.setTotal(head.getTotal());
+    }
+    cursor.setStarted(System.currentTimeMillis());
+    return submit(repository, cursor) ? cursor : null;
+  }
+
+  /**
+   * resumes a failed backfill at its persisted cursor
+   *
+   * @param repository the repository
+   * @return the cursor or null if there is no backfill which can be resumed
+   */
+  public BackfillCursor resume(Repository repository) {
+    BackfillCursor cursor = cursorStore.get(repository.getId());
+    if (cursor == null || cursor.getState() == BackfillState.FINISHED) {
+      return null;
+    }
+    return submit(repository, cursor) ? cursor : null;
+  }
+
+  public BackfillCursor getCursor(Repository repository) {
+    return cursorStore.get(repository.getId());
+  }
+
+  public boolean isRunning(Repository repository) {
+    return running.contains(repository.getId());
+  }
+
+  private boolean submit(Repository repository, BackfillCursor cursor) {
+    if (!running.add(repository.getId())) {
+      return false;
+    }
+    cursor.setState(BackfillState.RUNNING);
+    cursor.setError(null);
+    cursorStore.put(cursor);
+    // the repository is read with the permissions of the user who started the backfill
+    executor.execute(SecurityUtils.getSubject().associateWith(() -> run(repository, cursor)));
+    return true;
+  }
+
+  void run(Repository repository, BackfillCursor cursor) {
+    LOG.info("start backfill of repository {} at commit {} of {}", repository.getId(), cursor.getOffset(), cursor.getTotal());
+    try {
+      while (cursor.getOffset() < cursor.getTotal()) {
+        // like for live pushes, the endpoint and the exclusion of the repository settings are applied
+        PushEventConfiguration configuration = configurationResolver.resolve(repository.getId());
+        if (!configuration.getActive()) {
+          LOG.info("stop backfill of repository {}, push events are not active for the repository", repository.getId());
+          fail(cursor, "push events are not active for the repository");
+          return;
+        }
+        waitForIdleQueue(configuration);
+        int sent = sendChunk(repository, cursor, configuration);
+        if (sent == 0) {
+          break;
+        }
+        cursor.setOffset(cursor.getOffset() + sent);
+        cursorStore.put(cursor);
+        Thread.sleep(configuration.getBackfillPauseMillis());
+      }
+      cursor.setState(BackfillState.FINISHED);
+      LOG.info("finished backfill of repository {} with {} commits", repository.getId(), cursor.getOffset());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail(cursor, "interrupted");
+    } catch (IOException | RuntimeException e) {
+      LOG.error("backfill of repository {} failed at commit {}", repository.getId(), cursor.getOffset(), e);
+      fail(cursor, e.getMessage());
+    } finally {
+      cursorStore.put(cursor);
+      running.remove(repository.getId());
+    }
+  }
+
+  private void fail(BackfillCursor cursor, String error) {
+    cursor.setState(BackfillState.FAILED);
+    cursor.setError(error);
+  }
+
+  /**
+   * sends the next chunk of the range. The log starts with the newest commit, so the pages are read from its end and
+   * reversed, because the net file changes and the date of a push require the commits in the order of the history.
+   */
+  private int sendChunk(Repository repository, BackfillCursor cursor, PushEventConfiguration configuration) throws IOException {
+    int remaining = cursor.getTotal() - cursor.getOffset();
+    int limit = Math.min(Math.max(1, configuration.getBackfillChunkSize()), remaining);
+    List<Changeset> changesets;
+    try (RepositoryService service = repositoryServiceFactory.create(repository)) {
+      changesets = new ArrayList<>(log(service, cursor.getFrom(), cursor.getTo())
+        .setPagingStart(remaining - limit)
+        .setPagingLimit(limit)
+        .getChangesets()
+        .getChangesets());
+    }
+    if (changesets.isEmpty()) {
+      return 0;
+    }
+    Collections.reverse(changesets);
+
+    // paths are only looked up if they are part of the payload, like for live pushes
+    try (PathCollector collector = PushEventSubscriber.collectsPaths(configuration) ? pathCollectFactory.create(repository) : null) {
+      subscriber.createPushes(repository, changesets, null, collector, configuration, push -> {
+        if (!dispatcher.dispatch(repository.getId(), Event.forPush(push), configuration)) {
+          throw new IOException("chunk was dropped by the delivery queue");
+        }
+      });
+    }
+    return changesets.size();
+  }
+
+  private LogCommandBuilder log(RepositoryService service, String from, String to) {
+    LogCommandBuilder logCommand = service.getLogCommand().setStartChangeset(to);
+    if (from != null) {
+      logCommand.setEndChangeset(from);
+    }
+    return logCommand;
+  }
+
+  private void waitForIdleQueue(PushEventConfiguration configuration) throws InterruptedException {
+    long wait = Math.max(MIN_IDLE_WAIT_MILLIS, configuration.getBackfillPauseMillis());
+    while (queue.getQueuedBytes() > configuration.getMaxQueueBytes() / 2 || queue.getEventsOnDisk() > 0) {
+      Thread.sleep(wait);
+    }
+  }
+
+  public void stop() {
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+/**
+ * Controls in which shape the file changes of a push are transmitted.
+ * <p>
+ * {@link #PER_COMMIT} sends the file changes of every commit, {@link #AGGREGATED} sends a single net summary for the
+ * whole push and {@link #BOTH} sends both of them.
+ */
+public enum FileChangesMode {
+  PER_COMMIT(true, false),
+  AGGREGATED(false, true),
+  BOTH(true, true);
+
+  private final boolean perCommit;
+  private final boolean aggregated;
+
+  FileChangesMode(boolean perCommit, boolean aggregated) {
+    this.perCommit = perCommit;
+    this.aggregated = aggregated;
+  }
+
+  public boolean includesPerCommit() {
+    return perCommit;
+  }
+
+  public boolean includesAggregated() {
+    return aggregated;
+  }
+}
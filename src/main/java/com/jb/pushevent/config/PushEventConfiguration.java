@@ -23,7 +23,7 @@
  */
 package com.jb.pushevent.config;
 
-import lombok.AllArgsConstructor;
+import com.jb.pushevent.dto.FieldProjection;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -32,22 +32,172 @@ import sonia.scm.Validateable;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlRootElement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 @Setter
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlRootElement(name = "pushevent-configuration")
-public class PushEventConfiguration implements Validateable {
+public class PushEventConfiguration implements Validateable, Cloneable {
 
   /**
    * endpoint server url
    */
   private String url;
   private String token;
+  /**
+   * shared secret for the HMAC-SHA256 signature of the events, empty if the events are not signed
+   */
+  private String signingSecret;
   private boolean active = false;
 
+  /**
+   * shape of the transmitted file changes, see {@link FileChangesMode}
+   */
+  private FileChangesMode fileChangesMode = FileChangesMode.PER_COMMIT;
+
+  /**
+   * whether renamed and copied files are reported, see {@link RenameDetection}
+   */
+  private RenameDetection renameDetection = RenameDetection.FULL;
+
+  /**
+   * fields of the payload which are sent, e.g. {@code commits.commitId}, empty for all fields, see
+   * {@link FieldProjection}
+   */
+  private List<String> fields = new ArrayList<>();
+  /**
+   * json template of the payload, see {@link com.jb.pushevent.template.PayloadTemplate}, empty for the default payload
+   */
+  private String payloadTemplate;
+
+  /**
+   * what happens to new events if the delivery queue is full, see {@link OverflowPolicy}
+   */
+  private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+  /**
+   * maximum size of all queued events in bytes of their serialized payload
+   */
+  private long maxQueueBytes = 16L * 1024 * 1024;
+  /**
+   * maximum time in milliseconds a push waits for free space with {@link OverflowPolicy#BLOCK}
+   */
+  private long blockTimeoutMillis = 1000;
+
+  /**
+   * kind of threads which are used for processing and delivery, see {@link ExecutionMode}
+   */
+  private ExecutionMode executionMode = ExecutionMode.AUTO;
+  /**
+   * size of the thread pool if platform threads are used
+   */
+  private int maxPlatformThreads = 8;
+  /**
+   * maximum number of requests which are sent to the endpoint at the same time. This is also the number of delivery
+   * lanes, the events of a repository always use the same lane and are delivered one after another.
+   */
+  private int maxConcurrentDeliveries = 4;
+  /**
+   * number of times an event is sent before it is kept as dead letter
+   */
+  private int maxDeliveryAttempts = 3;
+  /**
+   * time in milliseconds before the first retry of a failed delivery, doubled with every further attempt
+   */
+  private long retryBackoffMillis = 1000;
+  /**
+   * where queued events are sent after the url or token was changed, see {@link ReloadPolicy}
+   */
+  private ReloadPolicy reloadPolicy = ReloadPolicy.REROUTE;
+
+  /**
+   * time in milliseconds in which pushes of the same user to the same repository are merged into one event,
+   * 0 disables coalescing
+   */
+  private long coalescingWindowMillis = 0;
+
+  /**
+   * maximum number of commits in one event, larger pushes are split into chunks, 0 for no limit. This is also the
+   * maximum number of commits which are held in memory while a push is processed.
+   */
+  private int maxCommitsPerEvent = 0;
+  /**
+   * approximate maximum size of the commits of one event in bytes, larger pushes are split into chunks, 0 for no limit
+   */
+  private long maxEventBytes = 0;
+  /**
+   * maximum size in bytes of the serialized commits which are kept for later pushes of the same commits, 0 disables the
+   * cache
+   */
+  private long commitCacheBytes = 16L * 1024 * 1024;
+
+  /**
+   * maximum time in milliseconds the processing of a push may take, measured from the receipt of the hook, 0 for no
+   * limit
+   */
+  private long processingBudgetMillis = 0;
+  /**
+   * how the remaining commits of a push are processed once the processing budget is exceeded, see
+   * {@link DegradationMode}
+   */
+  private DegradationMode degradationMode = DegradationMode.SKIP_PATHS;
+
+  /**
+   * number of commits which are read from the log and sent as one event during a backfill
+   */
+  private int backfillChunkSize = 100;
+  /**
+   * time in milliseconds a backfill waits between two chunks
+   */
+  private long backfillPauseMillis = 250;
+
+  /**
+   * whether events are sent for created, moved and deleted branches and tags, see
+   * {@link com.jb.pushevent.refs.RefEventType}. Disabled by default, because consumers which only know the push
+   * events would receive unknown event types.
+   */
+  private boolean sendRefEvents = false;
+
+  /**
+   * maximum number of dead letters which are sent per second during a redrive
+   */
+  private int deadLetterRedriveRate = 10;
+  /**
+   * number of dead letters which are sent in parallel during a redrive
+   */
+  private int deadLetterRedriveBatchSize = 5;
+
+  /**
+   * whether the sent events are kept in the local journal
+   */
+  private boolean journalEnabled = false;
+  /**
+   * number of days the events are kept in the local journal
+   */
+  private int journalRetentionDays = 30;
+  /**
+   * interval in seconds in which the latencies of the processing stages are logged, 0 disables the logging
+   */
+  private int latencyLogIntervalSeconds = 300;
+
+  /**
+   * rules which sample or limit the events of repositories, see {@link SamplingRule}
+   */
+  private List<SamplingRule> samplingRules = new ArrayList<>();
+  /**
+   * interval in seconds of the limits of the sampling rules and of the summary events of the sampled out events
+   */
+  private int samplingIntervalSeconds = 60;
+
+  public PushEventConfiguration(String url, String token, boolean active) {
+    this.url = url;
+    this.token = token;
+    this.active = active;
+  }
+
   public String getUrl() {
     return this.url;
   }
@@ -60,6 +210,61 @@ public class PushEventConfiguration implements Validateable {
     return this.active;
   }
 
+  public FileChangesMode getFileChangesMode() {
+    return this.fileChangesMode != null ? this.fileChangesMode : FileChangesMode.PER_COMMIT;
+  }
+
+  public RenameDetection getRenameDetection() {
+    return this.renameDetection != null ? this.renameDetection : RenameDetection.FULL;
+  }
+
+  public DegradationMode getDegradationMode() {
+    return this.degradationMode != null ? this.degradationMode : DegradationMode.SKIP_PATHS;
+  }
+
+  public int getMaxDeliveryAttempts() {
+    return Math.max(1, this.maxDeliveryAttempts);
+  }
+
+  public int getJournalRetentionDays() {
+    return Math.max(1, this.journalRetentionDays);
+  }
+
+  public List<SamplingRule> getSamplingRules() {
+    return this.samplingRules != null ? this.samplingRules : Collections.emptyList();
+  }
+
+  public int getSamplingIntervalSeconds() {
+    return Math.max(1, this.samplingIntervalSeconds);
+  }
+
+  public FieldProjection getFieldProjection() {
+    return FieldProjection.of(this.fields);
+  }
+
+  public OverflowPolicy getOverflowPolicy() {
+    return this.overflowPolicy != null ? this.overflowPolicy : OverflowPolicy.BLOCK;
+  }
+
+  public ReloadPolicy getReloadPolicy() {
+    return this.reloadPolicy != null ? this.reloadPolicy : ReloadPolicy.REROUTE;
+  }
+
+  public ExecutionMode getExecutionMode() {
+    return this.executionMode != null ? this.executionMode : ExecutionMode.AUTO;
+  }
+
+  /**
+   * @return a shallow copy, e.g. to override single settings for a repository
+   */
+  public PushEventConfiguration copy() {
+    try {
+      return (PushEventConfiguration) super.clone();
+    } catch (CloneNotSupportedException e) {
+      throw new IllegalStateException("configuration is not cloneable", e);
+    }
+  }
+
   @Override
   public boolean isValid() {
     return !url.isEmpty() && !token.isEmpty();
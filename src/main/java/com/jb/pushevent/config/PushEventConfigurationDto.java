@@ -28,13 +28,45 @@ import de.otto.edison.hal.Links;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.List;
+
 @Getter
 @Setter
 @SuppressWarnings("java:S2160") // we do not need equals and hashcode in dto
 public class PushEventConfigurationDto extends HalRepresentation {
   private String url;
   private String token;
+  private String signingSecret;
   private Boolean active;
+  private FileChangesMode fileChangesMode;
+  private RenameDetection renameDetection;
+  private List<String> fields;
+  private String payloadTemplate;
+  private OverflowPolicy overflowPolicy;
+  private Long maxQueueBytes;
+  private Long blockTimeoutMillis;
+  private ExecutionMode executionMode;
+  private Integer maxPlatformThreads;
+  private Integer maxDeliveryAttempts;
+  private Long retryBackoffMillis;
+  private ReloadPolicy reloadPolicy;
+  private Integer maxConcurrentDeliveries;
+  private Long coalescingWindowMillis;
+  private Integer maxCommitsPerEvent;
+  private Long maxEventBytes;
+  private Long commitCacheBytes;
+  private Long processingBudgetMillis;
+  private DegradationMode degradationMode;
+  private Integer backfillChunkSize;
+  private Long backfillPauseMillis;
+  private Boolean sendRefEvents;
+  private Integer deadLetterRedriveRate;
+  private Integer deadLetterRedriveBatchSize;
+  private Boolean journalEnabled;
+  private Integer journalRetentionDays;
+  private Integer latencyLogIntervalSeconds;
+  private List<SamplingRuleDto> samplingRules;
+  private Integer samplingIntervalSeconds;
 
   @Override
   @SuppressWarnings("squid:S1185") // We want to have this method available in this package
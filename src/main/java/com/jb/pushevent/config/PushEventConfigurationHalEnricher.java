@@ -23,6 +23,10 @@
  */
 package com.jb.pushevent.config;
 
+import com.jb.pushevent.deadletter.DeadLetterResource;
+import com.jb.pushevent.journal.JournalResource;
+import com.jb.pushevent.metrics.PrometheusMetricsResource;
+import com.jb.pushevent.stats.PushEventStatisticsResource;
 import sonia.scm.api.v2.resources.Enrich;
 import sonia.scm.api.v2.resources.HalAppender;
 import sonia.scm.api.v2.resources.HalEnricher;
@@ -30,6 +34,7 @@ import sonia.scm.api.v2.resources.HalEnricherContext;
 import sonia.scm.api.v2.resources.Index;
 import sonia.scm.api.v2.resources.LinkBuilder;
 import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.config.ConfigurationPermissions;
 import sonia.scm.plugin.Extension;
 
 import javax.inject.Inject;
@@ -46,15 +51,26 @@ public class PushEventConfigurationHalEnricher implements HalEnricher {
     this.scmPathInfoStore = scmPathInfoStore;
   }
 
-  private String createLink() {
-    return new LinkBuilder(scmPathInfoStore.get().get(), PushEventConfigurationResource.class)
-      .method("get")
+  private String createLink(Class<?> resourceClass) {
+    return createLink(resourceClass, "get");
+  }
+
+  private String createLink(Class<?> resourceClass, String method) {
+    return new LinkBuilder(scmPathInfoStore.get().get(), resourceClass)
+      .method(method)
       .parameters()
       .href();
   }
 
   @Override
   public void enrich(HalEnricherContext context, HalAppender appender) {
-    appender.appendLink("pushevent", createLink());
+    appender.appendLink("pushevent", createLink(PushEventConfigurationResource.class));
+    appender.appendLink("pusheventStats", createLink(PushEventStatisticsResource.class));
+    if (ConfigurationPermissions.write("pushevent").isPermitted()) {
+      // the journal and the dead letters of all repositories contain the payloads of every repository
+      appender.appendLink("pusheventJournal", createLink(JournalResource.class, "query"));
+      appender.appendLink("pusheventDeadLetters", createLink(DeadLetterResource.class, "list"));
+    }
+    appender.appendLink("pusheventMetrics", createLink(PrometheusMetricsResource.class));
   }
 }
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import com.github.legman.Subscribe;
+import sonia.scm.EagerSingleton;
+import sonia.scm.HandlerEventType;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.RepositoryEvent;
+
+import javax.inject.Inject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolves the effective configuration of a repository, which is the global configuration with the settings of the
+ * repository applied.
+ * <p>
+ * The effective configuration is cached per repository together with the global configuration it was created from.
+ * A change of the global configuration replaces the global instance and thereby outdates all entries, a change of
+ * the repository settings removes the entry of the repository. Resolving the configuration of a push is therefore
+ * a map lookup and does not read any store.
+ */
+@Extension
+@EagerSingleton
+public class PushEventConfigurationResolver {
+
+  private final PushEventConfigurationStore globalStore;
+  private final RepositoryPushEventConfigurationStore repositoryStore;
+  private final ConcurrentMap<String, Resolved> cache = new ConcurrentHashMap<>();
+
+  @Inject
+  public PushEventConfigurationResolver(PushEventConfigurationStore globalStore, RepositoryPushEventConfigurationStore repositoryStore) {
+    this.globalStore = globalStore;
+    this.repositoryStore = repositoryStore;
+  }
+
+  /**
+   * @param repositoryId id of the repository
+   * @return the effective configuration of the repository, which must not be modified
+   */
+  public PushEventConfiguration resolve(String repositoryId) {
+    PushEventConfiguration global = globalStore.get();
+    Resolved resolved = cache.get(repositoryId);
+    if (resolved == null || resolved.global != global) {
+      // the store is read within compute, so that a concurrent update of the repository cannot be overwritten with
+      // the settings read before
+      resolved = cache.compute(repositoryId, (id, current) -> current != null && current.global == global ? current : new Resolved(global, merge(global, repositoryStore.get(id))));
+    }
+    return resolved.effective;
+  }
+
+  private static PushEventConfiguration merge(PushEventConfiguration global, RepositoryPushEventConfiguration repository) {
+    if (!repository.isOverriding()) {
+      return global;
+    }
+    PushEventConfiguration effective = global.copy();
+    if (repository.isExcluded()) {
+      effective.setActive(false);
+    }
+    if (repository.hasEndpoint()) {
+      effective.setUrl(repository.getUrl());
+      effective.setToken(repository.getToken() != null ? repository.getToken() : "");
+      effective.setSigningSecret(repository.getSigningSecret());
+    }
+    return effective;
+  }
+
+  public RepositoryPushEventConfiguration getRepositoryConfiguration(String repositoryId) {
+    return repositoryStore.get(repositoryId);
+  }
+
+  /**
+   * stores the settings of the repository, the next push of the repository uses them
+   */
+  public void setRepositoryConfiguration(String repositoryId, RepositoryPushEventConfiguration configuration) {
+    repositoryStore.set(repositoryId, configuration);
+    cache.remove(repositoryId);
+  }
+
+  @Subscribe(async = false)
+  public void onEvent(RepositoryEvent event) {
+    if (event.getEventType() == HandlerEventType.DELETE) {
+      cache.remove(event.getItem().getId());
+    }
+  }
+
+  private static class Resolved {
+    private final PushEventConfiguration global;
+    private final PushEventConfiguration effective;
+
+    Resolved(PushEventConfiguration global, PushEventConfiguration effective) {
+      this.global = global;
+      this.effective = effective;
+    }
+  }
+}
@@ -25,6 +25,7 @@ package com.jb.pushevent.config;
 
 
 import com.google.inject.Inject;
+import com.jb.pushevent.template.PayloadTemplateException;
 import io.swagger.v3.oas.annotations.OpenAPIDefinition;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -101,7 +102,7 @@ public class PushEventConfigurationResource {
     operationId = "push_event_put_global_config"
   )
   @ApiResponse(responseCode = "204", description = "update success")
-  @ApiResponse(responseCode = "400", description = "invalid body")
+  @ApiResponse(responseCode = "400", description = "invalid body or payload template")
   @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
   @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
   @ApiResponse(
@@ -113,7 +114,11 @@ public class PushEventConfigurationResource {
     )
   )
   public Response update(@Valid PushEventConfigurationDto updatedConfig) {
-    store.update(mapper.map(updatedConfig));
+    try {
+      store.update(mapper.map(updatedConfig));
+    } catch (PayloadTemplateException e) {
+      return Response.status(Response.Status.BAD_REQUEST).entity(e.getMessage()).type(MediaType.TEXT_PLAIN).build();
+    }
     return Response.noContent().build();
   }
 }
@@ -25,28 +25,57 @@ package com.jb.pushevent.config;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.jb.pushevent.template.PayloadTemplates;
 import sonia.scm.store.ConfigurationStore;
 import sonia.scm.store.ConfigurationStoreFactory;
 
 import javax.validation.constraints.NotNull;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Stores the configuration of the plugin.
+ * <p>
+ * The current configuration is kept in memory and replaced as a whole on every update, so that reading it never takes
+ * a lock and a reader always sees either the old or the new configuration, but never a mix of both. The returned
+ * configuration must not be modified.
+ */
 @Singleton
 public class PushEventConfigurationStore {
 
   private static final String NAME = "pushevent";
 
   private final ConfigurationStoreFactory storeFactory;
+  private final PayloadTemplates payloadTemplates;
+  private final AtomicReference<PushEventConfiguration> current = new AtomicReference<>();
 
   @Inject
-  public PushEventConfigurationStore(ConfigurationStoreFactory storeFactory) {
+  public PushEventConfigurationStore(ConfigurationStoreFactory storeFactory, PayloadTemplates payloadTemplates) {
     this.storeFactory = storeFactory;
+    this.payloadTemplates = payloadTemplates;
   }
 
+  /**
+   * stores the configuration, the payload template is compiled before
+   *
+   * @param config the new configuration
+   * @throws com.jb.pushevent.template.PayloadTemplateException if the payload template is not valid
+   */
   public void update(@NotNull PushEventConfiguration config) {
+    payloadTemplates.update(config.getPayloadTemplate());
     createStore().set(config);
+    current.set(config);
   }
 
   public PushEventConfiguration get() {
+    PushEventConfiguration config = current.get();
+    if (config == null) {
+      current.compareAndSet(null, load());
+      config = current.get();
+    }
+    return config;
+  }
+
+  private PushEventConfiguration load() {
     PushEventConfiguration globalConfig = createStore().get();
     if (globalConfig == null) {
       globalConfig = new PushEventConfiguration();
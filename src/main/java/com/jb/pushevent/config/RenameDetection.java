@@ -0,0 +1,52 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+/**
+ * Controls whether renamed and copied files are reported as such or as plain additions and removals.
+ * <p>
+ * With {@link #OFF} a renamed file is reported as removal of the old and addition of the new path, a copied file as
+ * addition of the target. {@link #RENAMES} keeps renames but reports copies as additions, {@link #FULL} keeps both.
+ */
+public enum RenameDetection {
+  OFF(false, false),
+  RENAMES(true, false),
+  FULL(true, true);
+
+  private final boolean renames;
+  private final boolean copies;
+
+  RenameDetection(boolean renames, boolean copies) {
+    this.renames = renames;
+    this.copies = copies;
+  }
+
+  public boolean includesRenames() {
+    return renames;
+  }
+
+  public boolean includesCopies() {
+    return copies;
+  }
+}
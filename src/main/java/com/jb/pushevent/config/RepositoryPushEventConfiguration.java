@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import com.google.common.base.Strings;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Settings of a single repository which override the global {@link PushEventConfiguration}.
+ */
+@Data
+@NoArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlRootElement(name = "pushevent-repository-configuration")
+public class RepositoryPushEventConfiguration {
+
+  /**
+   * no events are sent for the repository
+   */
+  private boolean excluded = false;
+  /**
+   * endpoint server url for the events of the repository, empty for the global endpoint
+   */
+  private String url;
+  /**
+   * token for the endpoint of the repository, the global token is never sent to the endpoint of a repository
+   */
+  private String token;
+  /**
+   * secret for the signature of the events which are sent to the endpoint of the repository, the global secret is
+   * never used for the endpoint of a repository
+   */
+  private String signingSecret;
+
+  /**
+   * @return true if the events of the repository are sent to an own endpoint
+   */
+  public boolean hasEndpoint() {
+    return !Strings.isNullOrEmpty(url);
+  }
+
+  /**
+   * @return true if the repository overrides any global setting
+   */
+  public boolean isOverriding() {
+    return excluded || hasEndpoint();
+  }
+}
@@ -0,0 +1,191 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import com.google.inject.Inject;
+import de.otto.edison.hal.Links;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.api.v2.resources.LinkBuilder;
+import sonia.scm.api.v2.resources.ScmPathInfoStore;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.web.VndMediaType;
+
+import javax.inject.Provider;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.PUT;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import static de.otto.edison.hal.Link.link;
+import static de.otto.edison.hal.Links.linkingTo;
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+/**
+ * Settings of a repository which override the global configuration. Only users who are allowed to change the global
+ * configuration may read and change them, because they decide where the data of the repository is sent to.
+ */
+@Path(RepositoryPushEventConfigurationResource.PUSHEVENT_REPOSITORY_CONFIG_PATH_V2)
+public class RepositoryPushEventConfigurationResource {
+
+  static final String PUSHEVENT_REPOSITORY_CONFIG_PATH_V2 = "v2/config/pushevent/repository";
+
+  private final RepositoryManager repositoryManager;
+  private final PushEventConfigurationResolver resolver;
+  private final Provider<ScmPathInfoStore> scmPathInfoStore;
+
+  @Inject
+  public RepositoryPushEventConfigurationResource(RepositoryManager repositoryManager, PushEventConfigurationResolver resolver, Provider<ScmPathInfoStore> scmPathInfoStore) {
+    this.repositoryManager = repositoryManager;
+    this.resolver = resolver;
+    this.scmPathInfoStore = scmPathInfoStore;
+  }
+
+  @GET
+  @Path("{namespace}/{name}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Get repository push event configuration",
+    description = "Returns the settings of the repository which override the global push event configuration.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_get_repository_config"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = RepositoryPushEventConfigurationDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public RepositoryPushEventConfigurationDto get(@PathParam("namespace") String namespace, @PathParam("name") String name) {
+    ConfigurationPermissions.write("pushevent").check();
+    Repository repository = getRepository(namespace, name);
+    RepositoryPushEventConfiguration configuration = resolver.getRepositoryConfiguration(repository.getId());
+
+    RepositoryPushEventConfigurationDto dto = new RepositoryPushEventConfigurationDto();
+    dto.setExcluded(configuration.isExcluded());
+    dto.setUrl(configuration.getUrl());
+    dto.setToken(configuration.getToken());
+    dto.setSigningSecret(configuration.getSigningSecret());
+    dto.add(createLinks(namespace, name));
+    return dto;
+  }
+
+  @PUT
+  @Path("{namespace}/{name}")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Update repository push event configuration",
+    description = "Modifies the settings of the repository which override the global push event configuration. The next push of the repository uses them.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_put_repository_config"
+  )
+  @ApiResponse(responseCode = "204", description = "update success")
+  @ApiResponse(responseCode = "400", description = "invalid body")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user does not have the privilege to change the configuration")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response update(@PathParam("namespace") String namespace, @PathParam("name") String name, RepositoryPushEventConfigurationDto dto) {
+    ConfigurationPermissions.write("pushevent").check();
+    if (dto == null) {
+      return Response.status(Response.Status.BAD_REQUEST).build();
+    }
+    Repository repository = getRepository(namespace, name);
+    RepositoryPushEventConfiguration configuration = new RepositoryPushEventConfiguration();
+    configuration.setExcluded(dto.isExcluded());
+    configuration.setUrl(dto.getUrl());
+    configuration.setToken(dto.getToken());
+    configuration.setSigningSecret(dto.getSigningSecret());
+    resolver.setRepositoryConfiguration(repository.getId(), configuration);
+    return Response.noContent().build();
+  }
+
+  private Links createLinks(String namespace, String name) {
+    return linkingTo()
+      .self(createLink("get", namespace, name))
+      .single(link("update", createLink("update", namespace, name)))
+      .build();
+  }
+
+  private String createLink(String method, String namespace, String name) {
+    return new LinkBuilder(scmPathInfoStore.get().get(), RepositoryPushEventConfigurationResource.class)
+      .method(method)
+      .parameters(namespace, name)
+      .href();
+  }
+
+  private Repository getRepository(String namespace, String name) {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    Repository repository = repositoryManager.get(namespaceAndName);
+    if (repository == null) {
+      throw notFound(entity(namespaceAndName));
+    }
+    return repository;
+  }
+}
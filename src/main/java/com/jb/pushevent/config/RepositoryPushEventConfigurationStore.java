@@ -0,0 +1,61 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+
+@Singleton
+public class RepositoryPushEventConfigurationStore {
+
+  private static final String NAME = "pushevent";
+
+  private final ConfigurationStoreFactory storeFactory;
+
+  @Inject
+  public RepositoryPushEventConfigurationStore(ConfigurationStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  /**
+   * @return the settings of the repository, an empty configuration if the repository has none
+   */
+  public RepositoryPushEventConfiguration get(String repositoryId) {
+    RepositoryPushEventConfiguration configuration = createStore(repositoryId).get();
+    if (configuration == null) {
+      configuration = new RepositoryPushEventConfiguration();
+    }
+    return configuration;
+  }
+
+  public void set(String repositoryId, RepositoryPushEventConfiguration configuration) {
+    createStore(repositoryId).set(configuration);
+  }
+
+  private ConfigurationStore<RepositoryPushEventConfiguration> createStore(String repositoryId) {
+    return storeFactory.withType(RepositoryPushEventConfiguration.class).withName(NAME).forRepository(repositoryId).build();
+  }
+}
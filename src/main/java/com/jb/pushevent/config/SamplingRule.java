@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+
+/**
+ * Limits the events of the repositories which match a pattern. The first rule which matches a repository is applied.
+ */
+@Data
+@NoArgsConstructor
+@XmlAccessorType(XmlAccessType.FIELD)
+public class SamplingRule {
+
+  /**
+   * glob pattern for {@code namespace/name}, {@code *} matches within a segment, {@code **} matches anything and
+   * {@code ?} matches a single character
+   */
+  private String pattern;
+  /**
+   * share of the events which are sent, between 0 and 1
+   */
+  private double rate = 1.0;
+  /**
+   * maximum number of events of a repository per sampling interval, 0 for no limit
+   */
+  private int maxEventsPerInterval = 0;
+
+  public SamplingRule(String pattern, double rate, int maxEventsPerInterval) {
+    this.pattern = pattern;
+    this.rate = rate;
+    this.maxEventsPerInterval = maxEventsPerInterval;
+  }
+
+  public double getRate() {
+    return Math.min(1.0, Math.max(0.0, this.rate));
+  }
+}
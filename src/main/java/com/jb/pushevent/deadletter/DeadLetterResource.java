@@ -0,0 +1,318 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.deadletter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.web.VndMediaType;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.GET;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.time.Instant;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+@Path(DeadLetterResource.PUSHEVENT_DEAD_LETTERS_PATH_V2)
+public class DeadLetterResource {
+
+  static final String PUSHEVENT_DEAD_LETTERS_PATH_V2 = "v2/pushevent/dead-letters";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final DeadLetterStore store;
+  private final DeadLetterService service;
+  private final RepositoryManager repositoryManager;
+
+  @Inject
+  public DeadLetterResource(DeadLetterStore store, DeadLetterService service, RepositoryManager repositoryManager) {
+    this.store = store;
+    this.service = service;
+    this.repositoryManager = repositoryManager;
+  }
+
+  @GET
+  @Path("")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "List dead letters",
+    description = "Returns the events of all repositories which could not be delivered, the oldest first. The dead letters contain the payloads of all repositories, so the permission to change the configuration is required.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_list_dead_letters"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = DeadLetterListDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public DeadLetterListDto list() {
+    ConfigurationPermissions.write("pushevent").check();
+    return createListDto(null);
+  }
+
+  @GET
+  @Path("{namespace}/{name}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "List dead letters of a repository",
+    description = "Returns the events of the repository which could not be delivered, the oldest first.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_list_repository_dead_letters"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = DeadLetterListDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration or the repository")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public DeadLetterListDto listRepository(@PathParam("namespace") String namespace, @PathParam("name") String name) {
+    ConfigurationPermissions.read("pushevent").check();
+    Repository repository = getRepository(namespace, name);
+    RepositoryPermissions.read(repository).check();
+    return createListDto(repository.getId());
+  }
+
+  private DeadLetterListDto createListDto(String repositoryId) {
+    DeadLetterListDto dto = new DeadLetterListDto();
+    for (DeadLetter deadLetter : store.getAll()) {
+      if (repositoryId == null || repositoryId.equals(deadLetter.getRepositoryId())) {
+        dto.getDeadLetters().add(fill(new DeadLetterDto(), deadLetter));
+      }
+    }
+    dto.setRedriveRunning(service.isRunning());
+    return dto;
+  }
+
+  @GET
+  @Path("{id}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Get dead letter",
+    description = "Returns the dead letter with its payload and all failed attempts. Without the permission to change the configuration, the repository of the dead letter has to be readable.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_get_dead_letter"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = DeadLetterDetailDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration or the repository of the dead letter")
+  @ApiResponse(responseCode = "404", description = "not found, no dead letter with the specified id available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response get(@PathParam("id") String id) throws IOException {
+    ConfigurationPermissions.read("pushevent").check();
+    DeadLetter deadLetter = store.get(id);
+    if (deadLetter == null) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    if (!ConfigurationPermissions.write("pushevent").isPermitted()) {
+      // the payload contains the commit messages, authors and paths of the repository
+      RepositoryPermissions.read(deadLetter.getRepositoryId()).check();
+    }
+    DeadLetterDetailDto dto = fill(new DeadLetterDetailDto(), deadLetter);
+    for (DeadLetterAttempt attempt : deadLetter.getAttempts()) {
+      DeadLetterAttemptDto attemptDto = new DeadLetterAttemptDto();
+      attemptDto.setTime(Instant.ofEpochMilli(attempt.getTime()).toString());
+      attemptDto.setError(attempt.getError());
+      dto.getAttempts().add(attemptDto);
+    }
+    dto.setPayload(MAPPER.readTree(deadLetter.getPayload()));
+    return Response.ok(dto).build();
+  }
+
+  @POST
+  @Path("redrive")
+  @Consumes({MediaType.APPLICATION_JSON})
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Redrive dead letters",
+    description = "Sends the dead letters again in the background, rate limited and without delaying the live delivery. Without ids all dead letters are sent.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_redrive_dead_letters"
+  )
+  @ApiResponse(
+    responseCode = "202",
+    description = "redrive started",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = RedriveDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(responseCode = "409", description = "conflict, a redrive is already running")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response redrive(RedriveRequestDto request) {
+    ConfigurationPermissions.write("pushevent").check();
+    boolean all = request == null || request.getIds() == null || request.getIds().isEmpty();
+    int scheduled = service.redrive(all ? null : request.getIds());
+    if (scheduled < 0) {
+      return Response.status(Response.Status.CONFLICT).build();
+    }
+    RedriveDto dto = new RedriveDto();
+    dto.setScheduled(scheduled);
+    return Response.accepted(dto).build();
+  }
+
+  @DELETE
+  @Path("{id}")
+  @Operation(
+    summary = "Purge dead letter",
+    description = "Removes the dead letter without sending it.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_purge_dead_letter"
+  )
+  @ApiResponse(responseCode = "204", description = "no content")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(responseCode = "404", description = "not found, no dead letter with the specified id available")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response purge(@PathParam("id") String id) {
+    ConfigurationPermissions.write("pushevent").check();
+    if (!service.purge(id)) {
+      return Response.status(Response.Status.NOT_FOUND).build();
+    }
+    return Response.noContent().build();
+  }
+
+  @DELETE
+  @Path("")
+  @Operation(
+    summary = "Purge all dead letters",
+    description = "Removes all dead letters without sending them.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_purge_dead_letters"
+  )
+  @ApiResponse(responseCode = "204", description = "no content")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response purgeAll() {
+    ConfigurationPermissions.write("pushevent").check();
+    service.purgeAll();
+    return Response.noContent().build();
+  }
+
+  private Repository getRepository(String namespace, String name) {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    Repository repository = repositoryManager.get(namespaceAndName);
+    if (repository == null) {
+      throw notFound(entity(namespaceAndName));
+    }
+    return repository;
+  }
+
+  private <T extends DeadLetterDto> T fill(T dto, DeadLetter deadLetter) {
+    dto.setId(deadLetter.getId());
+    dto.setRepositoryId(deadLetter.getRepositoryId());
+    dto.setCreated(Instant.ofEpochMilli(deadLetter.getCreated()).toString());
+    dto.setReason(deadLetter.getReason());
+    dto.setAttemptCount(deadLetter.getAttempts().size());
+    return dto;
+  }
+}
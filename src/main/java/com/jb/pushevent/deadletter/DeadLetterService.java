@@ -0,0 +1,174 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.deadletter;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.QueuedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends dead letters to the endpoint again.
+ * <p>
+ * A redrive runs on its own threads, so that it never delays the live delivery. The dead letters are sent in batches
+ * of {@link PushEventConfiguration#getDeadLetterRedriveBatchSize()} in parallel, limited to
+ * {@link PushEventConfiguration#getDeadLetterRedriveRate()} events per second. Dead letters which are accepted are
+ * removed, the others are kept with the additional attempt.
+ */
+@Singleton
+public class DeadLetterService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeadLetterService.class);
+
+  private final DeadLetterStore store;
+  private final EventDispatcher dispatcher;
+  private final PushEventConfigurationStore configurationStore;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+  private final AtomicInteger threadCount = new AtomicInteger();
+  private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> createThread(runnable, "pushevent-redrive"));
+  private final ExecutorService senders = Executors.newCachedThreadPool(runnable -> createThread(runnable, "pushevent-redrive-" + threadCount.incrementAndGet()));
+
+  @Inject
+  public DeadLetterService(DeadLetterStore store, EventDispatcher dispatcher, PushEventConfigurationStore configurationStore) {
+    this.store = store;
+    this.dispatcher = dispatcher;
+    this.configurationStore = configurationStore;
+  }
+
+  private static Thread createThread(Runnable runnable, String name) {
+    Thread thread = new Thread(runnable, name);
+    thread.setDaemon(true);
+    return thread;
+  }
+
+  /**
+   * starts the redrive of the dead letters
+   *
+   * @param ids ids of the dead letters or null for all dead letters
+   * @return number of dead letters which are sent or -1 if a redrive is already running
+   */
+  public int redrive(Collection<String> ids) {
+    if (!running.compareAndSet(false, true)) {
+      return -1;
+    }
+    List<DeadLetter> deadLetters = new ArrayList<>();
+    if (ids == null) {
+      deadLetters.addAll(store.getAll());
+    } else {
+      for (String id : ids) {
+        DeadLetter deadLetter = store.get(id);
+        if (deadLetter != null) {
+          deadLetters.add(deadLetter);
+        }
+      }
+    }
+    try {
+      coordinator.execute(() -> run(deadLetters, configurationStore.get()));
+    } catch (RuntimeException e) {
+      running.set(false);
+      throw e;
+    }
+    return deadLetters.size();
+  }
+
+  public boolean isRunning() {
+    return running.get();
+  }
+
+  void run(List<DeadLetter> deadLetters, PushEventConfiguration configuration) {
+    RateLimiter rateLimiter = RateLimiter.create(Math.max(1, configuration.getDeadLetterRedriveRate()));
+    int batchSize = Math.max(1, configuration.getDeadLetterRedriveBatchSize());
+    int delivered = 0;
+    try {
+      for (int start = 0; start < deadLetters.size() && !Thread.currentThread().isInterrupted(); start += batchSize) {
+        List<Callable<Boolean>> batch = new ArrayList<>(batchSize);
+        for (DeadLetter deadLetter : deadLetters.subList(start, Math.min(start + batchSize, deadLetters.size()))) {
+          rateLimiter.acquire();
+          batch.add(() -> redrive(deadLetter));
+        }
+        for (Future<Boolean> result : senders.invokeAll(batch)) {
+          if (Boolean.TRUE.equals(result.get())) {
+            delivered++;
+          }
+        }
+      }
+      LOG.info("redrive finished, {} of {} dead letters were delivered", delivered, deadLetters.size());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (Exception e) {
+      LOG.error("redrive of dead letters failed", e);
+    } finally {
+      running.set(false);
+    }
+  }
+
+  private boolean redrive(DeadLetter deadLetter) {
+    String error = dispatcher.send(new QueuedEvent(deadLetter.getRepositoryId(), deadLetter.getPayload()));
+    if (error == null) {
+      store.remove(deadLetter.getId());
+      return true;
+    }
+    deadLetter.getAttempts().add(new DeadLetterAttempt(System.currentTimeMillis(), error));
+    store.update(deadLetter);
+    return false;
+  }
+
+  /**
+   * removes a dead letter
+   *
+   * @return false if there is no dead letter with the id
+   */
+  public boolean purge(String id) {
+    if (store.get(id) == null) {
+      return false;
+    }
+    store.remove(id);
+    return true;
+  }
+
+  public void purgeAll() {
+    store.clear();
+  }
+
+  public void stop() {
+    coordinator.shutdownNow();
+    senders.shutdownNow();
+  }
+}
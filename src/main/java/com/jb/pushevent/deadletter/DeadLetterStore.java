@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.deadletter;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import sonia.scm.store.DataStore;
+import sonia.scm.store.DataStoreFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+
+@Singleton
+public class DeadLetterStore {
+
+  private static final String NAME = "pushevent-dead-letters";
+
+  private final DataStoreFactory storeFactory;
+
+  @Inject
+  public DeadLetterStore(DataStoreFactory storeFactory) {
+    this.storeFactory = storeFactory;
+  }
+
+  /**
+   * stores an event which could not be delivered
+   *
+   * @param repositoryId id of the repository of the event
+   * @param payload      the serialized event
+   * @param attempts     the failed attempts
+   * @return the stored dead letter
+   */
+  public DeadLetter add(String repositoryId, byte[] payload, List<DeadLetterAttempt> attempts) {
+    DeadLetter deadLetter = new DeadLetter();
+    deadLetter.setId(UUID.randomUUID().toString());
+    deadLetter.setRepositoryId(repositoryId);
+    deadLetter.setPayload(payload);
+    deadLetter.setCreated(System.currentTimeMillis());
+    deadLetter.setAttempts(new ArrayList<>(attempts));
+    createStore().put(deadLetter.getId(), deadLetter);
+    return deadLetter;
+  }
+
+  public DeadLetter get(String id) {
+    return createStore().get(id);
+  }
+
+  /**
+   * @return all dead letters, the oldest first
+   */
+  public List<DeadLetter> getAll() {
+    List<DeadLetter> deadLetters = new ArrayList<>(createStore().getAll().values());
+    deadLetters.sort(Comparator.comparingLong(DeadLetter::getCreated));
+    return deadLetters;
+  }
+
+  public void update(DeadLetter deadLetter) {
+    createStore().put(deadLetter.getId(), deadLetter);
+  }
+
+  public void remove(String id) {
+    createStore().remove(id);
+  }
+
+  public void clear() {
+    createStore().clear();
+  }
+
+  private DataStore<DeadLetter> createStore() {
+    return storeFactory.withType(DeadLetter.class).withName(NAME).build();
+  }
+}
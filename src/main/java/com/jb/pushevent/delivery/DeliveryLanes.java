@@ -0,0 +1,153 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Delivers events on a fixed number of lanes.
+ * <p>
+ * Every event is assigned to a lane by the hash of its repository. A lane delivers its events one after another in
+ * the order in which they were submitted, so the events of a repository are delivered in order, while the events of
+ * repositories on different lanes are delivered in parallel. A lane only occupies a thread while it has events.
+ */
+class DeliveryLanes {
+
+  private final Lane[] lanes;
+  private final Consumer<QueuedEvent> delivery;
+
+  /**
+   * @param count    number of lanes
+   * @param delivery delivers a single event, it must not throw
+   */
+  DeliveryLanes(int count, Consumer<QueuedEvent> delivery) {
+    this.lanes = new Lane[count];
+    for (int i = 0; i < count; i++) {
+      lanes[i] = new Lane();
+    }
+    this.delivery = delivery;
+  }
+
+  int size() {
+    return lanes.length;
+  }
+
+  /**
+   * appends the event to the lane of its repository and starts the lane with the executor if it is idle. If the
+   * executor rejects the lane, the event stays pending and the lane is idle until it is started again.
+   *
+   * @param event    event to deliver
+   * @param executor executor for idle lanes
+   */
+  void submit(QueuedEvent event, Executor executor) {
+    lanes[laneOf(event.getRepositoryId(), lanes.length)].submit(event, executor);
+  }
+
+  /**
+   * starts the lane of the repository with the executor if it is idle and has pending events
+   *
+   * @param repositoryId id of the repository
+   * @param executor     executor for idle lanes
+   */
+  void resume(String repositoryId, Executor executor) {
+    lanes[laneOf(repositoryId, lanes.length)].start(executor);
+  }
+
+  /**
+   * removes the pending events of the idle lanes, e.g. of lanes which were rejected by the executor when the delivery
+   * is stopped
+   *
+   * @return the removed events in the order in which they were submitted
+   */
+  List<QueuedEvent> removePending() {
+    List<QueuedEvent> removed = new ArrayList<>();
+    for (Lane lane : lanes) {
+      lane.removePending(removed);
+    }
+    return removed;
+  }
+
+  static int laneOf(String repositoryId, int count) {
+    int hash = repositoryId != null ? repositoryId.hashCode() : 0;
+    // spread the higher bits, the ids of repositories often only differ in their last characters
+    return Math.floorMod(hash ^ (hash >>> 16), count);
+  }
+
+  private final class Lane {
+
+    private final Deque<QueuedEvent> pending = new ArrayDeque<>();
+    private boolean running;
+
+    void submit(QueuedEvent event, Executor executor) {
+      synchronized (this) {
+        pending.addLast(event);
+      }
+      start(executor);
+    }
+
+    void start(Executor executor) {
+      synchronized (this) {
+        if (running || pending.isEmpty()) {
+          return;
+        }
+        running = true;
+      }
+      try {
+        executor.execute(this::drain);
+      } catch (RuntimeException e) {
+        // the events stay pending until the lane is started again
+        synchronized (this) {
+          running = false;
+        }
+        throw e;
+      }
+    }
+
+    synchronized void removePending(List<QueuedEvent> removed) {
+      if (!running) {
+        removed.addAll(pending);
+        pending.clear();
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        QueuedEvent event;
+        synchronized (this) {
+          event = pending.pollFirst();
+          if (event == null) {
+            running = false;
+            return;
+          }
+        }
+        delivery.accept(event);
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.jb.pushevent.EventsCloudoguRestApiService;
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.net.ahc.AdvancedHttpClient;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The long-lived sender for the url and token of a configuration.
+ * <p>
+ * When the url or token is changed, the endpoint is replaced and retired. A retired endpoint still finishes the
+ * requests which are in flight and the events which are bound to it, but it is never used for new events.
+ */
+class Endpoint {
+
+  private static final Logger LOG = LoggerFactory.getLogger(Endpoint.class);
+
+  private final String url;
+  private final String token;
+  private final String signingSecret;
+  private final EventsCloudoguRestApiService service;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private volatile boolean retired;
+
+  Endpoint(AdvancedHttpClient httpClient, PushEventConfiguration configuration) {
+    this.url = configuration.getUrl();
+    this.token = configuration.getToken();
+    this.signingSecret = configuration.getSigningSecret();
+    this.service = new EventsCloudoguRestApiService(httpClient, configuration);
+  }
+
+  /**
+   * @return true if the endpoint uses the url, token and signing secret of the configuration
+   */
+  boolean matches(PushEventConfiguration configuration) {
+    return Objects.equals(url, configuration.getUrl()) && Objects.equals(token, configuration.getToken())
+      && Objects.equals(signingSecret, configuration.getSigningSecret());
+  }
+
+  String getUrl() {
+    return service.getEndpointUrl();
+  }
+
+  /**
+   * sends the event to the endpoint
+   *
+   * @return null if the endpoint accepted the event, otherwise the error
+   */
+  String send(byte[] payload) {
+    inFlight.incrementAndGet();
+    try {
+      return service.deliver(payload);
+    } finally {
+      if (inFlight.decrementAndGet() == 0 && retired) {
+        LOG.info("replaced endpoint {} has no requests in flight anymore", getUrl());
+      }
+    }
+  }
+
+  void retire() {
+    retired = true;
+    int remaining = inFlight.get();
+    if (remaining > 0) {
+      LOG.info("endpoint {} was replaced, waiting for {} requests in flight", getUrl(), remaining);
+    }
+  }
+
+  boolean isRetired() {
+    return retired;
+  }
+}
@@ -0,0 +1,434 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import com.jb.pushevent.config.ReloadPolicy;
+import com.jb.pushevent.deadletter.DeadLetter;
+import com.jb.pushevent.deadletter.DeadLetterAttempt;
+import com.jb.pushevent.deadletter.DeadLetterStore;
+import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.execution.PushEventExecutor;
+import com.jb.pushevent.journal.DeliveryJournal;
+import com.jb.pushevent.stats.DeliveryStatistics;
+import com.jb.pushevent.stats.PipelineStage;
+import com.jb.pushevent.stats.StageLatencies;
+import com.jb.pushevent.template.PayloadTemplate;
+import com.jb.pushevent.template.PayloadTemplates;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.net.ahc.AdvancedHttpClient;
+
+import javax.inject.Provider;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The EventDispatcher decouples the processing of a push from the delivery to the endpoint.
+ * <p>
+ * Events are numbered per repository, serialized and put into the {@link EventQueue}. A background worker takes them
+ * from the queue and passes them to the {@link DeliveryLanes}, which send them to the endpoint with the
+ * {@link PushEventExecutor}. The number of lanes is the maximum number of requests which are sent at the same time,
+ * the events of a repository always use the same lane and are therefore delivered in order.
+ */
+@Singleton
+public class EventDispatcher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventDispatcher.class);
+
+  /**
+   * number of events per lane which are taken from the queue before they are delivered
+   */
+  static final int PENDING_PER_LANE = 16;
+
+  private static final long RESUME_WAIT_MILLIS = 10;
+  private static final long MAX_RESUME_WAIT_MILLIS = 1000;
+  private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+  private final Provider<AdvancedHttpClient> httpClientProvider;
+  private final PushEventConfigurationStore pushEventConfigurationStore;
+  private final EventQueue queue;
+  private final PushEventExecutor executor;
+  private final DeliveryStatistics statistics;
+  private final PayloadTemplates payloadTemplates;
+  private final DeliveryJournal journal;
+  private final DeadLetterStore deadLetters;
+  private final StageLatencies latencies;
+  private final PushEventConfigurationResolver configurationResolver;
+
+  private final Map<String, RepositorySequence> sequences = new ConcurrentHashMap<>();
+  private final AtomicReference<Endpoint> endpoint = new AtomicReference<>();
+  /**
+   * endpoints of the repositories which override the url or token of the global configuration
+   */
+  private final Map<String, AtomicReference<Endpoint>> repositoryEndpoints = new ConcurrentHashMap<>();
+
+  private final ReentrantLock outstandingLock = new ReentrantLock();
+  private final Condition deliveryFinished = outstandingLock.newCondition();
+  private int outstanding;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private DeliveryLanes lanes;
+
+  private volatile Thread worker;
+
+  @Inject
+  public EventDispatcher(Provider<AdvancedHttpClient> httpClientProvider, PushEventConfigurationStore pushEventConfigurationStore, EventQueue queue, PushEventExecutor executor, DeliveryStatistics statistics, PayloadTemplates payloadTemplates, DeliveryJournal journal, DeadLetterStore deadLetters, StageLatencies latencies, PushEventConfigurationResolver configurationResolver) {
+    this.httpClientProvider = httpClientProvider;
+    this.pushEventConfigurationStore = pushEventConfigurationStore;
+    this.queue = queue;
+    this.executor = executor;
+    this.statistics = statistics;
+    this.payloadTemplates = payloadTemplates;
+    this.journal = journal;
+    this.deadLetters = deadLetters;
+    this.latencies = latencies;
+    this.configurationResolver = configurationResolver;
+  }
+
+  /**
+   * numbers the event within its repository, serializes it and queues it for the delivery. Only push events are
+   * rendered with the payload template of the configuration, because the template describes the shape of a push; the
+   * other events, e.g. ref events or sampling summaries, are always sent in their default shape. A dropped event leaves a gap in the numbers of its repository.
+   * <p>
+   * The events of a repository are serialized in parallel, but queued in the order of their numbers. No lock is held
+   * while the event is serialized or while the queue waits for free space, an event only waits for the events of its
+   * repository with lower numbers to be queued.
+   *
+   * @param repositoryId  id of the repository the event belongs to
+   * @param event         the event
+   * @param configuration configuration which is used for the payload template and the overflow handling
+   * @return true if the event was queued, false if it was dropped
+   * @throws IOException if the event could not be serialized
+   */
+  public boolean dispatch(String repositoryId, Event event, PushEventConfiguration configuration) throws IOException {
+    start();
+    PayloadTemplate template = event.isPush() ? payloadTemplates.get(configuration.getPayloadTemplate()) : null;
+    RepositorySequence sequence = sequences.computeIfAbsent(repositoryId, id -> new RepositorySequence());
+    long number = sequence.next();
+    byte[] payload;
+    try {
+      event.setSequence(number);
+      long start = latencies.start();
+      payload = template != null ? template.render(event.toJsonNode()) : event.toBytes();
+      latencies.record(PipelineStage.SERIALIZATION, start);
+    } catch (IOException | RuntimeException e) {
+      // the turn of the event is passed on, otherwise the following events of the repository would wait forever
+      sequence.skip(number);
+      throw e;
+    }
+    sequence.awaitTurn(number);
+    try {
+      return offer(new QueuedEvent(repositoryId, payload, currentEndpoint(repositoryId)), configuration);
+    } finally {
+      sequence.finishTurn(number);
+    }
+  }
+
+  private boolean offer(QueuedEvent event, PushEventConfiguration configuration) {
+    try {
+      return queue.offer(event, configuration);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOG.warn("interrupted while waiting for space in the event queue, event of repository {} is dropped", event.getRepositoryId());
+      return false;
+    }
+  }
+
+  /**
+   * starts the delivery worker if events were spilled to disk before a restart, otherwise the worker is started by
+   * the first dispatched event
+   */
+  public void resume() {
+    if (queue.getEventsOnDisk() > 0) {
+      start();
+    }
+  }
+
+  private void start() {
+    // the lock is only taken once, so that the dispatch of events never waits for a monitor
+    if (worker == null) {
+      synchronized (this) {
+        if (worker == null) {
+          Thread thread = new Thread(this::deliverQueuedEvents, "pushevent-delivery");
+          thread.setDaemon(true);
+          thread.start();
+          worker = thread;
+        }
+      }
+    }
+  }
+
+  /**
+   * stops the delivery. The lanes which were already started deliver their events, the events which were not passed
+   * to a started lane yet are spilled to disk or counted as dropped, depending on the overflow policy.
+   */
+  public void stop() {
+    Thread stopped;
+    synchronized (this) {
+      stopped = worker;
+      worker = null;
+    }
+    if (stopped != null) {
+      stopped.interrupt();
+      try {
+        stopped.join(STOP_TIMEOUT_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      // the lanes are only accessed by the worker, so they are only read once it has finished
+      if (!stopped.isAlive() && lanes != null) {
+        queue.putBack(lanes.removePending());
+      }
+    }
+    executor.shutdown();
+    queue.close(pushEventConfigurationStore.get());
+  }
+
+  private void deliverQueuedEvents() {
+    while (!Thread.currentThread().isInterrupted()) {
+      try {
+        QueuedEvent event = queue.take();
+        statistics.recordQueuedEvents(queue.getQueuedEvents() + 1L);
+        PushEventConfiguration configuration = pushEventConfigurationStore.get();
+        DeliveryLanes current;
+        try {
+          current = lanes(Math.max(1, configuration.getMaxConcurrentDeliveries()));
+          acquireDeliverySlot(current.size() * PENDING_PER_LANE);
+        } catch (InterruptedException e) {
+          // the delivery is stopped, the event is handled with the other queued events
+          queue.putBack(Collections.singletonList(event));
+          throw e;
+        }
+        Executor laneExecutor = task -> executor.execute(task, configuration);
+        try {
+          current.submit(event, laneExecutor);
+        } catch (RejectedExecutionException e) {
+          resumeLane(current, event.getRepositoryId(), laneExecutor);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        LOG.error("unexpected error during the delivery of an event", e);
+      }
+    }
+  }
+
+  /**
+   * starts a lane which was rejected by the saturated executor again. The lane is never drained by the worker itself,
+   * because that would stop the delivery of all other lanes, instead the worker waits until the executor accepts it.
+   */
+  private void resumeLane(DeliveryLanes current, String repositoryId, Executor laneExecutor) throws InterruptedException {
+    long waitMillis = RESUME_WAIT_MILLIS;
+    while (true) {
+      LOG.debug("executor is saturated, wait {}ms to start the delivery lane of repository {}", waitMillis, repositoryId);
+      Thread.sleep(waitMillis);
+      try {
+        current.resume(repositoryId, laneExecutor);
+        return;
+      } catch (RejectedExecutionException e) {
+        waitMillis = Math.min(waitMillis * 2, MAX_RESUME_WAIT_MILLIS);
+      }
+    }
+  }
+
+  private DeliveryLanes lanes(int count) throws InterruptedException {
+    if (lanes == null || lanes.size() != count) {
+      // the events are assigned to other lanes after a change, so the old lanes have to be drained to keep the order
+      awaitDeliveries();
+      lanes = new DeliveryLanes(count, this::deliverAndRelease);
+    }
+    return lanes;
+  }
+
+  private void acquireDeliverySlot(int maxOutstanding) throws InterruptedException {
+    outstandingLock.lockInterruptibly();
+    try {
+      while (outstanding >= maxOutstanding) {
+        deliveryFinished.await();
+      }
+      outstanding++;
+    } finally {
+      outstandingLock.unlock();
+    }
+  }
+
+  private void awaitDeliveries() throws InterruptedException {
+    outstandingLock.lockInterruptibly();
+    try {
+      while (outstanding > 0) {
+        deliveryFinished.await();
+      }
+    } finally {
+      outstandingLock.unlock();
+    }
+  }
+
+  private void releaseDeliverySlot() {
+    outstandingLock.lock();
+    try {
+      outstanding--;
+      deliveryFinished.signalAll();
+    } finally {
+      outstandingLock.unlock();
+    }
+  }
+
+  private void deliverAndRelease(QueuedEvent event) {
+    inFlight.incrementAndGet();
+    try {
+      deliver(event);
+    } catch (RuntimeException e) {
+      LOG.error("unexpected error during the delivery of an event", e);
+    } finally {
+      inFlight.decrementAndGet();
+      releaseDeliverySlot();
+    }
+  }
+
+  /**
+   * @return number of requests which are currently sent to the endpoint
+   */
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  /**
+   * sends the event until it is accepted or the configured number of attempts is reached, events which could not be
+   * delivered are kept as dead letters
+   */
+  private void deliver(QueuedEvent event) {
+    PushEventConfiguration configuration = pushEventConfigurationStore.get();
+    int maxAttempts = configuration.getMaxDeliveryAttempts();
+    List<DeadLetterAttempt> attempts = new ArrayList<>();
+    for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+      String error = send(event);
+      if (error == null) {
+        return;
+      }
+      attempts.add(new DeadLetterAttempt(System.currentTimeMillis(), error));
+      if (attempt < maxAttempts && !backoff(configuration.getRetryBackoffMillis(), attempt)) {
+        break;
+      }
+    }
+    DeadLetter deadLetter = deadLetters.add(event.getRepositoryId(), event.getPayload(), attempts);
+    LOG.warn("could not deliver event of repository {} within {} attempts, kept as dead letter {}", event.getRepositoryId(), attempts.size(), deadLetter.getId());
+  }
+
+  /**
+   * @return false if the thread was interrupted
+   */
+  private boolean backoff(long backoffMillis, int attempt) {
+    try {
+      // the backoff doubles with every attempt
+      Thread.sleep(backoffMillis << Math.min(attempt - 1, 16));
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  /**
+   * sends the event once to the endpoint, records the result in the statistics and the journal
+   *
+   * @param event the serialized event
+   * @return null if the endpoint accepted the event, otherwise the error
+   */
+  public String send(QueuedEvent event) {
+    PushEventConfiguration configuration = pushEventConfigurationStore.get();
+    Endpoint target = event.getEndpoint();
+    if (target == null || (target.isRetired() && configuration.getReloadPolicy() == ReloadPolicy.REROUTE)) {
+      target = currentEndpoint(event.getRepositoryId());
+    }
+    long start = latencies.start();
+    String error = target.send(event.getPayload());
+    long latency = TimeUnit.NANOSECONDS.toMillis(latencies.record(PipelineStage.HTTP, start) - start);
+    if (error == null) {
+      statistics.recordSuccess(target.getUrl(), latency);
+    } else {
+      statistics.recordFailure(target.getUrl(), latency, error);
+    }
+    journal.append(event.getRepositoryId(), error == null, event.getPayload(), configuration);
+    return error;
+  }
+
+  /**
+   * returns the endpoint for the url, token and signing secret of the current effective configuration of the repository. Repositories
+   * without own settings share the endpoint of the global configuration. The current configuration is used instead of
+   * the one of the push, so that a push which started before a change can never bring back the previous endpoint.
+   */
+  private Endpoint currentEndpoint(String repositoryId) {
+    PushEventConfiguration global = pushEventConfigurationStore.get();
+    PushEventConfiguration configuration = configurationResolver.resolve(repositoryId);
+    if (configuration == global || (Objects.equals(configuration.getUrl(), global.getUrl()) && Objects.equals(configuration.getToken(), global.getToken())
+      && Objects.equals(configuration.getSigningSecret(), global.getSigningSecret()))) {
+      if (!repositoryEndpoints.isEmpty()) {
+        // the repository had own settings before
+        AtomicReference<Endpoint> previous = repositoryEndpoints.remove(repositoryId);
+        if (previous != null && previous.get() != null) {
+          previous.get().retire();
+        }
+      }
+      return currentEndpoint(endpoint, configuration);
+    }
+    return currentEndpoint(repositoryEndpoints.computeIfAbsent(repositoryId, id -> new AtomicReference<>()), configuration);
+  }
+
+  /**
+   * returns the endpoint of the reference if it matches the url and token of the configuration. If they were changed,
+   * a new endpoint is created and the previous one is retired. Only the change itself swaps the reference, the regular
+   * case is a plain read.
+   */
+  private Endpoint currentEndpoint(AtomicReference<Endpoint> reference, PushEventConfiguration configuration) {
+    Endpoint current = reference.get();
+    while (current == null || !current.matches(configuration)) {
+      Endpoint created = new Endpoint(httpClientProvider.get(), configuration);
+      if (reference.compareAndSet(current, created)) {
+        if (current != null) {
+          current.retire();
+        }
+        return created;
+      }
+      current = reference.get();
+    }
+    return current;
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.OverflowPolicy;
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The EventQueue buffers serialized events between the subscriber and the delivery to the endpoint.
+ * <p>
+ * The size of the queue is limited by the sum of the payload sizes. What happens if an event does not fit into the
+ * queue is defined by the {@link OverflowPolicy} of the configuration. Every dropped or spilled event is counted and
+ * logged, so that operators know exactly what was lost.
+ */
+@Singleton
+public class EventQueue {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventQueue.class);
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition notEmpty = lock.newCondition();
+  private final Condition notFull = lock.newCondition();
+  private final Deque<QueuedEvent> events = new ArrayDeque<>();
+
+  // written under lock, read without it
+  private volatile long queuedBytes;
+  private volatile int queuedEvents;
+
+  private final SpillStore spillStore;
+
+  private final LongAdder droppedEvents = new LongAdder();
+  private final LongAdder droppedBytes = new LongAdder();
+  private final LongAdder spilledEvents = new LongAdder();
+  private final LongAdder spilledBytes = new LongAdder();
+
+  @Inject
+  public EventQueue(SCMContextProvider contextProvider) {
+    this(new SpillStore(new File(contextProvider.getBaseDirectory(), "pushevent" + File.separator + "spill")));
+  }
+
+  EventQueue(SpillStore spillStore) {
+    this.spillStore = spillStore;
+  }
+
+  /**
+   * adds the event to the queue, the configured {@link OverflowPolicy} is applied if there is not enough space
+   *
+   * @param event         serialized event
+   * @param configuration configuration with the overflow policy and the limits of the queue
+   * @return true if the event was queued or spilled, false if it was dropped
+   * @throws InterruptedException if the thread was interrupted while waiting for free space
+   */
+  public boolean offer(QueuedEvent event, PushEventConfiguration configuration) throws InterruptedException {
+    OverflowPolicy policy = configuration.getOverflowPolicy();
+    long maxBytes = configuration.getMaxQueueBytes();
+    List<QueuedEvent> evicted = Collections.emptyList();
+
+    lock.lockInterruptibly();
+    try {
+      // as long as there are spilled events, new events are spilled too, to keep them in order
+      boolean spill = policy == OverflowPolicy.SPILL_TO_DISK && !spillStore.isEmpty();
+      if (!spill && !fits(event, maxBytes)) {
+        switch (policy) {
+          case BLOCK:
+            if (!awaitSpace(event, maxBytes, configuration.getBlockTimeoutMillis())) {
+              reportDropped(event, "no space became available within " + configuration.getBlockTimeoutMillis() + "ms");
+              return false;
+            }
+            break;
+          case DROP_OLDEST:
+            evicted = evict(event, maxBytes);
+            break;
+          case SPILL_TO_DISK:
+            spill = true;
+            break;
+          case DROP_NEWEST:
+          default:
+            reportDropped(event, "queue is full");
+            return false;
+        }
+      }
+      if (!spill) {
+        enqueue(event);
+        return true;
+      }
+      // the event is written while the lock is held, otherwise a later event could see an empty spill store and
+      // overtake it in memory
+      return spill(event);
+    } finally {
+      lock.unlock();
+      evicted.forEach(oldest -> reportDropped(oldest, "evicted by a newer event"));
+    }
+  }
+
+  private boolean fits(QueuedEvent event, long maxBytes) {
+    // a single event is always accepted, otherwise events larger than the queue could never be delivered
+    return events.isEmpty() || queuedBytes + event.size() <= maxBytes;
+  }
+
+  private boolean awaitSpace(QueuedEvent event, long maxBytes, long timeoutMillis) throws InterruptedException {
+    long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    while (!fits(event, maxBytes)) {
+      if (nanos <= 0) {
+        return false;
+      }
+      nanos = notFull.awaitNanos(nanos);
+    }
+    return true;
+  }
+
+  private List<QueuedEvent> evict(QueuedEvent event, long maxBytes) {
+    List<QueuedEvent> evicted = new ArrayList<>();
+    while (!fits(event, maxBytes)) {
+      evicted.add(dequeue());
+    }
+    return evicted;
+  }
+
+  private void enqueue(QueuedEvent event) {
+    events.addLast(event);
+    queuedBytes += event.size();
+    queuedEvents++;
+    notEmpty.signal();
+  }
+
+  private QueuedEvent dequeue() {
+    QueuedEvent event = events.pollFirst();
+    if (event != null) {
+      queuedBytes -= event.size();
+      queuedEvents--;
+      notFull.signalAll();
+    }
+    return event;
+  }
+
+  private boolean spill(QueuedEvent event) {
+    try {
+      spillStore.write(event);
+    } catch (IOException e) {
+      LOG.error("could not spill event to disk", e);
+      reportDropped(event, "spilling failed");
+      return false;
+    }
+    spilledEvents.increment();
+    spilledBytes.add(event.size());
+    LOG.warn("spilled event of repository {} ({} bytes) to disk, {} events spilled in total, {} waiting on disk",
+      event.getRepositoryId(), event.size(), spilledEvents.sum(), spillStore.size());
+    notEmpty.signal();
+    return true;
+  }
+
+  private void reportDropped(QueuedEvent event, String reason) {
+    droppedEvents.increment();
+    droppedBytes.add(event.size());
+    LOG.warn("dropped event of repository {} ({} bytes) because {}, {} events with {} bytes dropped in total",
+      event.getRepositoryId(), event.size(), reason, droppedEvents.sum(), droppedBytes.sum());
+  }
+
+  /**
+   * takes the oldest event from the queue, events which were spilled to disk are taken after the queue in memory
+   * has been drained
+   *
+   * @return the oldest event
+   * @throws InterruptedException if the thread was interrupted while waiting for an event
+   */
+  public QueuedEvent take() throws InterruptedException {
+    while (true) {
+      lock.lockInterruptibly();
+      try {
+        QueuedEvent event = dequeue();
+        if (event != null) {
+          return event;
+        }
+        if (spillStore.isEmpty()) {
+          notEmpty.await();
+          continue;
+        }
+      } finally {
+        lock.unlock();
+      }
+      QueuedEvent spilled = spillStore.poll();
+      if (spilled != null) {
+        return spilled;
+      }
+    }
+  }
+
+  /**
+   * puts events which were taken, but not delivered, back to the head of the queue, e.g. when the delivery is stopped
+   *
+   * @param taken the events in the order in which they were taken
+   */
+  void putBack(List<QueuedEvent> taken) {
+    lock.lock();
+    try {
+      for (int i = taken.size() - 1; i >= 0; i--) {
+        QueuedEvent event = taken.get(i);
+        events.addFirst(event);
+        queuedBytes += event.size();
+        queuedEvents++;
+      }
+      notEmpty.signal();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * removes the events which are still queued in memory when SCM-Manager shuts down. With
+   * {@link OverflowPolicy#SPILL_TO_DISK} they are written to disk in front of the spilled events, so that they are sent
+   * after the restart, otherwise they are counted and logged as dropped.
+   *
+   * @param configuration configuration with the overflow policy
+   */
+  void close(PushEventConfiguration configuration) {
+    boolean spill = configuration.getOverflowPolicy() == OverflowPolicy.SPILL_TO_DISK;
+    long spilled = 0;
+    long dropped = 0;
+    long bytes = 0;
+    lock.lock();
+    try {
+      // the newest event is written first, so that every event is written in front of the newer ones
+      QueuedEvent event;
+      while ((event = pollLast()) != null) {
+        if (spill && spillFirst(event)) {
+          spilled++;
+          continue;
+        }
+        droppedEvents.increment();
+        droppedBytes.add(event.size());
+        dropped++;
+        bytes += event.size();
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (spilled > 0) {
+      LOG.warn("spilled {} queued events to disk because SCM-Manager shuts down, {} events waiting on disk", spilled, spillStore.size());
+    }
+    if (dropped > 0) {
+      LOG.warn("dropped {} queued events ({} bytes) because SCM-Manager shuts down, {} events with {} bytes dropped in total",
+        dropped, bytes, droppedEvents.sum(), droppedBytes.sum());
+    }
+  }
+
+  private QueuedEvent pollLast() {
+    QueuedEvent event = events.pollLast();
+    if (event != null) {
+      queuedBytes -= event.size();
+      queuedEvents--;
+    }
+    return event;
+  }
+
+  private boolean spillFirst(QueuedEvent event) {
+    try {
+      spillStore.writeFirst(event);
+    } catch (IOException e) {
+      LOG.error("could not spill event of repository {} to disk", event.getRepositoryId(), e);
+      return false;
+    }
+    spilledEvents.increment();
+    spilledBytes.add(event.size());
+    return true;
+  }
+
+  public int getQueuedEvents() {
+    return queuedEvents;
+  }
+
+  public long getQueuedBytes() {
+    return queuedBytes;
+  }
+
+  public long getDroppedEvents() {
+    return droppedEvents.sum();
+  }
+
+  public long getDroppedBytes() {
+    return droppedBytes.sum();
+  }
+
+  public long getSpilledEvents() {
+    return spilledEvents.sum();
+  }
+
+  public long getSpilledBytes() {
+    return spilledBytes.sum();
+  }
+
+  public int getEventsOnDisk() {
+    return spillStore.size();
+  }
+}
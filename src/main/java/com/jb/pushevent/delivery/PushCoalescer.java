@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Commit;
+import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.execution.PushEventExecutor;
+import com.jb.pushevent.pathcollect.NetFileChanges;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The PushCoalescer merges consecutive pushes of the same user to the same repository which arrive within a short
+ * window into a single event.
+ * <p>
+ * CI bots and {@code git push --all} produce bursts of pushes within milliseconds, coalescing them reduces the number
+ * of requests at the cost of a small delay. Commits which are part of several pushes are only sent once. A push is
+ * never merged beyond the {@code maxCommitsPerEvent} and {@code maxEventBytes} of the configuration, instead the
+ * pending push is dispatched right away. A repository has at most one pending push: a push of another user or a push
+ * which is not coalesced dispatches the pending push of its repository first, so that the pushes of a repository are
+ * never reordered.
+ * <p>
+ * Pushes are submitted by the task of their repository in the {@link PushEventExecutor}, the end of a window is
+ * processed as the next task of the repository as well. So the pending push of a repository is never changed
+ * concurrently and the scheduler thread never waits for the dispatcher, e.g. for space in a full queue.
+ */
+@Singleton
+public class PushCoalescer {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PushCoalescer.class);
+
+  private final EventDispatcher eventDispatcher;
+  private final PushEventExecutor executor;
+  private final ConcurrentMap<String, PendingPush> pending = new ConcurrentHashMap<>();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pushevent-coalescer");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @Inject
+  public PushCoalescer(EventDispatcher eventDispatcher, PushEventExecutor executor) {
+    this.eventDispatcher = eventDispatcher;
+    this.executor = executor;
+  }
+
+  /**
+   * dispatches the push after the coalescing window, following pushes of the same user to the repository which
+   * arrive in the meantime are merged into it. Must be called by the task of the repository, see
+   * {@link PushEventExecutor#executeInOrder}.
+   *
+   * @param push          the push
+   * @param configuration configuration with the coalescing window
+   * @throws IOException if the push could not be serialized
+   */
+  public void submit(Push push, PushEventConfiguration configuration) throws IOException {
+    String repositoryId = push.getRepositoryId();
+    long window = configuration.getCoalescingWindowMillis();
+    // chunks of a split push are sent in order and are never merged
+    if (window <= 0 || push.isChunked()) {
+      flush(repositoryId);
+      dispatch(push, configuration);
+      return;
+    }
+
+    PendingPush existing = pending.get(repositoryId);
+    if (existing != null && existing.merge(push)) {
+      return;
+    }
+    // the pending push belongs to another user or it would exceed the limits of an event with the push
+    flush(repositoryId);
+    PendingPush created = new PendingPush(push, configuration);
+    pending.put(repositoryId, created);
+    scheduler.schedule(
+      () -> executor.executeInOrder(repositoryId, () -> flush(repositoryId, created), configuration),
+      window, TimeUnit.MILLISECONDS
+    );
+  }
+
+  private void flush(String repositoryId) {
+    PendingPush pendingPush = pending.get(repositoryId);
+    if (pendingPush != null) {
+      flush(repositoryId, pendingPush);
+    }
+  }
+
+  private void flush(String repositoryId, PendingPush pendingPush) {
+    pending.remove(repositoryId, pendingPush);
+    if (!pendingPush.close()) {
+      // already dispatched
+      return;
+    }
+    try {
+      dispatch(pendingPush.push, pendingPush.configuration);
+    } catch (IOException | RuntimeException e) {
+      LOG.error("could not dispatch coalesced push of repository {}", repositoryId, e);
+    }
+  }
+
+  private void dispatch(Push push, PushEventConfiguration configuration) throws IOException {
+    eventDispatcher.dispatch(push.getRepositoryId(), Event.forPush(push), configuration);
+  }
+
+  /**
+   * dispatches all pending pushes immediately and stops the coalescer
+   */
+  public void stop() {
+    scheduler.shutdownNow();
+    pending.forEach(this::flush);
+  }
+
+  private static class PendingPush {
+
+    private final Push push;
+    private final PushEventConfiguration configuration;
+    private final ReentrantLock lock = new ReentrantLock();
+    private boolean closed;
+    private int merged;
+    private long commitBytes;
+
+    PendingPush(Push push, PushEventConfiguration configuration) throws IOException {
+      this.push = push;
+      this.configuration = configuration;
+      if (configuration.getMaxEventBytes() > 0 && push.getCommits() != null) {
+        for (Commit commit : push.getCommits()) {
+          commitBytes += commit.serializedSize();
+        }
+      }
+    }
+
+    /**
+     * @return false if the push was already dispatched, if the other push belongs to another user or if it would exceed
+     * the limits of an event with the other push
+     */
+    boolean merge(Push other) throws IOException {
+      lock.lock();
+      try {
+        if (closed || !Objects.equals(push.getUser(), other.getUser()) || !fits(other)) {
+          return false;
+        }
+        push.mergeCommits(other);
+        if (push.getFileChanges() != null && other.getFileChanges() != null) {
+          NetFileChanges netFileChanges = new NetFileChanges();
+          netFileChanges.apply(push.getFileChanges());
+          netFileChanges.apply(other.getFileChanges());
+          push.setFileChanges(netFileChanges.toFileChanges());
+        }
+        merged++;
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    private boolean fits(Push other) throws IOException {
+      int maxCommits = configuration.getMaxCommitsPerEvent();
+      long maxBytes = configuration.getMaxEventBytes();
+      if ((maxCommits <= 0 && maxBytes <= 0) || other.getCommits() == null) {
+        return true;
+      }
+      Set<String> commitIds = new HashSet<>();
+      if (push.getCommits() != null) {
+        push.getCommits().forEach(commit -> commitIds.add(commit.getCommitId()));
+      }
+      int commits = commitIds.size();
+      long bytes = commitBytes;
+      for (Commit commit : other.getCommits()) {
+        if (commitIds.add(commit.getCommitId())) {
+          commits++;
+          bytes += maxBytes > 0 ? commit.serializedSize() : 0;
+        }
+      }
+      if ((maxCommits > 0 && commits > maxCommits) || (maxBytes > 0 && bytes > maxBytes)) {
+        return false;
+      }
+      commitBytes = bytes;
+      return true;
+    }
+
+    /**
+     * @return false if the push was already closed before
+     */
+    boolean close() {
+      lock.lock();
+      try {
+        if (closed) {
+          return false;
+        }
+        closed = true;
+        if (merged > 0) {
+          LOG.debug("coalesced {} pushes to repository {}", merged + 1, push.getRepositoryId());
+        }
+        return true;
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+/**
+ * A serialized event waiting for its delivery.
+ * <p>
+ * The payload is serialized before the event is queued, so that the memory used by the queue can be accounted by
+ * the real size of the events.
+ */
+public class QueuedEvent {
+
+  private final String repositoryId;
+  private final byte[] payload;
+  private final long enqueuedAt;
+  /**
+   * endpoint which was current when the event was queued, it is not kept if the event is spilled to disk
+   */
+  private final Endpoint endpoint;
+
+  public QueuedEvent(String repositoryId, byte[] payload) {
+    this(repositoryId, payload, System.currentTimeMillis(), null);
+  }
+
+  QueuedEvent(String repositoryId, byte[] payload, Endpoint endpoint) {
+    this(repositoryId, payload, System.currentTimeMillis(), endpoint);
+  }
+
+  QueuedEvent(String repositoryId, byte[] payload, long enqueuedAt) {
+    this(repositoryId, payload, enqueuedAt, null);
+  }
+
+  private QueuedEvent(String repositoryId, byte[] payload, long enqueuedAt, Endpoint endpoint) {
+    this.repositoryId = repositoryId;
+    this.payload = payload;
+    this.enqueuedAt = enqueuedAt;
+    this.endpoint = endpoint;
+  }
+
+  public String getRepositoryId() {
+    return repositoryId;
+  }
+
+  public byte[] getPayload() {
+    return payload;
+  }
+
+  Endpoint getEndpoint() {
+    return endpoint;
+  }
+
+  public long getEnqueuedAt() {
+    return enqueuedAt;
+  }
+
+  public int size() {
+    return payload.length;
+  }
+}
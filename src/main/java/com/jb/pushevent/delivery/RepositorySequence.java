@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Numbers the events of a repository and lets them enter the queue in the order of their numbers.
+ * <p>
+ * Every event takes a number and later waits for its turn, which starts as soon as the events with lower numbers have
+ * passed on their turns. The lock is only held to check and pass the turn, never while an event is serialized or
+ * queued.
+ */
+class RepositorySequence {
+
+  private final AtomicLong assigned = new AtomicLong();
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition turnPassed = lock.newCondition();
+  private long queued;
+
+  /**
+   * @return the number of the next event of the repository
+   */
+  long next() {
+    return assigned.incrementAndGet();
+  }
+
+  /**
+   * waits until all events with lower numbers have been queued or dropped
+   */
+  void awaitTurn(long number) {
+    lock.lock();
+    try {
+      // not interruptible, the turn has to be passed on in any case
+      while (queued != number - 1) {
+        turnPassed.awaitUninterruptibly();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * passes on the turn of an event which is not queued at all
+   */
+  void skip(long number) {
+    awaitTurn(number);
+    finishTurn(number);
+  }
+
+  /**
+   * passes on the turn to the event with the next number
+   */
+  void finishTurn(long number) {
+    lock.lock();
+    try {
+      queued = number;
+      turnPassed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores events on the local disk, if they do not fit into the delivery queue.
+ * <p>
+ * Every event is written to its own file, the files are named by a sequence number so that the events can be read
+ * in the order in which they were written.
+ */
+class SpillStore {
+
+  private static final Logger LOG = LoggerFactory.getLogger(SpillStore.class);
+
+  private static final String SUFFIX = ".event";
+
+  private final File directory;
+  private final ConcurrentSkipListSet<Long> sequences = new ConcurrentSkipListSet<>();
+  // the events are written one after another, so that they become visible to poll in the order of their sequences
+  private final ReentrantLock writeLock = new ReentrantLock();
+  private long nextSequence;
+
+  SpillStore(File directory) {
+    this.directory = directory;
+    restore();
+  }
+
+  /**
+   * picks up the events which were spilled before a restart
+   */
+  private void restore() {
+    File[] files = directory.listFiles((dir, name) -> name.endsWith(SUFFIX));
+    if (files == null) {
+      return;
+    }
+    Arrays.stream(files).forEach(file -> {
+      try {
+        sequences.add(Long.parseLong(file.getName().substring(0, file.getName().length() - SUFFIX.length())));
+      } catch (NumberFormatException e) {
+        LOG.warn("ignoring unknown file {} in spill directory", file);
+      }
+    });
+    if (!sequences.isEmpty()) {
+      nextSequence = sequences.last() + 1;
+      LOG.info("found {} spilled events from a previous run", sequences.size());
+    }
+  }
+
+  void write(QueuedEvent event) throws IOException {
+    writeLock.lock();
+    try {
+      write(event, nextSequence++);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  private void write(QueuedEvent event, long sequence) throws IOException {
+    if (!directory.exists() && !directory.mkdirs()) {
+      throw new IOException("could not create spill directory " + directory);
+    }
+    try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file(sequence).toPath())))) {
+      output.writeUTF(event.getRepositoryId());
+      output.writeLong(event.getEnqueuedAt());
+      output.writeInt(event.size());
+      output.write(event.getPayload());
+    }
+    sequences.add(sequence);
+  }
+
+  /**
+   * writes the event in front of the spilled events, e.g. an event which was queued in memory before them
+   */
+  void writeFirst(QueuedEvent event) throws IOException {
+    writeLock.lock();
+    try {
+      if (sequences.isEmpty()) {
+        write(event);
+        return;
+      }
+      write(event, sequences.first() - 1);
+    } finally {
+      writeLock.unlock();
+    }
+  }
+
+  /**
+   * reads and removes the oldest spilled event
+   *
+   * @return the oldest event or null if there are no spilled events
+   */
+  QueuedEvent poll() {
+    Long sequence;
+    while ((sequence = sequences.pollFirst()) != null) {
+      File file = file(sequence);
+      try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+        String repositoryId = input.readUTF();
+        long enqueuedAt = input.readLong();
+        byte[] payload = new byte[input.readInt()];
+        input.readFully(payload);
+        return new QueuedEvent(repositoryId, payload, enqueuedAt);
+      } catch (IOException e) {
+        LOG.error("could not read spilled event {}, the event is lost", file, e);
+      } finally {
+        delete(file);
+      }
+    }
+    return null;
+  }
+
+  private void delete(File file) {
+    try {
+      Files.deleteIfExists(file.toPath());
+    } catch (IOException e) {
+      LOG.warn("could not delete spilled event {}", file, e);
+    }
+  }
+
+  boolean isEmpty() {
+    return sequences.isEmpty();
+  }
+
+  int size() {
+    return sequences.size();
+  }
+
+  private File file(long sequence) {
+    return new File(directory, String.format("%019d%s", sequence, SUFFIX));
+  }
+}
@@ -25,57 +25,150 @@ package com.jb.pushevent.dto;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import lombok.Getter;
 
+import java.io.IOException;
 import java.util.List;
 
 @Getter
 public class Commit {
 
+  private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
   private final ObjectNode node;
+  private final FieldProjection projection;
 
   private String commitId;
   private String commitMessage;
   private Long dateCommitted;
   private String author;
+  private String authorUser; // name of the SCM-Manager user of the author
   private FileChanges fileChanges = new FileChanges(new ObjectMapper().createObjectNode());
   private List<String> branches;
+  private boolean degraded;
 
   public Commit(ObjectNode node) {
+    this(node, FieldProjection.ALL);
+  }
+
+  /**
+   * @param node       json node of the commit
+   * @param projection fields of the commit which are written to the json, relative to the commit
+   */
+  public Commit(ObjectNode node, FieldProjection projection) {
     this.node = node;
+    this.projection = projection;
   }
 
   public void setCommitId(String id) {
     this.commitId = id;
-    node.put("commitId", commitId);
+    if (projection.includes("commitId")) {
+      node.put("commitId", commitId);
+    }
   }
 
   public void setCommitMessage(String commitMessage) {
     this.commitMessage = commitMessage;
-    node.put("message", commitMessage);
+    if (projection.includes("message")) {
+      node.put("message", commitMessage);
+    }
   }
 
   public void setDateCommitted(Long dateCommitted) {
     this.dateCommitted = dateCommitted;
-    node.put("dateCommitted", dateCommitted);
+    if (projection.includes("dateCommitted")) {
+      node.put("dateCommitted", dateCommitted);
+    }
   }
 
   public void setFilesChanged(FileChanges changes) {
     this.fileChanges = changes;
-    node.set("fileChanges", changes.toJsonNode());
+    if (projection.includes("fileChanges")) {
+      node.set("fileChanges", changes.toJsonNode(projection.nested("fileChanges")));
+    }
+  }
+
+  /**
+   * marks that the file changes of the commit are missing, because the processing budget of the push was exceeded
+   */
+  public void setDegraded(boolean degraded) {
+    this.degraded = degraded;
+    if (projection.includes("degraded")) {
+      node.put("degraded", degraded);
+    }
   }
 
   public void setAuthor(String author) {
     this.author = author;
-    node.put("author", author);
+    if (projection.includes("author")) {
+      node.put("author", author);
+    }
+  }
+
+  public void setAuthorUser(String authorUser) {
+    this.authorUser = authorUser;
+    if (projection.includes("authorUser")) {
+      node.put("authorUser", authorUser);
+    }
   }
 
   public void setBranches(List<String> branches) {
     this.branches = branches;
-    ArrayNode arrayNode = this.node.putArray("branches");
-    branches.forEach(arrayNode::add);
+    if (projection.includes("branches")) {
+      ArrayNode arrayNode = this.node.putArray("branches");
+      branches.forEach(arrayNode::add);
+    }
+  }
+
+  /**
+   * @return a copy with the same values, which can be modified without changing this commit, e.g. to set other
+   * branches. The values of the json node are shared.
+   */
+  public Commit copy() {
+    PreserializedNode copyNode = new PreserializedNode();
+    copyNode.setAll(node);
+    Commit copy = new Commit(copyNode, projection);
+    copy.commitId = commitId;
+    copy.commitMessage = commitMessage;
+    copy.dateCommitted = dateCommitted;
+    copy.author = author;
+    copy.authorUser = authorUser;
+    copy.fileChanges = fileChanges;
+    copy.branches = branches;
+    copy.degraded = degraded;
+    return copy;
+  }
+
+  /**
+   * serializes the commit once, so that every payload which contains the commit copies its bytes. The commit must not
+   * be modified afterwards.
+   *
+   * @return size of the serialized commit
+   * @throws IOException if the commit could not be serialized
+   */
+  public long preserialize() throws IOException {
+    if (node instanceof PreserializedNode) {
+      return ((PreserializedNode) node).preserialize().length;
+    }
+    return serializedSize();
+  }
+
+  /**
+   * @return size of the commit in the serialized payload
+   * @throws IOException if the commit could not be serialized
+   */
+  public long serializedSize() throws IOException {
+    if (node instanceof PreserializedNode && ((PreserializedNode) node).getSerialized() != null) {
+      return ((PreserializedNode) node).getSerialized().length;
+    }
+    CountingOutputStream output = new CountingOutputStream(ByteStreams.nullOutputStream());
+    WRITER.writeValue(output, node);
+    return output.getCount();
   }
 
   public JsonNode toJsonNode() {
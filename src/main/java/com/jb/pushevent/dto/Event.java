@@ -23,27 +23,72 @@
  */
 package com.jb.pushevent.dto;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.Getter;
 
+import java.time.Instant;
+import java.util.UUID;
 
 @Getter
 public class Event {
 
+  private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
   private final ObjectNode node;
 
   private String id;
   static final String APPLICATION = "scmm";
   static final String TYPE = "push";
+  private String type;
   private String time;
+  private long sequence; // number of the event within its repository
 
   private ObjectNode data;
 
   public Event(ObjectNode node) {
     this.node = node;
     this.node.put("application", APPLICATION);
-    this.node.put("type", TYPE);
+    setType(TYPE);
+  }
+
+  public static Event forPush(Push push) {
+    Event event = new Event(new ObjectMapper().createObjectNode());
+    event.setData(push);
+    event.setId(UUID.randomUUID().toString());
+    event.setTime(Instant.now().toString());
+    return event;
+  }
+
+  /**
+   * creates an event which is not caused by a push, e.g. a summary of the plugin
+   *
+   * @param type type of the event
+   * @param data content of the event
+   * @return the event
+   */
+  public static Event of(String type, ObjectNode data) {
+    Event event = new Event(new ObjectMapper().createObjectNode());
+    event.setType(type);
+    event.setData(data);
+    event.setId(UUID.randomUUID().toString());
+    event.setTime(Instant.now().toString());
+    return event;
+  }
+
+  public void setType(String type) {
+    this.type = type;
+    this.node.put("type", type);
+  }
+
+  /**
+   * @return true if the event describes a push, false for the other events of the plugin, e.g. ref events or summaries
+   */
+  public boolean isPush() {
+    return TYPE.equals(type);
   }
 
   public void setId(String id) {
@@ -56,14 +101,31 @@ public class Event {
     this.node.put("time", time);
   }
 
+  /**
+   * @param sequence consecutive number of the event within its repository, starting with 1
+   */
+  public void setSequence(long sequence) {
+    this.sequence = sequence;
+    this.node.put("sequence", sequence);
+  }
+
   public void setData(Push data) {
     this.data = data.getNode();
     node.set("data", data.toJsonNode());
   }
 
+  public void setData(ObjectNode data) {
+    this.data = data;
+    node.set("data", data);
+  }
+
   public JsonNode toJsonNode() {
     return node;
   }
+
+  public byte[] toBytes() throws JsonProcessingException {
+    return WRITER.writeValueAsBytes(node);
+  }
 }
 
 /*
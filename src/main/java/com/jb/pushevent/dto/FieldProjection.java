@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.dto;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Selects the fields of the payload which are sent.
+ * <p>
+ * Fields are addressed by their path in the push, e.g. {@code user}, {@code commits.message} or
+ * {@code commits.fileChanges.added}. A field is included if it, one of its parents or one of its children is selected.
+ * An empty projection includes every field. {@code commitCount} is only sent if it is selected explicitly.
+ * {@link #NONE} is the projection of a nested object of which no field is selected.
+ */
+public final class FieldProjection {
+
+  public static final FieldProjection ALL = new FieldProjection(Collections.emptySet(), true);
+
+  public static final FieldProjection NONE = new FieldProjection(Collections.emptySet(), false);
+
+  private static final char SEPARATOR = '.';
+
+  private final Set<String> fields;
+  private final boolean all;
+
+  private FieldProjection(Set<String> fields, boolean all) {
+    this.fields = fields;
+    this.all = all;
+  }
+
+  public static FieldProjection of(Collection<String> fields) {
+    if (fields == null || fields.isEmpty()) {
+      return ALL;
+    }
+    Set<String> normalized = new LinkedHashSet<>();
+    for (String field : fields) {
+      if (field != null && !field.trim().isEmpty()) {
+        normalized.add(field.trim());
+      }
+    }
+    return normalized.isEmpty() ? ALL : new FieldProjection(normalized, false);
+  }
+
+  /**
+   * @param path path of the field
+   * @return true if the field or a part of it is sent
+   */
+  public boolean includes(String path) {
+    if (all || isSelected(path)) {
+      return true;
+    }
+    String prefix = path + SEPARATOR;
+    for (String field : fields) {
+      if (field.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @param path path of the field
+   * @return true if the field or one of its parents is selected explicitly
+   */
+  public boolean selects(String path) {
+    return !all && includes(path);
+  }
+
+  /**
+   * @param prefix path of the nested object
+   * @return the projection relative to the nested object, {@link #NONE} if no field of the object is selected
+   */
+  public FieldProjection nested(String prefix) {
+    if (all || isSelected(prefix)) {
+      return ALL;
+    }
+    String start = prefix + SEPARATOR;
+    Set<String> nested = new LinkedHashSet<>();
+    for (String field : fields) {
+      if (field.startsWith(start)) {
+        nested.add(field.substring(start.length()));
+      }
+    }
+    return nested.isEmpty() ? NONE : new FieldProjection(nested, false);
+  }
+
+  private boolean isSelected(String path) {
+    for (String parent = path; parent != null; parent = parent(parent)) {
+      if (fields.contains(parent)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String parent(String path) {
+    int index = path.lastIndexOf(SEPARATOR);
+    return index < 0 ? null : path.substring(0, index);
+  }
+}
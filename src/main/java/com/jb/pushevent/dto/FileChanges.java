@@ -83,4 +83,21 @@ public class FileChanges {
     return node;
   }
 
+  /**
+   * @param projection kinds of changes which are sent
+   * @return the json node with the projected kinds of changes only
+   */
+  public JsonNode toJsonNode(FieldProjection projection) {
+    if (projection == FieldProjection.ALL) {
+      return node;
+    }
+    ObjectNode projected = node.objectNode();
+    node.fields().forEachRemaining(field -> {
+      if (projection.includes(field.getKey())) {
+        projected.set(field.getKey(), field.getValue());
+      }
+    });
+    return projected;
+  }
+
 }
@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An object node which can be serialized once. Afterwards the node writes the serialized bytes as they are, instead of
+ * serializing its children again, so that a node which is part of several payloads costs only a copy of its bytes.
+ * The node can still be read like any other node, e.g. by payload templates, but it must not be modified once it is
+ * serialized.
+ */
+@SuppressWarnings("java:S2160") // the serialized bytes are derived from the children, which are compared by equals
+public class PreserializedNode extends ObjectNode {
+
+  private static final ObjectWriter WRITER = new ObjectMapper().writer();
+
+  private transient volatile byte[] serialized;
+
+  public PreserializedNode() {
+    super(JsonNodeFactory.instance);
+  }
+
+  /**
+   * serializes the node, later serializations write the returned bytes
+   *
+   * @return the serialized node
+   * @throws IOException if the node could not be serialized
+   */
+  public byte[] preserialize() throws IOException {
+    byte[] bytes = serialized;
+    if (bytes == null) {
+      bytes = WRITER.writeValueAsBytes(this);
+      serialized = bytes;
+    }
+    return bytes;
+  }
+
+  /**
+   * @return the serialized node or null if it was not serialized yet
+   */
+  public byte[] getSerialized() {
+    return serialized;
+  }
+
+  @Override
+  public void serialize(JsonGenerator generator, SerializerProvider provider) throws IOException {
+    byte[] bytes = serialized;
+    if (bytes != null) {
+      generator.writeRawValue(new RawJson(bytes));
+    } else {
+      super.serialize(generator, provider);
+    }
+  }
+
+  /**
+   * Serialized json which is copied to the output. Byte based generators copy the bytes, character based generators
+   * decode them.
+   */
+  private static class RawJson implements SerializableString {
+
+    private final byte[] bytes;
+    private String value;
+
+    RawJson(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public String getValue() {
+      if (value == null) {
+        value = new String(bytes, StandardCharsets.UTF_8);
+      }
+      return value;
+    }
+
+    @Override
+    public int charLength() {
+      return getValue().length();
+    }
+
+    @Override
+    public byte[] asUnquotedUTF8() {
+      return bytes;
+    }
+
+    @Override
+    public int appendUnquotedUTF8(byte[] buffer, int offset) {
+      if (offset + bytes.length > buffer.length) {
+        return -1;
+      }
+      System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+      return bytes.length;
+    }
+
+    @Override
+    public int appendUnquoted(char[] buffer, int offset) {
+      String chars = getValue();
+      if (offset + chars.length() > buffer.length) {
+        return -1;
+      }
+      chars.getChars(0, chars.length(), buffer, offset);
+      return chars.length();
+    }
+
+    @Override
+    public int writeUnquotedUTF8(OutputStream out) throws IOException {
+      out.write(bytes);
+      return bytes.length;
+    }
+
+    @Override
+    public int putUnquotedUTF8(ByteBuffer buffer) {
+      if (bytes.length > buffer.remaining()) {
+        return -1;
+      }
+      buffer.put(bytes);
+      return bytes.length;
+    }
+
+    // raw json is never written as a string
+
+    @Override
+    public char[] asQuotedChars() {
+      throw new UnsupportedOperationException("raw json cannot be quoted");
+    }
+
+    @Override
+    public byte[] asQuotedUTF8() {
+      throw new UnsupportedOperationException("raw json cannot be quoted");
+    }
+
+    @Override
+    public int appendQuotedUTF8(byte[] buffer, int offset) {
+      throw new UnsupportedOperationException("raw json cannot be quoted");
+    }
+
+    @Override
+    public int appendQuoted(char[] buffer, int offset) {
+      throw new UnsupportedOperationException("raw json cannot be quoted");
+    }
+
+    @Override
+    public int writeQuotedUTF8(OutputStream out) {
+      throw new UnsupportedOperationException("raw json cannot be quoted");
+    }
+
+    @Override
+    public int putQuotedUTF8(ByteBuffer buffer) {
+      throw new UnsupportedOperationException("raw json cannot be quoted");
+    }
+  }
+}
@@ -29,14 +29,18 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import lombok.Getter;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 @Getter
 public class Push {
 
   private final ObjectNode node;
+  private final FieldProjection projection;
 
   private String id;
   private String user;
@@ -49,53 +53,158 @@ public class Push {
   private String repositoryNamespace;
   private String repositoryName;
 
-  private Set<Commit> commits;
+  private List<Commit> commits;
+  private ArrayNode commitsNode;
+
+  private FileChanges fileChanges; // net changes of the whole push
+
+  private ObjectNode chunk; // set if the push is split into several events
+
+  private String degradation; // set if the push exceeded its processing budget
 
   public Push(ObjectNode node) {
+    this(node, FieldProjection.ALL);
+  }
+
+  /**
+   * @param node       json node of the push
+   * @param projection fields which are written to the json, the values are kept in any case
+   */
+  public Push(ObjectNode node, FieldProjection projection) {
     this.node = node;
+    this.projection = projection;
   }
 
   public void setId(String id) {
     this.id = id;
-    node.put("id", this.id);
+    if (projection.includes("id")) {
+      node.put("id", this.id);
+    }
   }
 
   public void setUser(String user) {
     this.user = user;
-    node.put("user", this.user);
+    if (projection.includes("user")) {
+      node.put("user", this.user);
+    }
   }
 
   public void setDatePushed(Long datePushed) {
     this.datePushed = datePushed;
-    node.put("datePushed", this.datePushed);
+    if (projection.includes("datePushed")) {
+      node.put("datePushed", this.datePushed);
+    }
   }
 
   public void setRepositoryId(String repositoryId) {
     this.repositoryId = repositoryId;
-    node.put("repositoryId", this.repositoryId);
+    if (projection.includes("repositoryId")) {
+      node.put("repositoryId", this.repositoryId);
+    }
   }
 
   public void setRepositoryName(String repositoryName) {
     this.repositoryName = repositoryName;
-    node.put("repositoryName", this.repositoryName);
+    if (projection.includes("repositoryName")) {
+      node.put("repositoryName", this.repositoryName);
+    }
   }
 
   public void setRepositoryNamespace(String repositoryNamespace) {
     this.repositoryNamespace = repositoryNamespace;
-    node.put("repositoryNamespace", this.repositoryNamespace);
+    if (projection.includes("repositoryNamespace")) {
+      node.put("repositoryNamespace", this.repositoryNamespace);
+    }
   }
 
+  /**
+   * appends the commit to the push and its json node
+   *
+   * @param c the commit
+   */
   public void addCommit(Commit c) {
     if (this.commits == null) {
-      commits = new HashSet<>();
+      commits = new ArrayList<>();
     }
     commits.add(c);
+    if (projection.includes("commits")) {
+      if (commitsNode == null) {
+        commitsNode = node.putArray("commits");
+      }
+      commitsNode.add(c.toJsonNode());
+    }
+    if (projection.selects("commitCount")) {
+      node.put("commitCount", commits.size());
+    }
+  }
+
+  public void setCommits(Collection<Commit> commits) {
+    this.commits = new ArrayList<>(commits.size());
+    this.commitsNode = projection.includes("commits") ? node.putArray("commits") : null;
+    if (projection.selects("commitCount")) {
+      node.put("commitCount", 0);
+    }
+    commits.forEach(this::addCommit);
+  }
+
+  /**
+   * adds the commits of the other push which are not already part of this push, commits are identified by their id
+   *
+   * @param other push of the same repository
+   */
+  public void mergeCommits(Push other) {
+    Map<String, Commit> merged = new LinkedHashMap<>();
+    if (commits != null) {
+      commits.forEach(commit -> merged.put(commit.getCommitId(), commit));
+    }
+    if (other.getCommits() != null) {
+      other.getCommits().forEach(commit -> merged.putIfAbsent(commit.getCommitId(), commit));
+    }
+    setCommits(merged.values());
+    if (other.getDatePushed() != null && (datePushed == null || other.getDatePushed() > datePushed)) {
+      setDatePushed(other.getDatePushed());
+    }
+    if (degradation == null && other.getDegradation() != null) {
+      setDegradation(other.getDegradation());
+    }
+  }
+
+  public void setFileChanges(FileChanges fileChanges) {
+    this.fileChanges = fileChanges;
+    if (projection.includes("fileChanges")) {
+      node.set("fileChanges", fileChanges.toJsonNode(projection.nested("fileChanges")));
+    }
+  }
+
+  /**
+   * marks the push as a part of a push which is split into several events
+   *
+   * @param pushId id which is shared by all chunks of the push
+   * @param index  index of the chunk, starting with 0
+   * @param last   true for the last chunk, which also contains the total number of chunks
+   */
+  public void setChunk(String pushId, int index, boolean last) {
+    chunk = node.putObject("chunk");
+    chunk.put("pushId", pushId);
+    chunk.put("index", index);
+    chunk.put("last", last);
+    if (last) {
+      chunk.put("total", index + 1);
+    }
+  }
+
+  /**
+   * marks the push as degraded, because it exceeded its processing budget
+   *
+   * @param degradation name of the applied degradation
+   */
+  public void setDegradation(String degradation) {
+    this.degradation = degradation;
+    node.put("degradation", degradation);
   }
 
-  public void setCommits(Set<Commit> commits) {
-    this.commits = commits;
-    ArrayNode arrayNode = node.putArray("commits");
-    commits.forEach(commit -> arrayNode.add(commit.toJsonNode()));
+  public boolean isChunked() {
+    return chunk != null;
   }
 
   public JsonNode toJsonNode() {
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.execution;
+
+import com.jb.pushevent.config.DegradationMode;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time budget for the processing of a single push, measured from the receipt of the hook.
+ */
+public class ProcessingBudget {
+
+  public static final ProcessingBudget UNLIMITED = new ProcessingBudget(0, 0, DegradationMode.SKIP_PATHS);
+
+  private final long start;
+  private final long budgetNanos;
+  private final DegradationMode mode;
+
+  private volatile DegradationMode degradation;
+
+  /**
+   * @param start        {@link System#nanoTime()} of the receipt of the hook
+   * @param budgetMillis budget in milliseconds, 0 for no limit
+   * @param mode         degradation which is applied once the budget is exceeded
+   */
+  public ProcessingBudget(long start, long budgetMillis, DegradationMode mode) {
+    this.start = start;
+    this.budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    this.mode = mode;
+  }
+
+  public boolean isLimited() {
+    return budgetNanos > 0;
+  }
+
+  /**
+   * @return the degradation which applies to the next step of the processing or null if the push is within its budget
+   */
+  public DegradationMode check() {
+    if (degradation == null && isLimited() && System.nanoTime() - start > budgetNanos) {
+      degradation = mode;
+    }
+    return degradation;
+  }
+
+  /**
+   * @return the degradation which was applied or null if the push was processed within its budget
+   */
+  public DegradationMode getDegradation() {
+    return degradation;
+  }
+}
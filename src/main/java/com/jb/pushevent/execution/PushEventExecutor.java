@@ -0,0 +1,283 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.execution;
+
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.ExecutionMode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The PushEventExecutor runs the processing of pushes and the delivery of events.
+ * <p>
+ * On runtimes with virtual thread support (JDK 21+) every task gets its own virtual thread, so that thousands of
+ * concurrent pushes do not need thousands of platform threads. Otherwise a bounded pool of platform threads is used,
+ * if the pool is saturated the task is rejected, unless it was submitted with {@link #executeOrRun}.
+ * <p>
+ * Tasks which are submitted with a key, e.g. the processing of the pushes of a repository, run one after another in
+ * the order in which they were submitted, tasks with different keys run in parallel.
+ * <p>
+ * The executor is recreated if the execution settings of the configuration change, tasks which were already
+ * submitted to the old executor are finished.
+ */
+@Singleton
+public class PushEventExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(PushEventExecutor.class);
+
+  private static final int QUEUE_SIZE_PER_THREAD = 64;
+
+  private static final Method VIRTUAL_THREAD_EXECUTOR_FACTORY = findVirtualThreadExecutorFactory();
+
+  private final AtomicReference<Holder> current = new AtomicReference<>();
+  /**
+   * pending tasks of the keys which currently have a running task
+   */
+  private final ConcurrentMap<String, Deque<Runnable>> ordered = new ConcurrentHashMap<>();
+
+  private static Method findVirtualThreadExecutorFactory() {
+    try {
+      return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  public static boolean isVirtualThreadSupported() {
+    return VIRTUAL_THREAD_EXECUTOR_FACTORY != null;
+  }
+
+  /**
+   * executes the task with the executor matching the execution settings of the configuration
+   *
+   * @param task          task to execute
+   * @param configuration configuration with the execution settings
+   * @throws RejectedExecutionException if the pool of platform threads is saturated
+   */
+  public void execute(Runnable task, PushEventConfiguration configuration) {
+    execute(task, configuration, false);
+  }
+
+  /**
+   * executes the task like {@link #execute}, but runs it in the calling thread if the pool of platform threads is
+   * saturated. This slows down the submitting thread, so it must only be used by threads which may be blocked.
+   *
+   * @param task          task to execute
+   * @param configuration configuration with the execution settings
+   */
+  public void executeOrRun(Runnable task, PushEventConfiguration configuration) {
+    execute(task, configuration, true);
+  }
+
+  /**
+   * executes the task after all tasks which were submitted with the same key before. Like {@link #executeOrRun}, the
+   * tasks of the key run in the calling thread if the pool of platform threads is saturated.
+   *
+   * @param key           key of the task, e.g. the id of a repository
+   * @param task          task to execute
+   * @param configuration configuration with the execution settings
+   */
+  public void executeInOrder(String key, Runnable task, PushEventConfiguration configuration) {
+    enqueue(key, task, false, configuration);
+  }
+
+  /**
+   * executes the task before the pending tasks of the key, e.g. to continue the currently running task of the key
+   * later without letting the following tasks overtake it
+   *
+   * @param key           key of the task, e.g. the id of a repository
+   * @param task          task to execute
+   * @param configuration configuration with the execution settings
+   */
+  public void executeNext(String key, Runnable task, PushEventConfiguration configuration) {
+    enqueue(key, task, true, configuration);
+  }
+
+  private void enqueue(String key, Runnable task, boolean first, PushEventConfiguration configuration) {
+    AtomicBoolean start = new AtomicBoolean();
+    ordered.compute(key, (k, tasks) -> {
+      if (tasks == null) {
+        tasks = new ArrayDeque<>();
+        start.set(true);
+      }
+      if (first) {
+        tasks.addFirst(task);
+      } else {
+        tasks.addLast(task);
+      }
+      return tasks;
+    });
+    if (start.get()) {
+      executeOrRun(() -> drain(key), configuration);
+    }
+  }
+
+  private void drain(String key) {
+    for (Runnable task = poll(key); task != null; task = poll(key)) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        LOG.error("unexpected error in task of {}", key, e);
+      }
+    }
+  }
+
+  private Runnable poll(String key) {
+    AtomicReference<Runnable> next = new AtomicReference<>();
+    ordered.computeIfPresent(key, (k, tasks) -> {
+      next.set(tasks.pollFirst());
+      // the key is only removed once its last task is finished, so that a new task can not overtake it
+      return next.get() != null ? tasks : null;
+    });
+    return next.get();
+  }
+
+  private void execute(Runnable task, PushEventConfiguration configuration, boolean callerRuns) {
+    ExecutorService executor = executor(configuration);
+    while (true) {
+      try {
+        executor.execute(task);
+        return;
+      } catch (RejectedExecutionException e) {
+        ExecutorService replacement = executor(configuration);
+        if (replacement == executor) {
+          if (!callerRuns) {
+            throw e;
+          }
+          task.run();
+          return;
+        }
+        // the executor was replaced in the meantime, retry with the new one
+        executor = replacement;
+      }
+    }
+  }
+
+  ExecutorService executor(PushEventConfiguration configuration) {
+    boolean virtual = useVirtualThreads(configuration.getExecutionMode());
+    int threads = Math.max(1, configuration.getMaxPlatformThreads());
+    while (true) {
+      Holder holder = current.get();
+      if (holder != null && holder.matches(virtual, threads)) {
+        return holder.executor;
+      }
+      Holder created = new Holder(virtual, threads, virtual ? createVirtualThreadExecutor() : createPlatformThreadExecutor(threads));
+      if (current.compareAndSet(holder, created)) {
+        if (holder != null) {
+          holder.executor.shutdown();
+        }
+        LOG.info("process push events with {}", virtual ? "virtual threads" : threads + " platform threads");
+        return created.executor;
+      }
+      created.executor.shutdownNow();
+    }
+  }
+
+  private boolean useVirtualThreads(ExecutionMode mode) {
+    if (mode == ExecutionMode.PLATFORM_THREADS) {
+      return false;
+    }
+    if (!isVirtualThreadSupported()) {
+      if (mode == ExecutionMode.VIRTUAL_THREADS) {
+        LOG.debug("virtual threads are not supported by the runtime, falling back to platform threads");
+      }
+      return false;
+    }
+    return true;
+  }
+
+  private static ExecutorService createVirtualThreadExecutor() {
+    try {
+      return (ExecutorService) VIRTUAL_THREAD_EXECUTOR_FACTORY.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("could not create virtual thread executor", e);
+    }
+  }
+
+  private static ExecutorService createPlatformThreadExecutor(int threads) {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+      threads, threads, 60L, TimeUnit.SECONDS,
+      new ArrayBlockingQueue<>(threads * QUEUE_SIZE_PER_THREAD),
+      new WorkerThreadFactory(),
+      // a shut down executor has to reject the task, so that it is submitted to its replacement
+      new ThreadPoolExecutor.AbortPolicy()
+    );
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * stops the executor, running tasks are finished
+   */
+  public void shutdown() {
+    Holder holder = current.getAndSet(null);
+    if (holder != null) {
+      holder.executor.shutdown();
+    }
+  }
+
+  private static class Holder {
+    private final boolean virtual;
+    private final int threads;
+    private final ExecutorService executor;
+
+    Holder(boolean virtual, int threads, ExecutorService executor) {
+      this.virtual = virtual;
+      this.threads = threads;
+      this.executor = executor;
+    }
+
+    boolean matches(boolean virtual, int threads) {
+      return this.virtual == virtual && (virtual || this.threads == threads);
+    }
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger counter = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "pushevent-worker-" + counter.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,350 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.journal;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.SCMContextProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Local journal of the events which were sent to the endpoint.
+ * <p>
+ * The journal is split into one {@link JournalSegment} per day (UTC). Events are appended by a background thread,
+ * so that the delivery never waits for the disk; if the thread falls behind, events are left out of the journal and
+ * counted. Once per hour the segments which are older than the retention are deleted and the oldest remaining
+ * segment is compacted, so that it only contains events within the retention.
+ */
+@Singleton
+public class DeliveryJournal {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeliveryJournal.class);
+
+  static final int QUEUE_SIZE = 10_000;
+  static final long MAINTENANCE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private final File directory;
+  private final PushEventConfigurationStore configurationStore;
+  private final Clock clock;
+
+  private final BlockingQueue<Append> appends = new ArrayBlockingQueue<>(QUEUE_SIZE);
+  private final LongAdder skippedEvents = new LongAdder();
+
+  // appends and maintenance only run on the journal thread, queries take the read lock
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final TreeMap<LocalDate, JournalSegment> segments = new TreeMap<>();
+
+  private long lastTime;
+  private long lastMaintenance;
+  // written under the write lock
+  private volatile boolean opened;
+  private volatile Thread worker;
+
+  @Inject
+  public DeliveryJournal(SCMContextProvider contextProvider, PushEventConfigurationStore configurationStore) {
+    this(new File(contextProvider.getBaseDirectory(), "pushevent" + File.separator + "journal"), configurationStore, Clock.systemUTC());
+  }
+
+  DeliveryJournal(File directory, PushEventConfigurationStore configurationStore, Clock clock) {
+    this.directory = directory;
+    this.configurationStore = configurationStore;
+    this.clock = clock;
+  }
+
+  /**
+   * queues the event for the journal, if the journal is enabled
+   *
+   * @param repositoryId  id of the repository of the event
+   * @param delivered     true if the endpoint accepted the event
+   * @param payload       the payload as it was sent
+   * @param configuration configuration with the journal settings
+   */
+  public void append(String repositoryId, boolean delivered, byte[] payload, PushEventConfiguration configuration) {
+    if (!configuration.isJournalEnabled()) {
+      return;
+    }
+    start();
+    if (!appends.offer(new Append(clock.millis(), repositoryId, delivered, payload))) {
+      skippedEvents.increment();
+      LOG.warn("journal is behind, event of repository {} is not journaled, {} events skipped in total", repositoryId, skippedEvents.sum());
+    }
+  }
+
+  /**
+   * starts the journal thread if there are segments of a previous run, so that their retention is applied without
+   * waiting for the next event
+   */
+  public void resume() {
+    if (directory.exists()) {
+      start();
+    }
+  }
+
+  private void start() {
+    if (worker == null) {
+      synchronized (this) {
+        if (worker == null) {
+          Thread thread = new Thread(this::run, "pushevent-journal");
+          thread.setDaemon(true);
+          thread.start();
+          worker = thread;
+        }
+      }
+    }
+  }
+
+  public synchronized void stop() {
+    if (worker != null) {
+      worker.interrupt();
+      worker = null;
+    }
+  }
+
+  private void run() {
+    try {
+      open();
+      while (!Thread.currentThread().isInterrupted()) {
+        Append append = appends.poll(1, TimeUnit.MINUTES);
+        if (append != null) {
+          write(append);
+        }
+        if (clock.millis() - lastMaintenance >= MAINTENANCE_INTERVAL_MILLIS) {
+          maintain(configurationStore.get().getJournalRetentionDays());
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      LOG.error("could not open the delivery journal in {}", directory, e);
+    } finally {
+      close();
+    }
+  }
+
+  /**
+   * opens the segments of previous runs, if they are not open yet. The segments are opened by the journal thread or
+   * by the first query, whichever comes first.
+   */
+  void open() throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (opened) {
+        return;
+      }
+      if (!directory.exists() && !directory.mkdirs()) {
+        throw new IOException("could not create journal directory " + directory);
+      }
+      File[] files = directory.listFiles();
+      if (files != null) {
+        for (File file : files) {
+          LocalDate day = JournalSegment.dayOf(file);
+          if (day != null && !segments.containsKey(day)) {
+            segments.put(day, JournalSegment.open(directory, day));
+          }
+        }
+      }
+      if (!segments.isEmpty()) {
+        JournalSegment last = segments.lastEntry().getValue();
+        lastTime = last.size() > 0 ? last.timeAt(last.size() - 1) : 0;
+      }
+      opened = true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void write(Append append) {
+    // the entries of a segment have to be sorted by time
+    long time = Math.max(append.time, lastTime);
+    LocalDate day = dayOf(time);
+    try {
+      JournalSegment segment = segments.get(day);
+      if (segment == null) {
+        segment = JournalSegment.open(directory, day);
+        lock.writeLock().lock();
+        try {
+          segments.put(day, segment);
+        } finally {
+          lock.writeLock().unlock();
+        }
+      }
+      segment.append(time, append.repositoryId, append.delivered, append.payload);
+      lastTime = time;
+    } catch (IOException e) {
+      skippedEvents.increment();
+      LOG.error("could not write event of repository {} to the journal", append.repositoryId, e);
+    }
+  }
+
+  /**
+   * deletes the segments before the retention and compacts the oldest remaining segment
+   */
+  void maintain(int retentionDays) {
+    lastMaintenance = clock.millis();
+    long cutoff = lastMaintenance - TimeUnit.DAYS.toMillis(retentionDays);
+    LocalDate cutoffDay = dayOf(cutoff);
+    lock.writeLock().lock();
+    try {
+      Map<LocalDate, JournalSegment> expired = segments.headMap(cutoffDay);
+      for (JournalSegment segment : new ArrayList<>(expired.values())) {
+        segment.delete();
+        LOG.info("deleted journal of {}", segment.getDay());
+      }
+      expired.clear();
+
+      JournalSegment oldest = segments.get(cutoffDay);
+      if (oldest != null && oldest.size() > 0 && oldest.timeAt(0) < cutoff) {
+        segments.put(cutoffDay, oldest.compact(cutoff));
+      }
+    } catch (IOException e) {
+      LOG.error("could not apply the retention to the journal", e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * finds the journaled events of a repository within a time range
+   *
+   * @param repositoryId id of the repository or null for all repositories
+   * @param from         start of the time range in milliseconds since the epoch, inclusive
+   * @param to           end of the time range in milliseconds since the epoch, inclusive
+   * @param cursor       cursor of a previous page or null for the first page
+   * @param limit        maximum number of events
+   * @return the events ordered by time
+   * @throws IllegalArgumentException if the cursor is not valid
+   * @throws IOException if the journal could not be read
+   */
+  public JournalPage query(String repositoryId, long from, long to, String cursor, int limit) throws IOException {
+    LocalDate cursorDay = null;
+    int cursorEntry = 0;
+    if (cursor != null) {
+      String[] parts = cursor.split("-");
+      try {
+        cursorDay = LocalDate.parse(parts[0], JournalSegment.DAY_FORMAT);
+        cursorEntry = Integer.parseInt(parts[1]);
+      } catch (RuntimeException e) {
+        throw new IllegalArgumentException("invalid cursor " + cursor, e);
+      }
+    }
+    LocalDate firstDay = cursorDay != null ? cursorDay : dayOf(from);
+    LocalDate lastDay = dayOf(to);
+    if (firstDay.isAfter(lastDay)) {
+      return new JournalPage(new ArrayList<>(), null);
+    }
+    int hash = repositoryId != null ? repositoryId.hashCode() : 0;
+    if (!opened) {
+      // nothing was journaled since the start, but the segments of previous runs can be queried
+      open();
+    }
+
+    List<JournalEntry> entries = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      for (JournalSegment segment : segments.subMap(firstDay, true, lastDay, true).values()) {
+        int size = segment.size();
+        int position = segment.getDay().equals(cursorDay) ? cursorEntry : 0;
+        // the entries of a repository are linked, so only the entries of the repository are visited
+        int entry = repositoryId != null ? segment.firstOf(hash, position, from) : Math.max(position, segment.firstAtOrAfter(from));
+        while (entry >= 0 && entry < size) {
+          if (segment.timeAt(entry) > to) {
+            return new JournalPage(entries, null);
+          }
+          JournalEntry event = segment.read(entry);
+          // the hash of another repository may be the same
+          if (repositoryId == null || repositoryId.equals(event.getRepositoryId())) {
+            entries.add(event);
+            if (entries.size() >= limit) {
+              return new JournalPage(entries, segment.getDay().format(JournalSegment.DAY_FORMAT) + "-" + (entry + 1));
+            }
+          }
+          entry = repositoryId != null ? segment.nextOf(entry) : entry + 1;
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+    return new JournalPage(entries, null);
+  }
+
+  /**
+   * @return number of events which could not be written to the journal
+   */
+  public long getSkippedEvents() {
+    return skippedEvents.sum();
+  }
+
+  void close() {
+    lock.writeLock().lock();
+    try {
+      for (JournalSegment segment : segments.values()) {
+        segment.close();
+      }
+    } catch (IOException e) {
+      LOG.warn("could not close the journal", e);
+    } finally {
+      segments.clear();
+      opened = false;
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static LocalDate dayOf(long time) {
+    return Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC).toLocalDate();
+  }
+
+  static final class Append {
+    private final long time;
+    private final String repositoryId;
+    private final boolean delivered;
+    private final byte[] payload;
+
+    Append(long time, String repositoryId, boolean delivered, byte[] payload) {
+      this.time = time;
+      this.repositoryId = repositoryId;
+      this.delivered = delivered;
+      this.payload = payload;
+    }
+  }
+}
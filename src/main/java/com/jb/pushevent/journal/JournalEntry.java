@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.journal;
+
+/**
+ * An event in the delivery journal.
+ */
+public class JournalEntry {
+
+  private final long time;
+  private final String repositoryId;
+  private final boolean delivered;
+  private final byte[] payload;
+
+  public JournalEntry(long time, String repositoryId, boolean delivered, byte[] payload) {
+    this.time = time;
+    this.repositoryId = repositoryId;
+    this.delivered = delivered;
+    this.payload = payload;
+  }
+
+  /**
+   * @return time of the delivery in milliseconds since the epoch
+   */
+  public long getTime() {
+    return time;
+  }
+
+  public String getRepositoryId() {
+    return repositoryId;
+  }
+
+  /**
+   * @return true if the endpoint accepted the event
+   */
+  public boolean isDelivered() {
+    return delivered;
+  }
+
+  /**
+   * @return the payload as it was sent
+   */
+  public byte[] getPayload() {
+    return payload;
+  }
+}
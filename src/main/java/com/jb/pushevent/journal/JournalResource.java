@@ -0,0 +1,193 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.journal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.repository.NamespaceAndName;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryManager;
+import sonia.scm.repository.RepositoryPermissions;
+import sonia.scm.web.VndMediaType;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import static sonia.scm.ContextEntry.ContextBuilder.entity;
+import static sonia.scm.NotFoundException.notFound;
+
+@Path(JournalResource.PUSHEVENT_JOURNAL_PATH_V2)
+public class JournalResource {
+
+  static final String PUSHEVENT_JOURNAL_PATH_V2 = "v2/pushevent/journal";
+
+  static final int MAX_LIMIT = 500;
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final RepositoryManager repositoryManager;
+  private final DeliveryJournal journal;
+
+  @Inject
+  public JournalResource(RepositoryManager repositoryManager, DeliveryJournal journal) {
+    this.repositoryManager = repositoryManager;
+    this.journal = journal;
+  }
+
+  @GET
+  @Path("")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Query the delivery journal",
+    description = "Returns the sent events of all repositories within the time range, ordered by time. The events contain the payloads of all repositories, so the permission to change the configuration is required.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_query_journal"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = JournalPageDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid time range, cursor or limit")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to change the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response query(@QueryParam("from") String from, @QueryParam("to") String to, @QueryParam("cursor") String cursor, @QueryParam("limit") @DefaultValue("50") int limit) throws IOException {
+    ConfigurationPermissions.write("pushevent").check();
+    return query(null, from, to, cursor, limit);
+  }
+
+  @GET
+  @Path("{namespace}/{name}")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Query the delivery journal of a repository",
+    description = "Returns the sent events of the repository within the time range, ordered by time.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_query_repository_journal"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = JournalPageDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "400", description = "invalid time range, cursor or limit")
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration or the repository")
+  @ApiResponse(
+    responseCode = "404",
+    description = "not found, no repository with the specified namespace and name available",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response queryRepository(@PathParam("namespace") String namespace, @PathParam("name") String name, @QueryParam("from") String from, @QueryParam("to") String to, @QueryParam("cursor") String cursor, @QueryParam("limit") @DefaultValue("50") int limit) throws IOException {
+    ConfigurationPermissions.read("pushevent").check();
+    Repository repository = getRepository(namespace, name);
+    // the payloads contain the commit messages, authors and paths of the repository
+    RepositoryPermissions.read(repository).check();
+    return query(repository.getId(), from, to, cursor, limit);
+  }
+
+  private Response query(String repositoryId, String from, String to, String cursor, int limit) throws IOException {
+    if (limit < 1 || limit > MAX_LIMIT) {
+      return badRequest("limit has to be between 1 and " + MAX_LIMIT);
+    }
+    JournalPage page;
+    try {
+      long fromMillis = from != null ? Instant.parse(from).toEpochMilli() : 0;
+      long toMillis = to != null ? Instant.parse(to).toEpochMilli() : Long.MAX_VALUE;
+      page = journal.query(repositoryId, fromMillis, toMillis, cursor, limit);
+    } catch (DateTimeParseException e) {
+      return badRequest("from and to have to be ISO-8601 instants, e.g. 2024-01-16T00:00:00Z");
+    } catch (IllegalArgumentException e) {
+      return badRequest(e.getMessage());
+    }
+    return Response.ok(createDto(page)).build();
+  }
+
+  private Response badRequest(String message) {
+    return Response.status(Response.Status.BAD_REQUEST).entity(message).type(MediaType.TEXT_PLAIN).build();
+  }
+
+  private JournalPageDto createDto(JournalPage page) throws IOException {
+    JournalPageDto dto = new JournalPageDto();
+    for (JournalEntry entry : page.getEntries()) {
+      JournalEntryDto entryDto = new JournalEntryDto();
+      entryDto.setTime(Instant.ofEpochMilli(entry.getTime()).toString());
+      entryDto.setRepositoryId(entry.getRepositoryId());
+      entryDto.setDelivered(entry.isDelivered());
+      entryDto.setPayload(MAPPER.readTree(entry.getPayload()));
+      dto.getEntries().add(entryDto);
+    }
+    dto.setNext(page.getNext());
+    return dto;
+  }
+
+  private Repository getRepository(String namespace, String name) {
+    NamespaceAndName namespaceAndName = new NamespaceAndName(namespace, name);
+    Repository repository = repositoryManager.get(namespaceAndName);
+    if (repository == null) {
+      throw notFound(entity(namespaceAndName));
+    }
+    return repository;
+  }
+}
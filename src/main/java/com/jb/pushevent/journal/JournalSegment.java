@@ -0,0 +1,291 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The journal of a single day.
+ * <p>
+ * The events are appended to a data file. A memory mapped index file contains a fixed size entry with the time, the
+ * hash of the repository, the offset in the data file and the next entry with the same hash for every event. The
+ * entries are sorted by time, so the events of a time range are found with a binary search. The entries of a
+ * repository are linked, so the events of a repository are found by following the links from its first entry, without
+ * visiting the entries of other repositories.
+ */
+class JournalSegment implements AutoCloseable {
+
+  static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+  private static final String DATA_SUFFIX = ".journal";
+  private static final String INDEX_SUFFIX = ".index";
+
+  // count of entries
+  private static final int HEADER_SIZE = 8;
+  // time, hash of the repository, offset in the data file, next entry with the same hash
+  static final int ENTRY_SIZE = 8 + 4 + 8 + 4;
+  private static final int NONE = -1;
+  private static final int INITIAL_CAPACITY = 4096;
+
+  // time, delivered, length of the repository id
+  private static final int RECORD_HEADER_SIZE = 8 + 1 + 2;
+
+  private final LocalDate day;
+  private final File dataFile;
+  private final File indexFile;
+  private final FileChannel data;
+  private final FileChannel indexChannel;
+
+  private volatile MappedByteBuffer index;
+  private volatile int count;
+  private long dataSize;
+
+  // first entry of every hash, read by queries
+  private final Map<Integer, Integer> firstEntries = new ConcurrentHashMap<>();
+  // last entry of every hash, only used by the appending thread
+  private final Map<Integer, Integer> lastEntries = new HashMap<>();
+
+  private JournalSegment(LocalDate day, File dataFile, File indexFile) throws IOException {
+    this.day = day;
+    this.dataFile = dataFile;
+    this.indexFile = indexFile;
+    this.data = new RandomAccessFile(dataFile, "rw").getChannel();
+    this.indexChannel = new RandomAccessFile(indexFile, "rw").getChannel();
+    this.dataSize = data.size();
+    int capacity = Math.max(INITIAL_CAPACITY, (int) ((indexChannel.size() - HEADER_SIZE) / ENTRY_SIZE));
+    this.index = map(capacity);
+    this.count = index.getInt(0);
+    for (int entry = 0; entry < count; entry++) {
+      link(hashAt(entry), entry);
+    }
+  }
+
+  static JournalSegment open(File directory, LocalDate day) throws IOException {
+    String name = day.format(DAY_FORMAT);
+    return new JournalSegment(day, new File(directory, name + DATA_SUFFIX), new File(directory, name + INDEX_SUFFIX));
+  }
+
+  /**
+   * @return the day of the journal file or null if it is no journal file
+   */
+  static LocalDate dayOf(File file) {
+    String name = file.getName();
+    if (!name.endsWith(DATA_SUFFIX)) {
+      return null;
+    }
+    try {
+      return LocalDate.parse(name.substring(0, name.length() - DATA_SUFFIX.length()), DAY_FORMAT);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+
+  private MappedByteBuffer map(int capacity) throws IOException {
+    return indexChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * ENTRY_SIZE);
+  }
+
+  LocalDate getDay() {
+    return day;
+  }
+
+  int size() {
+    return count;
+  }
+
+  /**
+   * appends an event, the time must not be before the time of the last event
+   */
+  void append(long time, String repositoryId, boolean delivered, byte[] payload) throws IOException {
+    byte[] repository = repositoryId.getBytes(StandardCharsets.UTF_8);
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + repository.length + 4 + payload.length);
+    record.putLong(time).put((byte) (delivered ? 1 : 0)).putShort((short) repository.length).put(repository);
+    record.putInt(payload.length).put(payload);
+    record.flip();
+
+    long offset = dataSize;
+    while (record.hasRemaining()) {
+      dataSize += data.write(record, dataSize);
+    }
+
+    MappedByteBuffer buffer = index;
+    if (HEADER_SIZE + (long) (count + 1) * ENTRY_SIZE > buffer.capacity()) {
+      buffer = map(count * 2);
+      index = buffer;
+    }
+    int position = HEADER_SIZE + count * ENTRY_SIZE;
+    int hash = repositoryId.hashCode();
+    buffer.putLong(position, time);
+    buffer.putInt(position + 8, hash);
+    buffer.putLong(position + 12, offset);
+    buffer.putInt(position + 20, NONE);
+    Integer last = lastEntries.get(hash);
+    if (last != null) {
+      buffer.putInt(HEADER_SIZE + last * ENTRY_SIZE + 20, count);
+    }
+    link(hash, count);
+    // the entry is only visible to readers once the count is updated
+    buffer.putInt(0, count + 1);
+    count++;
+  }
+
+  private void link(int hash, int entry) {
+    firstEntries.putIfAbsent(hash, entry);
+    lastEntries.put(hash, entry);
+  }
+
+  long timeAt(int entry) {
+    return index.getLong(HEADER_SIZE + entry * ENTRY_SIZE);
+  }
+
+  int hashAt(int entry) {
+    return index.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 8);
+  }
+
+  /**
+   * @param hash     hash of the repository
+   * @param position index of the first entry which is considered
+   * @param time     the earliest time which is considered
+   * @return the first entry with the hash at or after the position and time, or -1 if there is none
+   */
+  int firstOf(int hash, int position, long time) {
+    Integer first = firstEntries.get(hash);
+    if (first == null || first >= count) {
+      return NONE;
+    }
+    int entry = first;
+    while (entry != NONE && (entry < position || timeAt(entry) < time)) {
+      entry = nextOf(entry);
+    }
+    return entry;
+  }
+
+  /**
+   * @return the next entry with the same hash as the entry, or -1 if there is none
+   */
+  int nextOf(int entry) {
+    int size = count;
+    int next = index.getInt(HEADER_SIZE + entry * ENTRY_SIZE + 20);
+    // an entry which is appended in the meantime is linked before it is counted
+    return next > entry && next < size ? next : NONE;
+  }
+
+  /**
+   * @return index of the first entry at or after the time or {@link #size()} if there is none
+   */
+  int firstAtOrAfter(long time) {
+    int low = 0;
+    int high = count;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (timeAt(middle) < time) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  JournalEntry read(int entry) throws IOException {
+    long offset = index.getLong(HEADER_SIZE + entry * ENTRY_SIZE + 12);
+    ByteBuffer header = readFully(offset, RECORD_HEADER_SIZE);
+    long time = header.getLong();
+    boolean delivered = header.get() != 0;
+    int repositoryLength = header.getShort() & 0xffff;
+    ByteBuffer repository = readFully(offset + RECORD_HEADER_SIZE, repositoryLength + 4);
+    byte[] repositoryId = new byte[repositoryLength];
+    repository.get(repositoryId);
+    int payloadLength = repository.getInt();
+    ByteBuffer payload = readFully(offset + RECORD_HEADER_SIZE + repositoryLength + 4, payloadLength);
+    return new JournalEntry(time, new String(repositoryId, StandardCharsets.UTF_8), delivered, payload.array());
+  }
+
+  private ByteBuffer readFully(long position, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+    while (buffer.hasRemaining()) {
+      if (data.read(buffer, position + buffer.position()) < 0) {
+        throw new IOException("unexpected end of journal " + dataFile);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  /**
+   * rewrites the segment without the events before the time
+   *
+   * @return the compacted segment, this segment is closed
+   */
+  JournalSegment compact(long before) throws IOException {
+    File directory = dataFile.getParentFile();
+    File tempDirectory = new File(directory, "compact");
+    if (!tempDirectory.exists() && !tempDirectory.mkdirs()) {
+      throw new IOException("could not create directory " + tempDirectory);
+    }
+    try (JournalSegment compacted = open(tempDirectory, day)) {
+      for (int entry = firstAtOrAfter(before); entry < count; entry++) {
+        JournalEntry event = read(entry);
+        compacted.append(event.getTime(), event.getRepositoryId(), event.isDelivered(), event.getPayload());
+      }
+      compacted.force();
+    }
+    close();
+    Files.move(new File(tempDirectory, dataFile.getName()).toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    Files.move(new File(tempDirectory, indexFile.getName()).toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    return open(directory, day);
+  }
+
+  void force() throws IOException {
+    data.force(false);
+    index.force();
+  }
+
+  void delete() throws IOException {
+    close();
+    Files.deleteIfExists(dataFile.toPath());
+    Files.deleteIfExists(indexFile.toPath());
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      data.close();
+    } finally {
+      indexChannel.close();
+    }
+  }
+}
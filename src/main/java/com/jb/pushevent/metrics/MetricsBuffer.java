@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.metrics;
+
+import java.util.Arrays;
+
+/**
+ * A growing byte buffer for the Prometheus text format, which is reused for every scrape. Numbers are written digit by
+ * digit, so that rendering the metrics does not create strings.
+ */
+class MetricsBuffer {
+
+  private byte[] bytes;
+  private int length;
+  private final byte[] digits = new byte[20];
+
+  MetricsBuffer(int capacity) {
+    this.bytes = new byte[capacity];
+  }
+
+  void reset() {
+    length = 0;
+  }
+
+  int length() {
+    return length;
+  }
+
+  /**
+   * @return a copy of the written bytes
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(bytes, length);
+  }
+
+  MetricsBuffer append(char c) {
+    ensureCapacity(1);
+    bytes[length++] = (byte) c;
+    return this;
+  }
+
+  /**
+   * appends the text as UTF-8
+   */
+  MetricsBuffer append(CharSequence text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c < 0x80) {
+        append(c);
+      } else {
+        appendEncoded(text, i);
+        if (Character.isHighSurrogate(c)) {
+          i++;
+        }
+      }
+    }
+    return this;
+  }
+
+  /**
+   * appends the value of a label, quotes, backslashes and line breaks are escaped
+   */
+  MetricsBuffer appendLabelValue(CharSequence value) {
+    if (value == null) {
+      return this;
+    }
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' || c == '"') {
+        append('\\').append(c);
+      } else if (c == '\n') {
+        append('\\').append('n');
+      } else if (c < 0x80) {
+        append(c);
+      } else {
+        appendEncoded(value, i);
+        if (Character.isHighSurrogate(c)) {
+          i++;
+        }
+      }
+    }
+    return this;
+  }
+
+  MetricsBuffer append(long value) {
+    if (value == Long.MIN_VALUE) {
+      return append(Long.toString(value));
+    }
+    if (value < 0) {
+      append('-');
+      value = -value;
+    }
+    int count = 0;
+    do {
+      digits[count++] = (byte) ('0' + value % 10);
+      value /= 10;
+    } while (value > 0);
+    ensureCapacity(count);
+    while (count > 0) {
+      bytes[length++] = digits[--count];
+    }
+    return this;
+  }
+
+  /**
+   * appends a fixed point number without trailing zeros
+   *
+   * @param unscaled value in units of 10^-scale
+   * @param scale    number of decimal places, e.g. 3 for milliseconds as seconds
+   */
+  MetricsBuffer appendDecimal(long unscaled, int scale) {
+    long divisor = pow10(scale);
+    if (unscaled < 0) {
+      append('-');
+      unscaled = -unscaled;
+    }
+    append(unscaled / divisor);
+    long fraction = unscaled % divisor;
+    if (fraction == 0) {
+      return this;
+    }
+    int places = scale;
+    while (fraction % 10 == 0) {
+      fraction /= 10;
+      places--;
+    }
+    append('.');
+    // leading zeros of the fraction, e.g. 0.005
+    while (places > 1 && fraction < pow10(places - 1)) {
+      append('0');
+      places--;
+    }
+    return append(fraction);
+  }
+
+  private static long pow10(int exponent) {
+    long value = 1;
+    for (int i = 0; i < exponent; i++) {
+      value *= 10;
+    }
+    return value;
+  }
+
+  private void appendEncoded(CharSequence text, int index) {
+    int codePoint = Character.codePointAt(text, index);
+    ensureCapacity(4);
+    if (codePoint < 0x800) {
+      bytes[length++] = (byte) (0xc0 | (codePoint >> 6));
+    } else if (codePoint < 0x10000) {
+      bytes[length++] = (byte) (0xe0 | (codePoint >> 12));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+    } else {
+      bytes[length++] = (byte) (0xf0 | (codePoint >> 18));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+      bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+    }
+    bytes[length++] = (byte) (0x80 | (codePoint & 0x3f));
+  }
+
+  private void ensureCapacity(int additional) {
+    if (length + additional > bytes.length) {
+      bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + additional));
+    }
+  }
+}
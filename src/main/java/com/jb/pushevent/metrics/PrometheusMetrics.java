@@ -0,0 +1,179 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.metrics;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.CommitCache;
+import com.jb.pushevent.config.DegradationMode;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.EventQueue;
+import com.jb.pushevent.sampling.EventSampler;
+import com.jb.pushevent.stats.DegradationStatistics;
+import com.jb.pushevent.stats.DeliveryStatistics;
+import com.jb.pushevent.stats.EndpointStatistics;
+import com.jb.pushevent.stats.LatencyHistogram;
+import com.jb.pushevent.stats.PipelineStage;
+import com.jb.pushevent.stats.StageLatencies;
+
+/**
+ * Renders the counters, gauges and histograms of the plugin in the Prometheus text exposition format.
+ * <p>
+ * All values are read from the counters which the plugin keeps anyway, nothing is aggregated during a scrape. The
+ * text is written into a buffer which is reused for every scrape, so that a scrape only allocates the returned copy.
+ */
+@Singleton
+public class PrometheusMetrics {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private static final String PREFIX = "scm_pushevent_";
+  private static final int INITIAL_CAPACITY = 8 * 1024;
+
+  private final EventQueue queue;
+  private final EventDispatcher dispatcher;
+  private final DeliveryStatistics deliveryStatistics;
+  private final DegradationStatistics degradationStatistics;
+  private final StageLatencies stageLatencies;
+  private final CommitCache commitCache;
+  private final EventSampler eventSampler;
+
+  private final MetricsBuffer buffer = new MetricsBuffer(INITIAL_CAPACITY);
+  private long[] cumulative = new long[0];
+
+  @Inject
+  public PrometheusMetrics(EventQueue queue, EventDispatcher dispatcher, DeliveryStatistics deliveryStatistics, DegradationStatistics degradationStatistics, StageLatencies stageLatencies, CommitCache commitCache, EventSampler eventSampler) {
+    this.queue = queue;
+    this.dispatcher = dispatcher;
+    this.deliveryStatistics = deliveryStatistics;
+    this.degradationStatistics = degradationStatistics;
+    this.stageLatencies = stageLatencies;
+    this.commitCache = commitCache;
+    this.eventSampler = eventSampler;
+  }
+
+  /**
+   * @return the current metrics in the text exposition format
+   */
+  public synchronized byte[] scrape() {
+    buffer.reset();
+
+    header("queued_events", "gauge", "Number of events in the delivery queue");
+    sample("queued_events", queue.getQueuedEvents());
+    header("queued_bytes", "gauge", "Size of the events in the delivery queue in bytes");
+    sample("queued_bytes", queue.getQueuedBytes());
+    header("events_on_disk", "gauge", "Number of events which were spilled to disk and are not sent yet");
+    sample("events_on_disk", queue.getEventsOnDisk());
+    header("in_flight_requests", "gauge", "Number of requests to the endpoints which are not answered yet");
+    sample("in_flight_requests", dispatcher.getInFlight());
+    header("dropped_events_total", "counter", "Number of events which were dropped because the queue was full");
+    sample("dropped_events_total", queue.getDroppedEvents());
+    header("spilled_events_total", "counter", "Number of events which were spilled to disk");
+    sample("spilled_events_total", queue.getSpilledEvents());
+
+    writeEndpoints();
+    writeStages();
+
+    header("pushes_total", "counter", "Number of pushes with a processing budget by their degradation");
+    labeledSample("pushes_total", "degradation", "WITHIN_BUDGET", degradationStatistics.getWithinBudget());
+    for (DegradationMode mode : DegradationMode.values()) {
+      labeledSample("pushes_total", "degradation", mode.name(), degradationStatistics.getDegraded(mode));
+    }
+
+    header("commit_cache_hits_total", "counter", "Number of commits which were reused from the commit cache");
+    sample("commit_cache_hits_total", commitCache.getHits());
+    header("commit_cache_misses_total", "counter", "Number of commits which were not found in the commit cache");
+    sample("commit_cache_misses_total", commitCache.getMisses());
+    header("sampled_out_pushes_total", "counter", "Number of pushes which were dropped by the sampling rate");
+    sample("sampled_out_pushes_total", eventSampler.getSampledOut());
+    header("rate_limited_pushes_total", "counter", "Number of pushes which were dropped by the limit of their repository");
+    sample("rate_limited_pushes_total", eventSampler.getRateLimited());
+
+    return buffer.toByteArray();
+  }
+
+  private void writeEndpoints() {
+    header("delivered_events_total", "counter", "Number of events which were accepted by the endpoint");
+    for (EndpointStatistics endpoint : deliveryStatistics.getEndpoints()) {
+      labeledSample("delivered_events_total", "endpoint", endpoint.getUrl(), endpoint.getDelivered());
+    }
+    header("failed_deliveries_total", "counter", "Number of failed delivery attempts to the endpoint");
+    for (EndpointStatistics endpoint : deliveryStatistics.getEndpoints()) {
+      labeledSample("failed_deliveries_total", "endpoint", endpoint.getUrl(), endpoint.getFailed());
+    }
+    header("delivery_duration_seconds", "histogram", "Duration of the delivery attempts to the endpoint");
+    for (EndpointStatistics endpoint : deliveryStatistics.getEndpoints()) {
+      histogram("delivery_duration_seconds", "endpoint", endpoint.getUrl(), endpoint.getTotalLatency());
+    }
+  }
+
+  private void writeStages() {
+    header("stage_duration_seconds", "histogram", "Duration of the stages of the processing of a push");
+    for (PipelineStage stage : PipelineStage.values()) {
+      histogram("stage_duration_seconds", "stage", stage.getKey(), stageLatencies.getTotalLatency(stage));
+    }
+  }
+
+  private void header(String name, String type, String help) {
+    buffer.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+    buffer.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+  }
+
+  private void sample(String name, long value) {
+    buffer.append(PREFIX).append(name).append(' ').append(value).append('\n');
+  }
+
+  private void labeledSample(String name, String label, String labelValue, long value) {
+    buffer.append(PREFIX).append(name);
+    labels(label, labelValue);
+    buffer.append(' ').append(value).append('\n');
+  }
+
+  private void histogram(String name, String label, String labelValue, LatencyHistogram histogram) {
+    int buckets = histogram.getBucketCount();
+    if (cumulative.length < buckets) {
+      cumulative = new long[buckets];
+    }
+    long sum = histogram.snapshot(cumulative);
+    for (int i = 0; i < buckets; i++) {
+      buffer.append(PREFIX).append(name).append("_bucket{").append(label).append("=\"").appendLabelValue(labelValue).append("\",le=\"");
+      if (i < buckets - 1) {
+        buffer.appendDecimal(histogram.getBound(i), histogram.getScale());
+      } else {
+        buffer.append("+Inf");
+      }
+      buffer.append("\"} ").append(cumulative[i]).append('\n');
+    }
+    buffer.append(PREFIX).append(name).append("_sum");
+    labels(label, labelValue);
+    buffer.append(' ').appendDecimal(sum, histogram.getScale()).append('\n');
+    buffer.append(PREFIX).append(name).append("_count");
+    labels(label, labelValue);
+    buffer.append(' ').append(cumulative[buckets - 1]).append('\n');
+  }
+
+  private void labels(String label, String labelValue) {
+    buffer.append('{').append(label).append("=\"").appendLabelValue(labelValue).append("\"}");
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.metrics;
+
+import com.google.inject.Inject;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.web.VndMediaType;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.Response;
+
+@Path(PrometheusMetricsResource.PUSHEVENT_METRICS_PATH_V2)
+public class PrometheusMetricsResource {
+
+  static final String PUSHEVENT_METRICS_PATH_V2 = "v2/pushevent/metrics";
+
+  private final PrometheusMetrics metrics;
+
+  @Inject
+  public PrometheusMetricsResource(PrometheusMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  @GET
+  @Path("")
+  @Produces(PrometheusMetrics.CONTENT_TYPE)
+  @Operation(
+    summary = "Get push event metrics in the Prometheus format",
+    description = "Returns the counters, gauges and histograms of the plugin in the Prometheus text exposition format, so that they can be scraped without a metrics backend of SCM-Manager.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_get_metrics"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(mediaType = PrometheusMetrics.CONTENT_TYPE)
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response get() {
+    ConfigurationPermissions.read("pushevent").check();
+    return Response.ok(metrics.scrape(), PrometheusMetrics.CONTENT_TYPE).build();
+  }
+}
@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.pathcollect;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.config.RenameDetection;
+import com.jb.pushevent.dto.FileChanges;
+import sonia.scm.repository.Modifications;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * The NetFileChanges class folds the modifications of several changesets into the net effect they have on the
+ * repository, e.g. a file which is added and removed again within the same push does not appear at all.
+ * <p>
+ * Modifications have to be applied in the order in which the changesets were committed.
+ */
+public class NetFileChanges {
+
+  private static final String PAIR_SEPARATOR = " --> ";
+
+  private enum State {
+    ADDED, MODIFIED, REMOVED
+  }
+
+  private final Map<String, State> states = new LinkedHashMap<>();
+  // target path -> path of the file before the push
+  private final Map<String, String> moved = new LinkedHashMap<>();
+  // target path -> source path
+  private final Map<String, String> copied = new LinkedHashMap<>();
+
+  /**
+   * folds the modifications of a single changeset into the net changes
+   *
+   * @param modifications all modifications from the changeset
+   */
+  public void apply(Modifications modifications) {
+    apply(modifications, RenameDetection.FULL);
+  }
+
+  /**
+   * folds the modifications of a single changeset into the net changes, renames and copies which are not included in
+   * the detection are folded as additions and removals
+   *
+   * @param modifications all modifications from the changeset
+   * @param detection     renames and copies which are kept
+   */
+  public void apply(Modifications modifications, RenameDetection detection) {
+    modifications.getRemoved().forEach(rmv -> remove(PathCollector.normalizePath(rmv.getPath())));
+    modifications.getRenamed().forEach(mov -> {
+      String oldPath = PathCollector.normalizePath(mov.getOldPath());
+      String newPath = PathCollector.normalizePath(mov.getNewPath());
+      if (detection.includesRenames()) {
+        rename(oldPath, newPath);
+      } else {
+        remove(oldPath);
+        add(newPath);
+      }
+    });
+    modifications.getCopied().forEach(cpy -> {
+      String targetPath = PathCollector.normalizePath(cpy.getTargetPath());
+      if (detection.includesCopies()) {
+        copy(PathCollector.normalizePath(cpy.getSourcePath()), targetPath);
+      } else {
+        add(targetPath);
+      }
+    });
+    modifications.getAdded().forEach(add -> add(PathCollector.normalizePath(add.getPath())));
+    modifications.getModified().forEach(mod -> modify(PathCollector.normalizePath(mod.getPath())));
+  }
+
+  /**
+   * folds already collected changes into the net changes, e.g. the net changes of a later push
+   *
+   * @param fileChanges collected changes
+   */
+  public void apply(FileChanges fileChanges) {
+    fileChanges.getRemoved().forEach(this::remove);
+    fileChanges.getMoved().forEach(mov -> applyPair(mov, this::rename));
+    fileChanges.getCopied().forEach(cpy -> applyPair(cpy, this::copy));
+    fileChanges.getAdded().forEach(this::add);
+    fileChanges.getModified().forEach(this::modify);
+  }
+
+  private void applyPair(String pair, BiConsumer<String, String> operation) {
+    int separator = pair.indexOf(PAIR_SEPARATOR);
+    if (separator > 0) {
+      operation.accept(pair.substring(0, separator), pair.substring(separator + PAIR_SEPARATOR.length()));
+    }
+  }
+
+  void add(String path) {
+    if (states.get(path) == State.REMOVED) {
+      states.put(path, State.MODIFIED);
+    } else {
+      states.put(path, State.ADDED);
+    }
+  }
+
+  void modify(String path) {
+    if (states.get(path) != State.ADDED) {
+      states.put(path, State.MODIFIED);
+    }
+  }
+
+  void remove(String path) {
+    if (copied.remove(path) != null) {
+      states.remove(path);
+      return;
+    }
+    String origin = moved.remove(path);
+    if (origin != null) {
+      states.remove(path);
+      states.put(origin, State.REMOVED);
+      return;
+    }
+    if (states.get(path) == State.ADDED) {
+      states.remove(path);
+    } else {
+      states.put(path, State.REMOVED);
+    }
+  }
+
+  void rename(String oldPath, String newPath) {
+    State oldState = states.remove(oldPath);
+    if (oldState == State.ADDED || copied.remove(oldPath) != null) {
+      // the file did not exist before the push, so it is just an addition
+      states.put(newPath, State.ADDED);
+      return;
+    }
+    String origin = moved.remove(oldPath);
+    if (origin == null) {
+      origin = oldPath;
+    }
+    if (!origin.equals(newPath)) {
+      moved.put(newPath, origin);
+    }
+    if (oldState == State.MODIFIED) {
+      states.put(newPath, State.MODIFIED);
+    }
+  }
+
+  void copy(String sourcePath, String targetPath) {
+    copied.put(targetPath, sourcePath);
+  }
+
+  /**
+   * @return the net changes as they are transmitted to the endpoint
+   */
+  public FileChanges toFileChanges() {
+    Set<String> added = new LinkedHashSet<>();
+    Set<String> removed = new LinkedHashSet<>();
+    Set<String> modified = new LinkedHashSet<>();
+    Set<String> movedPaths = new LinkedHashSet<>();
+    Set<String> copiedPaths = new LinkedHashSet<>();
+
+    states.forEach((path, state) -> {
+      if (state == State.ADDED) {
+        added.add(path);
+      } else if (state == State.REMOVED) {
+        removed.add(path);
+      } else {
+        modified.add(path);
+      }
+    });
+    moved.forEach((target, origin) -> movedPaths.add(origin + PAIR_SEPARATOR + target));
+    copied.forEach((target, source) -> copiedPaths.add(source + PAIR_SEPARATOR + target));
+
+    FileChanges fileChanges = new FileChanges(new ObjectMapper().createObjectNode());
+    fileChanges.setAdded(added);
+    fileChanges.setRemoved(removed);
+    fileChanges.setModified(modified);
+    fileChanges.setMoved(movedPaths);
+    fileChanges.setCopied(copiedPaths);
+    return fileChanges;
+  }
+}
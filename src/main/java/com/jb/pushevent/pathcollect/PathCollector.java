@@ -24,6 +24,7 @@
 package com.jb.pushevent.pathcollect;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.config.RenameDetection;
 import com.jb.pushevent.dto.FileChanges;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,6 +41,9 @@ import java.util.Set;
  * The PathCollector class collects all types of modifications which are part of a changeset.
  * <p>
  * These modification types are additions, modifications, coping of files, moving of files and file removables.
+ * Renamed and copied files are only reported as such as far as the configured {@link RenameDetection} allows,
+ * otherwise they are reported as additions and removals. The setting only changes the report, the repository
+ * always detects renames and copies while it looks up the modifications.
  */
 public class PathCollector implements Closeable {
 
@@ -47,19 +51,21 @@ public class PathCollector implements Closeable {
 
   private final RepositoryService repositoryService;
 
-  private final Set<String> added = new HashSet<>();
-  private final Set<String> removed = new HashSet<>();
-  private final Set<String> modified = new HashSet<>();
-  private final Set<String> copied = new HashSet<>();
-  private final Set<String> moved = new HashSet<>();
-
-  FileChanges fileChanges = new FileChanges(new ObjectMapper().createObjectNode());
-
+  private RenameDetection renameDetection = RenameDetection.FULL;
 
   PathCollector(RepositoryService repositoryService) {
     this.repositoryService = repositoryService;
   }
 
+  /**
+   * limits the reporting of renamed and copied files
+   *
+   * @param renameDetection renames and copies which are reported
+   */
+  public void setRenameDetection(RenameDetection renameDetection) {
+    this.renameDetection = renameDetection;
+  }
+
   /**
    * collect all changes from a changeset and return it as collections of various scopes (added, modified ...)
    *
@@ -68,59 +74,114 @@ public class PathCollector implements Closeable {
    * @throws IOException
    */
   public FileChanges collectAll(Iterable<Changeset> changesets) throws IOException {
-    added.clear();
-    removed.clear();
-    modified.clear();
-    copied.clear();
-    moved.clear();
+    return collectAll(changesets, null);
+  }
+
+  /**
+   * collect all changes from a changeset like {@link #collectAll(Iterable)} and additionally fold them into the given
+   * net changes of the whole push, so that every modification is only looked up once
+   *
+   * @param changesets
+   * @param aggregate net changes of the push, may be null
+   * @return
+   * @throws IOException
+   */
+  public FileChanges collectAll(Iterable<Changeset> changesets, NetFileChanges aggregate) throws IOException {
+    Set<String> added = new HashSet<>();
+    Set<String> removed = new HashSet<>();
+    Set<String> modified = new HashSet<>();
+    Set<String> copied = new HashSet<>();
+    Set<String> moved = new HashSet<>();
+    RenameDetection detection = renameDetection;
     for (Changeset c : changesets) {
-      collect(c);
+      Modifications modifications = collect(c);
+      if (modifications != null) {
+        modifications.getAdded().forEach(add -> appendNormalizedPathToSet(added, add.getPath()));
+        modifications.getRemoved().forEach(rmv -> appendNormalizedPathToSet(removed, rmv.getPath()));
+        modifications.getModified().forEach(mod -> appendNormalizedPathToSet(modified, mod.getPath()));
+        modifications.getRenamed().forEach(mov -> {
+          if (detection.includesRenames()) {
+            appendNormalizedPathToSet(moved, mov.getOldPath() + " --> " + mov.getNewPath());
+          } else {
+            appendNormalizedPathToSet(removed, mov.getOldPath());
+            appendNormalizedPathToSet(added, mov.getNewPath());
+          }
+        });
+        modifications.getCopied().forEach(cpy -> {
+          if (detection.includesCopies()) {
+            appendNormalizedPathToSet(copied, cpy.getSourcePath() + " --> " + cpy.getTargetPath());
+          } else {
+            appendNormalizedPathToSet(added, cpy.getTargetPath());
+          }
+        });
+        if (aggregate != null) {
+          aggregate.apply(modifications, detection);
+        }
+      }
     }
+
+    FileChanges fileChanges = new FileChanges(new ObjectMapper().createObjectNode());
+    fileChanges.setAdded(added);
+    fileChanges.setRemoved(removed);
+    fileChanges.setModified(modified);
+    fileChanges.setMoved(moved);
+    fileChanges.setCopied(copied);
     return fileChanges;
   }
 
   /**
-   * collects all changes in a changeset and fills the right sets corresponding to the change scope
+   * folds the changes of the changesets into the given net changes without building per commit collections
    *
-   * @param changeset all changes on that changeset
+   * @param changesets changesets in the order in which they were committed
+   * @param aggregate net changes of the push
    * @throws IOException
    */
-  private void collect(Changeset changeset) throws IOException {
-    Modifications modifications = repositoryService.getModificationsCommand()
-      .revision(changeset.getId())
-      .getModifications();
-
-    if (modifications != null) {
-      sortModificationsIntoAppropriateSet(modifications);
-    } else {
-      LOG.warn("there is no modifications for the changeset {}", changeset.getId());
+  public void aggregate(Iterable<Changeset> changesets, NetFileChanges aggregate) throws IOException {
+    for (Changeset c : changesets) {
+      Modifications modifications = collect(c);
+      if (modifications != null) {
+        aggregate.apply(modifications, renameDetection);
+      }
     }
   }
 
   /**
-   * takes the modifications and sorts them in the respective sets of their scope
+   * collect the net changes of all changesets, e.g. a file which is added by one changeset and removed by a later one
+   * is not part of the result
    *
-   * @param modifications all modifications from the changeset
+   * @param changesets changesets in the order in which they were committed
+   * @return
+   * @throws IOException
    */
-  private void sortModificationsIntoAppropriateSet(Modifications modifications) {
-    modifications.getAdded().forEach(add -> appendNormalizedPathToSet(added, add.getPath()));
-    modifications.getRemoved().forEach(rmv -> appendNormalizedPathToSet(removed, rmv.getPath()));
-    modifications.getModified().forEach(mod -> appendNormalizedPathToSet(modified, mod.getPath()));
-    modifications.getRenamed().forEach(mov -> appendNormalizedPathToSet(moved, mov.getOldPath() + " --> " + mov.getNewPath()));
-    modifications.getCopied().forEach(cpy -> appendNormalizedPathToSet(copied, cpy.getSourcePath() + " --> " + cpy.getTargetPath()));
+  public FileChanges collectNet(Iterable<Changeset> changesets) throws IOException {
+    NetFileChanges aggregate = new NetFileChanges();
+    aggregate(changesets, aggregate);
+    return aggregate.toFileChanges();
+  }
 
-    fileChanges.setAdded(added);
-    fileChanges.setRemoved(removed);
-    fileChanges.setModified(modified);
-    fileChanges.setMoved(moved);
-    fileChanges.setCopied(copied);
+  /**
+   * looks up the modifications of a changeset
+   *
+   * @param changeset all changes on that changeset
+   * @return the modifications or null if there are none
+   * @throws IOException
+   */
+  private Modifications collect(Changeset changeset) throws IOException {
+    Modifications modifications = repositoryService.getModificationsCommand()
+      .revision(changeset.getId())
+      .getModifications();
+
+    if (modifications == null) {
+      LOG.warn("there is no modifications for the changeset {}", changeset.getId());
+    }
+    return modifications;
   }
 
   private void appendNormalizedPathToSet(Set<String> modificationSet, String modifiedPaths) {
     modificationSet.add(normalizePath(modifiedPaths));
   }
 
-  private String normalizePath(String path) {
+  static String normalizePath(String path) {
     if (path.startsWith("/")) {
       return path.substring(1);
     }
@@ -0,0 +1,161 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.refs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.dto.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.Tag;
+import sonia.scm.repository.api.HookContext;
+import sonia.scm.repository.api.HookFeature;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Sends an event for every branch and tag which was changed by a push, see {@link RefEventType}.
+ * <p>
+ * The events are created from the branch and tag providers of the hook only, neither the changesets nor the
+ * repository are read. A push which only deletes branches or creates or deletes tags is completely handled by these
+ * events.
+ */
+@Singleton
+public class RefEventPublisher {
+
+  private static final Logger LOG = LoggerFactory.getLogger(RefEventPublisher.class);
+
+  private final EventDispatcher dispatcher;
+
+  @Inject
+  public RefEventPublisher(EventDispatcher dispatcher) {
+    this.dispatcher = dispatcher;
+  }
+
+  /**
+   * @param context context of the hook
+   * @return true if no branch was created or modified, so that the push contains no commits
+   */
+  public static boolean isRefOnly(HookContext context) {
+    return context.isFeatureSupported(HookFeature.BRANCH_PROVIDER) && context.getBranchProvider().getCreatedOrModified().isEmpty();
+  }
+
+  /**
+   * sends the events for deleted branches and for created and deleted tags
+   *
+   * @param repository    repository of the push
+   * @param context       context of the hook
+   * @param username      resolves the user who pushed, it is only called if there are changes
+   * @param configuration effective configuration of the repository
+   * @return number of sent events
+   */
+  public int publishRefChanges(Repository repository, HookContext context, Supplier<String> username, PushEventConfiguration configuration) {
+    List<String> deletedBranches = deletedBranches(context);
+    List<Tag> createdTags = context.isFeatureSupported(HookFeature.TAG_PROVIDER) ? nonNull(context.getTagProvider().getCreatedTags()) : Collections.emptyList();
+    List<Tag> deletedTags = context.isFeatureSupported(HookFeature.TAG_PROVIDER) ? nonNull(context.getTagProvider().getDeletedTags()) : Collections.emptyList();
+    if (deletedBranches.isEmpty() && createdTags.isEmpty() && deletedTags.isEmpty()) {
+      return 0;
+    }
+    String user = username.get();
+    int sent = 0;
+    for (String branch : deletedBranches) {
+      sent += send(repository, createEvent(RefEventType.BRANCH_DELETED, repository, user, "branch", branch, null), configuration);
+    }
+    for (Tag tag : createdTags) {
+      sent += send(repository, createEvent(RefEventType.TAG_CREATED, repository, user, "tag", tag.getName(), tag.getRevision()), configuration);
+    }
+    for (Tag tag : deletedTags) {
+      sent += send(repository, createEvent(RefEventType.TAG_DELETED, repository, user, "tag", tag.getName(), tag.getRevision()), configuration);
+    }
+    return sent;
+  }
+
+  /**
+   * sends the events for created or modified branches of a push without new commits
+   *
+   * @param repository    repository of the push
+   * @param context       context of the hook
+   * @param username      resolves the user who pushed, it is only called if there are changes
+   * @param configuration effective configuration of the repository
+   * @return number of sent events
+   */
+  public int publishUpdatedBranches(Repository repository, HookContext context, Supplier<String> username, PushEventConfiguration configuration) {
+    if (!context.isFeatureSupported(HookFeature.BRANCH_PROVIDER)) {
+      return 0;
+    }
+    List<String> branches = nonNull(context.getBranchProvider().getCreatedOrModified());
+    if (branches.isEmpty()) {
+      return 0;
+    }
+    String user = username.get();
+    int sent = 0;
+    for (String branch : branches) {
+      sent += send(repository, createEvent(RefEventType.BRANCH_UPDATED, repository, user, "branch", branch, null), configuration);
+    }
+    return sent;
+  }
+
+  private static List<String> deletedBranches(HookContext context) {
+    if (!context.isFeatureSupported(HookFeature.BRANCH_PROVIDER)) {
+      return Collections.emptyList();
+    }
+    return nonNull(context.getBranchProvider().getDeletedOrClosed());
+  }
+
+  private static <T> List<T> nonNull(List<T> list) {
+    return list != null ? list : Collections.emptyList();
+  }
+
+  private int send(Repository repository, Event event, PushEventConfiguration configuration) {
+    try {
+      return dispatcher.dispatch(repository.getId(), event, configuration) ? 1 : 0;
+    } catch (IOException e) {
+      LOG.warn("could not send the {} event of repository {}", event.getType(), repository.getId(), e);
+      return 0;
+    }
+  }
+
+  static Event createEvent(RefEventType type, Repository repository, String user, String refField, String ref, String revision) {
+    ObjectNode data = new ObjectMapper().createObjectNode();
+    data.put("repositoryId", repository.getId());
+    data.put("repositoryNamespace", repository.getNamespace());
+    data.put("repositoryName", repository.getName());
+    if (user != null && !user.isEmpty()) {
+      data.put("user", user);
+    }
+    data.put(refField, ref);
+    if (revision != null) {
+      data.put("revision", revision);
+    }
+    return Event.of(type.getType(), data);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.refs;
+
+/**
+ * Types of the events for changed branches and tags.
+ */
+public enum RefEventType {
+  /**
+   * a branch was created at or moved to an existing commit, e.g. a new branch for an existing commit or a force push
+   * to an older commit. Branches with new commits are part of the push event.
+   */
+  BRANCH_UPDATED("branch_updated"),
+  BRANCH_DELETED("branch_deleted"),
+  TAG_CREATED("tag_created"),
+  TAG_DELETED("tag_deleted");
+
+  private final String type;
+
+  RefEventType(String type) {
+    this.type = type;
+  }
+
+  /**
+   * @return the type of the event
+   */
+  public String getType() {
+    return type;
+  }
+}
@@ -0,0 +1,275 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.sampling;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import com.jb.pushevent.config.SamplingRule;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.dto.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Applies the {@link SamplingRule}s to the pushes of busy repositories before they are processed.
+ * <p>
+ * Pushes which are sampled out or exceed the limit of their repository are dropped without any access to the
+ * repository. Every {@link PushEventConfiguration#getSamplingIntervalSeconds()} seconds a summary event with the type
+ * {@value #SUMMARY_TYPE} is sent for every repository with dropped pushes, so that the consumer can reconstruct the
+ * totals.
+ */
+@Singleton
+public class EventSampler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventSampler.class);
+
+  static final String SUMMARY_TYPE = "sampling_summary";
+
+  private final EventDispatcher dispatcher;
+  private final PushEventConfigurationStore configurationStore;
+  private final PushEventConfigurationResolver configurationResolver;
+  private final LongSupplier clock;
+  private final DoubleSupplier random;
+  private final AtomicReference<SamplingRules> rules = new AtomicReference<>();
+  private final ConcurrentMap<String, RepositoryCounter> counters = new ConcurrentHashMap<>();
+  private final LongAdder totalSampledOut = new LongAdder();
+  private final LongAdder totalRateLimited = new LongAdder();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pushevent-sampling");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @Inject
+  public EventSampler(EventDispatcher dispatcher, PushEventConfigurationStore configurationStore, PushEventConfigurationResolver configurationResolver) {
+    this(dispatcher, configurationStore, configurationResolver, System::currentTimeMillis, () -> ThreadLocalRandom.current().nextDouble());
+    scheduler.schedule(this::run, configurationStore.get().getSamplingIntervalSeconds(), TimeUnit.SECONDS);
+  }
+
+  EventSampler(EventDispatcher dispatcher, PushEventConfigurationStore configurationStore, PushEventConfigurationResolver configurationResolver, LongSupplier clock, DoubleSupplier random) {
+    this.dispatcher = dispatcher;
+    this.configurationStore = configurationStore;
+    this.configurationResolver = configurationResolver;
+    this.clock = clock;
+    this.random = random;
+  }
+
+  /**
+   * decides whether a push to the repository is processed
+   *
+   * @param repository    the repository of the push
+   * @param configuration effective configuration of the repository
+   * @return false if the push is sampled out or exceeds the limit of the repository
+   */
+  public boolean accept(Repository repository, PushEventConfiguration configuration) {
+    SamplingRules compiled = compile(configuration);
+    if (compiled.isEmpty()) {
+      return true;
+    }
+    SamplingRule rule = compiled.match(repository.getNamespace() + "/" + repository.getName());
+    if (rule == null) {
+      return true;
+    }
+    long now = clock.getAsLong();
+    boolean sampled = rule.getRate() >= 1.0 || random.getAsDouble() < rule.getRate();
+    long intervalMillis = configuration.getSamplingIntervalSeconds() * 1000L;
+    AtomicReference<Decision> decision = new AtomicReference<>();
+    // the counter is updated within compute, so that a concurrent summary can neither miss nor forget the push
+    counters.compute(repository.getId(), (id, current) -> {
+      RepositoryCounter counter = current != null ? current : new RepositoryCounter(repository, now);
+      decision.set(counter.record(sampled, rule.getMaxEventsPerInterval(), now, intervalMillis));
+      return counter;
+    });
+    if (decision.get() == Decision.SAMPLED_OUT) {
+      totalSampledOut.increment();
+      return false;
+    }
+    if (decision.get() == Decision.RATE_LIMITED) {
+      totalRateLimited.increment();
+      return false;
+    }
+    return true;
+  }
+
+  private SamplingRules compile(PushEventConfiguration configuration) {
+    SamplingRules current = rules.get();
+    if (current != null && current.isCompiledFrom(configuration.getSamplingRules())) {
+      return current;
+    }
+    // configurations are replaced and never modified, the rules are compiled once per configuration
+    SamplingRules compiled = new SamplingRules(configuration.getSamplingRules());
+    rules.set(compiled);
+    return compiled;
+  }
+
+  private void run() {
+    try {
+      summarize();
+    } catch (RuntimeException e) {
+      LOG.warn("could not send the summary of the sampled out events", e);
+    } finally {
+      scheduler.schedule(this::run, configurationStore.get().getSamplingIntervalSeconds(), TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * sends a summary event for every repository with dropped pushes since the last summary
+   */
+  void summarize() {
+    long now = clock.getAsLong();
+    for (String repositoryId : counters.keySet()) {
+      AtomicReference<Event> summary = new AtomicReference<>();
+      counters.computeIfPresent(repositoryId, (id, counter) -> {
+        if (counter.received == 0) {
+          // repositories without pushes are forgotten, so that the counters do not grow with the number of repositories
+          return null;
+        }
+        if (counter.sampledOut + counter.rateLimited > 0) {
+          summary.set(createSummary(counter.repository, counter.periodStart, now, counter.received, counter.sampledOut, counter.rateLimited));
+        }
+        counter.reset(now);
+        return counter;
+      });
+      if (summary.get() != null) {
+        send(repositoryId, summary.get());
+      }
+    }
+  }
+
+  private void send(String repositoryId, Event summary) {
+    PushEventConfiguration configuration = configurationResolver.resolve(repositoryId);
+    if (!configuration.getActive()) {
+      return;
+    }
+    try {
+      dispatcher.dispatch(repositoryId, summary, configuration);
+    } catch (IOException e) {
+      LOG.warn("could not send the sampling summary of repository {}", repositoryId, e);
+    }
+  }
+
+  static Event createSummary(Repository repository, long from, long to, long received, long sampledOut, long rateLimited) {
+    ObjectNode data = new ObjectMapper().createObjectNode();
+    data.put("repositoryId", repository.getId());
+    data.put("repositoryNamespace", repository.getNamespace());
+    data.put("repositoryName", repository.getName());
+    data.put("from", Instant.ofEpochMilli(from).toString());
+    data.put("to", Instant.ofEpochMilli(to).toString());
+    data.put("received", received);
+    data.put("sent", received - sampledOut - rateLimited);
+    data.put("sampledOut", sampledOut);
+    data.put("rateLimited", rateLimited);
+    return Event.of(SUMMARY_TYPE, data);
+  }
+
+  /**
+   * @return number of pushes which were sampled out since the start
+   */
+  public long getSampledOut() {
+    return totalSampledOut.sum();
+  }
+
+  /**
+   * @return number of pushes which exceeded the limit of their repository since the start
+   */
+  public long getRateLimited() {
+    return totalRateLimited.sum();
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+
+  private enum Decision {
+    ACCEPTED, SAMPLED_OUT, RATE_LIMITED
+  }
+
+  /**
+   * Counts the pushes of a repository. The counter is only accessed within {@code compute} of the counters map.
+   */
+  private static class RepositoryCounter {
+
+    private final Repository repository;
+    private long periodStart;
+    private long received;
+    private long sampledOut;
+    private long rateLimited;
+    private long window = -1;
+    private long windowCount;
+
+    RepositoryCounter(Repository repository, long now) {
+      this.repository = repository;
+      this.periodStart = now;
+    }
+
+    Decision record(boolean sampled, int maxEventsPerInterval, long now, long intervalMillis) {
+      received++;
+      if (!sampled) {
+        sampledOut++;
+        return Decision.SAMPLED_OUT;
+      }
+      if (maxEventsPerInterval > 0) {
+        long current = now / intervalMillis;
+        if (current != window) {
+          window = current;
+          windowCount = 0;
+        }
+        if (++windowCount > maxEventsPerInterval) {
+          rateLimited++;
+          return Decision.RATE_LIMITED;
+        }
+      }
+      return Decision.ACCEPTED;
+    }
+
+    /**
+     * starts a new summary period, the fixed window of the limit continues
+     */
+    void reset(long now) {
+      periodStart = now;
+      received = 0;
+      sampledOut = 0;
+      rateLimited = 0;
+    }
+  }
+}
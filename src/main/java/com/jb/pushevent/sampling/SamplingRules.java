@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.sampling;
+
+import com.google.common.base.Strings;
+import com.jb.pushevent.config.SamplingRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * The compiled {@link SamplingRule}s of a configuration.
+ */
+class SamplingRules {
+
+  private final List<SamplingRule> source;
+  private final List<Pattern> patterns = new ArrayList<>();
+  private final List<SamplingRule> rules = new ArrayList<>();
+
+  SamplingRules(List<SamplingRule> source) {
+    this.source = source;
+    for (SamplingRule rule : source) {
+      if (rule != null && !Strings.isNullOrEmpty(rule.getPattern())) {
+        patterns.add(compile(rule.getPattern()));
+        rules.add(rule);
+      }
+    }
+  }
+
+  /**
+   * @param source rules of a configuration
+   * @return true if the rules were compiled from the given list
+   */
+  boolean isCompiledFrom(List<SamplingRule> source) {
+    return this.source == source;
+  }
+
+  boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * @param path {@code namespace/name} of a repository
+   * @return the first rule which matches the repository or null
+   */
+  SamplingRule match(String path) {
+    for (int i = 0; i < patterns.size(); i++) {
+      if (patterns.get(i).matcher(path).matches()) {
+        return rules.get(i);
+      }
+    }
+    return null;
+  }
+
+  static Pattern compile(String glob) {
+    StringBuilder regex = new StringBuilder();
+    StringBuilder literal = new StringBuilder();
+    for (int i = 0; i < glob.length(); i++) {
+      char c = glob.charAt(i);
+      if (c != '*' && c != '?') {
+        literal.append(c);
+        continue;
+      }
+      if (literal.length() > 0) {
+        regex.append(Pattern.quote(literal.toString()));
+        literal.setLength(0);
+      }
+      if (c == '?') {
+        regex.append("[^/]");
+      } else if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+        regex.append(".*");
+        i++;
+      } else {
+        regex.append("[^/]*");
+      }
+    }
+    if (literal.length() > 0) {
+      regex.append(Pattern.quote(literal.toString()));
+    }
+    return Pattern.compile(regex.toString());
+  }
+}
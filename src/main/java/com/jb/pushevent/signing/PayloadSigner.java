@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.signing;
+
+import com.google.common.base.Strings;
+import com.google.common.io.BaseEncoding;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Signs the payload of an event with HMAC-SHA256, so that the receiver can verify that the event was sent by this
+ * SCM-Manager and was not modified.
+ * <p>
+ * The signature is computed over {@code <timestamp>.<payload>}, the timestamp is sent with the event so that the
+ * receiver can reject replayed events. The payload is fed to the {@link Mac} as it is, without copying or encoding it
+ * again. {@link Mac} instances are expensive to create and not thread safe, they are kept in a pool and reused by the
+ * delivery threads.
+ */
+public class PayloadSigner {
+
+  public static final String SIGNATURE_HEADER = "X-Pushevent-Signature";
+  public static final String TIMESTAMP_HEADER = "X-Pushevent-Timestamp";
+
+  static final String ALGORITHM = "HmacSHA256";
+  private static final String SIGNATURE_PREFIX = "sha256=";
+  private static final byte SEPARATOR = '.';
+
+  private final SecretKeySpec key;
+  private final Queue<Mac> pool = new ConcurrentLinkedQueue<>();
+
+  public PayloadSigner(String secret) {
+    this.key = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    // fails early if the algorithm is not available
+    pool.offer(createMac());
+  }
+
+  /**
+   * @param secret shared secret of the configuration
+   * @return a signer for the secret or null if the events are not signed
+   */
+  public static PayloadSigner of(String secret) {
+    return Strings.isNullOrEmpty(secret) ? null : new PayloadSigner(secret);
+  }
+
+  /**
+   * @param timestamp seconds since the epoch, which are sent in the {@link #TIMESTAMP_HEADER}
+   * @param payload   serialized event
+   * @return the value of the {@link #SIGNATURE_HEADER}
+   */
+  public String sign(long timestamp, byte[] payload) {
+    Mac mac = pool.poll();
+    if (mac == null) {
+      mac = createMac();
+    }
+    try {
+      mac.update(Long.toString(timestamp).getBytes(StandardCharsets.US_ASCII));
+      mac.update(SEPARATOR);
+      mac.update(payload);
+      // doFinal resets the mac, so that it can be reused
+      return SIGNATURE_PREFIX + BaseEncoding.base16().lowerCase().encode(mac.doFinal());
+    } finally {
+      pool.offer(mac);
+    }
+  }
+
+  private Mac createMac() {
+    try {
+      Mac mac = Mac.getInstance(ALGORITHM);
+      mac.init(key);
+      return mac;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("could not create " + ALGORITHM + " signature", e);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import com.google.inject.Singleton;
+import com.jb.pushevent.config.DegradationMode;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often pushes with a processing budget were degraded.
+ */
+@Singleton
+public class DegradationStatistics {
+
+  static final String WITHIN_BUDGET = "WITHIN_BUDGET";
+
+  private final LongAdder withinBudget = new LongAdder();
+  private final Map<DegradationMode, LongAdder> degraded = new EnumMap<>(DegradationMode.class);
+
+  public DegradationStatistics() {
+    for (DegradationMode mode : DegradationMode.values()) {
+      degraded.put(mode, new LongAdder());
+    }
+  }
+
+  /**
+   * @param degradation the applied degradation or null if the push was processed within its budget
+   */
+  public void record(DegradationMode degradation) {
+    if (degradation == null) {
+      withinBudget.increment();
+    } else {
+      degraded.get(degradation).increment();
+    }
+  }
+
+  /**
+   * @return number of pushes per degradation, pushes within their budget are counted as {@code WITHIN_BUDGET}
+   */
+  public Map<String, Long> getCounts() {
+    Map<String, Long> counts = new LinkedHashMap<>();
+    counts.put(WITHIN_BUDGET, withinBudget.sum());
+    degraded.forEach((mode, count) -> counts.put(mode.name(), count.sum()));
+    return counts;
+  }
+
+  /**
+   * @return number of pushes within their budget
+   */
+  public long getWithinBudget() {
+    return withinBudget.sum();
+  }
+
+  /**
+   * @param degradation a degradation
+   * @return number of pushes which were degraded with the degradation
+   */
+  public long getDegraded(DegradationMode degradation) {
+    return degraded.get(degradation).sum();
+  }
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Aggregates the deliveries of all endpoints per minute for the last minutes.
+ * <p>
+ * Like {@link SlidingWindowCounter} the minutes are kept in a ring buffer, which is reset lazily by the first record
+ * of a new minute. Reading a minute never blocks the delivery.
+ */
+class DeliveryHistory {
+
+  static final int MINUTES = 15;
+  private static final long MINUTE_MILLIS = 60_000;
+
+  private final AtomicLongArray stamps = new AtomicLongArray(MINUTES);
+  private final AtomicLongArray delivered = new AtomicLongArray(MINUTES);
+  private final AtomicLongArray failed = new AtomicLongArray(MINUTES);
+  private final AtomicLongArray maxQueuedEvents = new AtomicLongArray(MINUTES);
+  private final RollingHistogram latency = new RollingHistogram(MINUTES, MINUTE_MILLIS);
+
+  DeliveryHistory() {
+    for (int i = 0; i < MINUTES; i++) {
+      stamps.set(i, -1);
+    }
+  }
+
+  void recordDelivery(boolean success, long latencyMillis, long nowMillis) {
+    int index = slot(nowMillis);
+    (success ? delivered : failed).incrementAndGet(index);
+    latency.record(latencyMillis, nowMillis);
+  }
+
+  void recordQueuedEvents(long queuedEvents, long nowMillis) {
+    int index = slot(nowMillis);
+    maxQueuedEvents.accumulateAndGet(index, queuedEvents, Math::max);
+  }
+
+  private int slot(long nowMillis) {
+    long minute = nowMillis / MINUTE_MILLIS;
+    int index = (int) (minute % MINUTES);
+    long stamp = stamps.get(index);
+    if (stamp != minute && stamps.compareAndSet(index, stamp, minute)) {
+      delivered.set(index, 0);
+      failed.set(index, 0);
+      maxQueuedEvents.set(index, 0);
+    }
+    return index;
+  }
+
+  /**
+   * @param sinceMillis only minutes which end after this time are returned
+   * @param nowMillis   current time
+   * @return the minutes in chronological order, the last one is the current and still incomplete minute
+   */
+  List<MinuteStatistics> since(long sinceMillis, long nowMillis) {
+    long current = nowMillis / MINUTE_MILLIS;
+    long oldest = Math.max(current - MINUTES + 1, sinceMillis / MINUTE_MILLIS);
+    List<MinuteStatistics> minutes = new ArrayList<>();
+    for (long minute = oldest; minute <= current; minute++) {
+      int index = (int) (minute % MINUTES);
+      long start = minute * MINUTE_MILLIS;
+      if (stamps.get(index) == minute) {
+        RollingHistogram.Snapshot snapshot = latency.sliceSnapshot(start);
+        minutes.add(new MinuteStatistics(
+          start, delivered.get(index), failed.get(index), maxQueuedEvents.get(index),
+          snapshot.percentile(50), snapshot.percentile(95), snapshot.percentile(99), snapshot.getMax()
+        ));
+      } else {
+        // nothing happened within the minute
+        minutes.add(new MinuteStatistics(start, 0, 0, 0, 0, 0, 0, 0));
+      }
+    }
+    return minutes;
+  }
+}
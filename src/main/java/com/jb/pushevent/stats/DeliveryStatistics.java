@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import com.google.inject.Singleton;
+
+import java.time.Clock;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects the results of all deliveries per endpoint.
+ * <p>
+ * Everything is recorded with atomic counters, so that reading the statistics never blocks the delivery.
+ */
+@Singleton
+public class DeliveryStatistics {
+
+  private final Clock clock;
+  private final ConcurrentMap<String, EndpointStatistics> endpoints = new ConcurrentHashMap<>();
+  private final DeliveryHistory history = new DeliveryHistory();
+
+  public DeliveryStatistics() {
+    this(Clock.systemUTC());
+  }
+
+  DeliveryStatistics(Clock clock) {
+    this.clock = clock;
+  }
+
+  public void recordSuccess(String url, long latencyMillis) {
+    long now = clock.millis();
+    endpoint(url).recordSuccess(latencyMillis, now);
+    history.recordDelivery(true, latencyMillis, now);
+  }
+
+  public void recordFailure(String url, long latencyMillis, String error) {
+    long now = clock.millis();
+    endpoint(url).recordFailure(latencyMillis, error, now);
+    history.recordDelivery(false, latencyMillis, now);
+  }
+
+  /**
+   * @param queuedEvents number of events in the queue when an event is taken for the delivery
+   */
+  public void recordQueuedEvents(long queuedEvents) {
+    history.recordQueuedEvents(queuedEvents, clock.millis());
+  }
+
+  /**
+   * @param sinceMillis only minutes which end after this time are returned, 0 for all minutes
+   * @return the deliveries of all endpoints per minute of the last {@value DeliveryHistory#MINUTES} minutes, the
+   * last one is the current minute
+   */
+  public List<MinuteStatistics> getHistory(long sinceMillis) {
+    return history.since(sinceMillis, clock.millis());
+  }
+
+  private EndpointStatistics endpoint(String url) {
+    EndpointStatistics statistics = endpoints.get(url);
+    if (statistics == null) {
+      statistics = endpoints.computeIfAbsent(url, EndpointStatistics::new);
+    }
+    return statistics;
+  }
+
+  public Collection<EndpointStatistics> getEndpoints() {
+    return Collections.unmodifiableCollection(endpoints.values());
+  }
+
+  public long now() {
+    return clock.millis();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delivery statistics of a single endpoint.
+ */
+public class EndpointStatistics {
+
+  static final int WINDOW_SECONDS = 15 * 60;
+  private static final int LATENCY_SLICES = 5;
+  private static final long LATENCY_SLICE_MILLIS = 60_000;
+
+  private final String url;
+  private final LongAdder delivered = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+  private final SlidingWindowCounter deliveredWindow = new SlidingWindowCounter(WINDOW_SECONDS);
+  private final SlidingWindowCounter failedWindow = new SlidingWindowCounter(WINDOW_SECONDS);
+  private final RollingHistogram latency = new RollingHistogram(LATENCY_SLICES, LATENCY_SLICE_MILLIS);
+  private final LatencyHistogram totalLatency = LatencyHistogram.forMillis();
+  private final AtomicReference<LastError> lastError = new AtomicReference<>();
+
+  EndpointStatistics(String url) {
+    this.url = url;
+  }
+
+  void recordSuccess(long latencyMillis, long nowMillis) {
+    delivered.increment();
+    deliveredWindow.increment(nowMillis);
+    latency.record(latencyMillis, nowMillis);
+    totalLatency.record(latencyMillis);
+  }
+
+  void recordFailure(long latencyMillis, String error, long nowMillis) {
+    failed.increment();
+    failedWindow.increment(nowMillis);
+    latency.record(latencyMillis, nowMillis);
+    totalLatency.record(latencyMillis);
+    lastError.set(new LastError(nowMillis, error));
+  }
+
+  public String getUrl() {
+    return url;
+  }
+
+  public long getDelivered() {
+    return delivered.sum();
+  }
+
+  public long getFailed() {
+    return failed.sum();
+  }
+
+  public long getDelivered(int windowSeconds, long nowMillis) {
+    return deliveredWindow.sum(windowSeconds, nowMillis);
+  }
+
+  public long getFailed(int windowSeconds, long nowMillis) {
+    return failedWindow.sum(windowSeconds, nowMillis);
+  }
+
+  /**
+   * @param nowMillis current time
+   * @return latency percentiles in milliseconds of the last five minutes
+   */
+  public LatencyPercentiles getLatency(long nowMillis) {
+    RollingHistogram.Snapshot snapshot = latency.snapshot(nowMillis);
+    return new LatencyPercentiles(
+      snapshot.getTotal(),
+      snapshot.percentile(50),
+      snapshot.percentile(95),
+      snapshot.percentile(99),
+      snapshot.getMax()
+    );
+  }
+
+  /**
+   * @return latencies in milliseconds of all deliveries since the start
+   */
+  public LatencyHistogram getTotalLatency() {
+    return totalLatency;
+  }
+
+  public LastError getLastError() {
+    return lastError.get();
+  }
+
+  public static class LatencyPercentiles {
+    private final long count;
+    private final long p50;
+    private final long p95;
+    private final long p99;
+    private final long max;
+
+    LatencyPercentiles(long count, long p50, long p95, long p99, long max) {
+      this.count = count;
+      this.p50 = p50;
+      this.p95 = p95;
+      this.p99 = p99;
+      this.max = max;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    public long getP50() {
+      return p50;
+    }
+
+    public long getP95() {
+      return p95;
+    }
+
+    public long getP99() {
+      return p99;
+    }
+
+    public long getMax() {
+      return max;
+    }
+  }
+
+  public static class LastError {
+    private final long time;
+    private final String message;
+
+    LastError(long time, String message) {
+      this.time = time;
+      this.message = message;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public String getMessage() {
+      return message;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed buckets which counts all latencies since the start, e.g. for the export to Prometheus.
+ * <p>
+ * Unlike the {@link RollingHistogram} the counts never decrease. Recording searches the bucket within a dozen bounds
+ * and increments two adders.
+ */
+public class LatencyHistogram {
+
+  private final long[] bounds;
+  private final int scale;
+  private final LongAdder[] counts;
+  private final LongAdder sum = new LongAdder();
+
+  /**
+   * @param scale  number of decimal places of the recorded unit in seconds, e.g. 3 for milliseconds
+   * @param bounds ascending upper bounds of the buckets in the recorded unit, a bucket for larger values is added
+   */
+  LatencyHistogram(int scale, long... bounds) {
+    this.bounds = bounds;
+    this.scale = scale;
+    this.counts = new LongAdder[bounds.length + 1];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * @return a histogram for milliseconds with buckets from 5 milliseconds to 10 seconds
+   */
+  static LatencyHistogram forMillis() {
+    return new LatencyHistogram(3, 5, 10, 25, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000);
+  }
+
+  /**
+   * @return a histogram for nanoseconds with buckets from 10 microseconds to 5 seconds
+   */
+  static LatencyHistogram forNanos() {
+    return new LatencyHistogram(9, 10_000L, 50_000L, 100_000L, 500_000L, 1_000_000L, 5_000_000L, 10_000_000L,
+      50_000_000L, 100_000_000L, 500_000_000L, 1_000_000_000L, 5_000_000_000L);
+  }
+
+  void record(long value) {
+    int bucket = 0;
+    while (bucket < bounds.length && value > bounds[bucket]) {
+      bucket++;
+    }
+    counts[bucket].increment();
+    sum.add(value);
+  }
+
+  /**
+   * @return number of buckets including the bucket for values above the last bound
+   */
+  public int getBucketCount() {
+    return counts.length;
+  }
+
+  /**
+   * @param bucket index of a bucket below {@link #getBucketCount()} - 1
+   * @return upper bound of the bucket in the recorded unit
+   */
+  public long getBound(int bucket) {
+    return bounds[bucket];
+  }
+
+  /**
+   * @return number of decimal places of the recorded unit in seconds
+   */
+  public int getScale() {
+    return scale;
+  }
+
+  /**
+   * reads the cumulative counts into the given array, so that repeated reads do not allocate
+   *
+   * @param cumulative receives the number of values up to every bound, at least {@link #getBucketCount()} long
+   * @return the sum of all values in the recorded unit
+   */
+  public long snapshot(long[] cumulative) {
+    // the sum is read first, so that it never contains values which are missing in the counts
+    long total = sum.sum();
+    long count = 0;
+    for (int i = 0; i < counts.length; i++) {
+      count += counts[i].sum();
+      cumulative[i] = count;
+    }
+    return total;
+  }
+}
@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+/**
+ * The deliveries of all endpoints within a minute, latencies in milliseconds.
+ */
+public class MinuteStatistics {
+
+  private final long start;
+  private final long delivered;
+  private final long failed;
+  private final long maxQueuedEvents;
+  private final long latencyP50;
+  private final long latencyP95;
+  private final long latencyP99;
+  private final long latencyMax;
+
+  @SuppressWarnings("java:S107") // the values of a minute
+  MinuteStatistics(long start, long delivered, long failed, long maxQueuedEvents, long latencyP50, long latencyP95, long latencyP99, long latencyMax) {
+    this.start = start;
+    this.delivered = delivered;
+    this.failed = failed;
+    this.maxQueuedEvents = maxQueuedEvents;
+    this.latencyP50 = latencyP50;
+    this.latencyP95 = latencyP95;
+    this.latencyP99 = latencyP99;
+    this.latencyMax = latencyMax;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  public long getDelivered() {
+    return delivered;
+  }
+
+  public long getFailed() {
+    return failed;
+  }
+
+  public long getMaxQueuedEvents() {
+    return maxQueuedEvents;
+  }
+
+  public long getLatencyP50() {
+    return latencyP50;
+  }
+
+  public long getLatencyP95() {
+    return latencyP95;
+  }
+
+  public long getLatencyP99() {
+    return latencyP99;
+  }
+
+  public long getLatencyMax() {
+    return latencyMax;
+  }
+}
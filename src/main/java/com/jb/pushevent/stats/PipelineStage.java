@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+/**
+ * The stages of the processing of a push, from the hook event to the response of the endpoint.
+ */
+public enum PipelineStage {
+  /**
+   * reading the next changeset of the push
+   */
+  CHANGESET_ITERATION("changesetIteration"),
+  /**
+   * looking up the changed paths of a commit
+   */
+  MODIFICATIONS("modifications"),
+  /**
+   * creating the commit of the payload without its changed paths
+   */
+  DTO_BUILD("dtoBuild"),
+  /**
+   * serializing the event or rendering the payload template
+   */
+  SERIALIZATION("serialization"),
+  /**
+   * sending the event to the endpoint and waiting for the response
+   */
+  HTTP("http");
+
+  private final String key;
+
+  PipelineStage(String key) {
+    this.key = key;
+  }
+
+  /**
+   * @return the name of the stage in the statistics and logs
+   */
+  public String getKey() {
+    return key;
+  }
+}
@@ -0,0 +1,204 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import com.google.inject.Inject;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.EventQueue;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import sonia.scm.api.v2.resources.ErrorDto;
+import sonia.scm.config.ConfigurationPermissions;
+import sonia.scm.web.VndMediaType;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+@Path(PushEventStatisticsResource.PUSHEVENT_STATS_PATH_V2)
+public class PushEventStatisticsResource {
+
+  static final String PUSHEVENT_STATS_PATH_V2 = "v2/pushevent/stats";
+
+  private final EventQueue queue;
+  private final EventDispatcher dispatcher;
+  private final DeliveryStatistics statistics;
+  private final DegradationStatistics degradationStatistics;
+  private final StageLatencies stageLatencies;
+
+  @Inject
+  public PushEventStatisticsResource(EventQueue queue, EventDispatcher dispatcher, DeliveryStatistics statistics, DegradationStatistics degradationStatistics, StageLatencies stageLatencies) {
+    this.queue = queue;
+    this.dispatcher = dispatcher;
+    this.statistics = statistics;
+    this.degradationStatistics = degradationStatistics;
+    this.stageLatencies = stageLatencies;
+  }
+
+  @GET
+  @Path("")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Get push event delivery statistics",
+    description = "Returns queue depth, in-flight requests, throughput, latency percentiles and the last error per endpoint, how often pushes exceeded their processing budget and the latency percentiles of the processing stages.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_get_statistics"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = PushEventStatisticsDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response get() {
+    ConfigurationPermissions.read("pushevent").check();
+    return Response.ok(createDto()).build();
+  }
+
+  @GET
+  @Path("history")
+  @Produces({MediaType.APPLICATION_JSON})
+  @Operation(
+    summary = "Get push event delivery history",
+    description = "Returns the deliveries of all endpoints per minute of the last 15 minutes. With since only the minutes which end after this time are returned, so that a client can fetch the changes since its last request.",
+    tags = "Push Event Plugin",
+    operationId = "push_event_get_statistics_history"
+  )
+  @ApiResponse(
+    responseCode = "200",
+    description = "success",
+    content = @Content(
+      mediaType = MediaType.APPLICATION_JSON,
+      schema = @Schema(implementation = DeliveryHistoryDto.class)
+    )
+  )
+  @ApiResponse(responseCode = "401", description = "not authenticated / invalid credentials")
+  @ApiResponse(responseCode = "403", description = "not authorized, the current user has no privileges to read the configuration")
+  @ApiResponse(
+    responseCode = "500",
+    description = "internal server error",
+    content = @Content(
+      mediaType = VndMediaType.ERROR_TYPE,
+      schema = @Schema(implementation = ErrorDto.class)
+    )
+  )
+  public Response history(@QueryParam("since") @DefaultValue("0") long since) {
+    ConfigurationPermissions.read("pushevent").check();
+    return Response.ok(createHistoryDto(since)).build();
+  }
+
+  DeliveryHistoryDto createHistoryDto(long since) {
+    DeliveryHistoryDto dto = new DeliveryHistoryDto();
+    dto.setQueuedEvents(queue.getQueuedEvents());
+    dto.setInFlight(dispatcher.getInFlight());
+    for (MinuteStatistics minute : statistics.getHistory(since)) {
+      MinuteStatisticsDto minuteDto = new MinuteStatisticsDto();
+      minuteDto.setStart(minute.getStart());
+      minuteDto.setDelivered(minute.getDelivered());
+      minuteDto.setFailed(minute.getFailed());
+      minuteDto.setMaxQueuedEvents(minute.getMaxQueuedEvents());
+      minuteDto.setLatencyP50(minute.getLatencyP50());
+      minuteDto.setLatencyP95(minute.getLatencyP95());
+      minuteDto.setLatencyP99(minute.getLatencyP99());
+      minuteDto.setLatencyMax(minute.getLatencyMax());
+      dto.getMinutes().add(minuteDto);
+    }
+    return dto;
+  }
+
+  PushEventStatisticsDto createDto() {
+    PushEventStatisticsDto dto = new PushEventStatisticsDto();
+    dto.setQueuedEvents(queue.getQueuedEvents());
+    dto.setQueuedBytes(queue.getQueuedBytes());
+    dto.setEventsOnDisk(queue.getEventsOnDisk());
+    dto.setDroppedEvents(queue.getDroppedEvents());
+    dto.setSpilledEvents(queue.getSpilledEvents());
+    dto.setInFlight(dispatcher.getInFlight());
+
+    long now = statistics.now();
+    for (EndpointStatistics endpoint : statistics.getEndpoints()) {
+      dto.getEndpoints().add(createEndpointDto(endpoint, now));
+    }
+    dto.setDegradations(degradationStatistics.getCounts());
+    for (PipelineStage stage : PipelineStage.values()) {
+      dto.getStages().put(stage.getKey(), createStageDto(stageLatencies.getLatency(stage)));
+    }
+    return dto;
+  }
+
+  private StageLatencyDto createStageDto(EndpointStatistics.LatencyPercentiles latency) {
+    StageLatencyDto dto = new StageLatencyDto();
+    dto.setCount(latency.getCount());
+    dto.setP50(latency.getP50());
+    dto.setP95(latency.getP95());
+    dto.setP99(latency.getP99());
+    dto.setMax(latency.getMax());
+    return dto;
+  }
+
+  private EndpointStatisticsDto createEndpointDto(EndpointStatistics endpoint, long now) {
+    EndpointStatisticsDto dto = new EndpointStatisticsDto();
+    dto.setUrl(endpoint.getUrl());
+    dto.setDelivered(endpoint.getDelivered());
+    dto.setFailed(endpoint.getFailed());
+    dto.setDeliveredLastMinute(endpoint.getDelivered(60, now));
+    dto.setDeliveredLast5Minutes(endpoint.getDelivered(5 * 60, now));
+    dto.setDeliveredLast15Minutes(endpoint.getDelivered(15 * 60, now));
+    dto.setFailedLastMinute(endpoint.getFailed(60, now));
+    dto.setFailedLast5Minutes(endpoint.getFailed(5 * 60, now));
+    dto.setFailedLast15Minutes(endpoint.getFailed(15 * 60, now));
+
+    EndpointStatistics.LatencyPercentiles latency = endpoint.getLatency(now);
+    dto.setLatencyCount(latency.getCount());
+    dto.setLatencyP50(latency.getP50());
+    dto.setLatencyP95(latency.getP95());
+    dto.setLatencyP99(latency.getP99());
+    dto.setLatencyMax(latency.getMax());
+
+    EndpointStatistics.LastError lastError = endpoint.getLastError();
+    if (lastError != null) {
+      dto.setLastErrorTime(lastError.getTime());
+      dto.setLastError(lastError.getMessage());
+    }
+    return dto;
+  }
+}
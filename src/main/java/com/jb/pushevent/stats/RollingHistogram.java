@@ -0,0 +1,181 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of latencies which only covers the recent past.
+ * <p>
+ * The time is split into slices, every slice has its own log-linear buckets with 16 sub buckets per power of two,
+ * which gives a precision of about 6%. Recording is a single atomic increment, reading sums up the slices within
+ * the window.
+ */
+class RollingHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKETS = SUB_BUCKETS + (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final long sliceMillis;
+  private final Slice[] slices;
+
+  RollingHistogram(int sliceCount, long sliceMillis) {
+    this.sliceMillis = sliceMillis;
+    this.slices = new Slice[sliceCount];
+    for (int i = 0; i < sliceCount; i++) {
+      slices[i] = new Slice();
+    }
+  }
+
+  void record(long value, long nowMillis) {
+    long sliceStamp = nowMillis / sliceMillis;
+    Slice slice = slices[(int) (sliceStamp % slices.length)];
+    long stamp = slice.stamp.get();
+    if (stamp != sliceStamp && slice.stamp.compareAndSet(stamp, sliceStamp)) {
+      slice.reset();
+    }
+    slice.counts.incrementAndGet(bucket(Math.max(0, value)));
+    slice.max.accumulateAndGet(value, Math::max);
+  }
+
+  /**
+   * @param nowMillis current time
+   * @return the summed up buckets of all slices which are not outdated
+   */
+  Snapshot snapshot(long nowMillis) {
+    long current = nowMillis / sliceMillis;
+    long[] counts = new long[BUCKETS];
+    long max = 0;
+    long total = 0;
+    for (Slice slice : slices) {
+      long stamp = slice.stamp.get();
+      if (stamp > current - slices.length && stamp <= current) {
+        for (int i = 0; i < BUCKETS; i++) {
+          long count = slice.counts.get(i);
+          counts[i] += count;
+          total += count;
+        }
+        max = Math.max(max, slice.max.get());
+      }
+    }
+    return new Snapshot(counts, total, max);
+  }
+
+  /**
+   * @param timeMillis any time within the slice
+   * @return the buckets of the single slice which covers the time, empty if the slice was already reused for a later
+   * time
+   */
+  Snapshot sliceSnapshot(long timeMillis) {
+    long sliceStamp = timeMillis / sliceMillis;
+    Slice slice = slices[(int) (sliceStamp % slices.length)];
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    long max = 0;
+    if (slice.stamp.get() == sliceStamp) {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts[i] = slice.counts.get(i);
+        total += counts[i];
+      }
+      max = slice.max.get();
+    }
+    return new Snapshot(counts, total, max);
+  }
+
+  static int bucket(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * @return the highest value which is counted in the bucket
+   */
+  static long upperBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+    long subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+    long lowerBound = (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  private static class Slice {
+    private final AtomicLong stamp = new AtomicLong(-1);
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    void reset() {
+      for (int i = 0; i < BUCKETS; i++) {
+        counts.set(i, 0);
+      }
+      max.set(0);
+    }
+  }
+
+  static class Snapshot {
+    private final long[] counts;
+    private final long total;
+    private final long max;
+
+    Snapshot(long[] counts, long total, long max) {
+      this.counts = counts;
+      this.total = total;
+      this.max = max;
+    }
+
+    long getTotal() {
+      return total;
+    }
+
+    long getMax() {
+      return max;
+    }
+
+    /**
+     * @param percentile percentile between 0 and 100
+     * @return the upper bound of the bucket which contains the percentile, or 0 if nothing was recorded
+     */
+    long percentile(double percentile) {
+      if (total == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(upperBound(i), max);
+        }
+      }
+      return max;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events in one second buckets of a ring buffer, so that the number of events of the last seconds can be read
+ * without locks.
+ * <p>
+ * Buckets are reset lazily by the first event of a new second. Concurrent events at the turn of a second may be counted
+ * for the previous second, which is acceptable for statistics.
+ */
+class SlidingWindowCounter {
+
+  private final int seconds;
+  private final AtomicLongArray counts;
+  private final AtomicLongArray stamps;
+
+  SlidingWindowCounter(int seconds) {
+    this.seconds = seconds;
+    this.counts = new AtomicLongArray(seconds);
+    this.stamps = new AtomicLongArray(seconds);
+  }
+
+  void increment(long nowMillis) {
+    long second = nowMillis / 1000;
+    int index = (int) (second % seconds);
+    long stamp = stamps.get(index);
+    if (stamp != second && stamps.compareAndSet(index, stamp, second)) {
+      counts.set(index, 0);
+    }
+    counts.incrementAndGet(index);
+  }
+
+  /**
+   * @param windowSeconds size of the window, at most the size of the ring buffer
+   * @param nowMillis     current time
+   * @return number of events in the last seconds
+   */
+  long sum(int windowSeconds, long nowMillis) {
+    long second = nowMillis / 1000;
+    long oldest = second - Math.min(windowSeconds, seconds);
+    long sum = 0;
+    for (int i = 0; i < seconds; i++) {
+      long stamp = stamps.get(i);
+      if (stamp > oldest && stamp <= second) {
+        sum += counts.get(i);
+      }
+    }
+    return sum;
+  }
+}
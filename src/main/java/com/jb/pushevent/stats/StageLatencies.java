@@ -0,0 +1,97 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import com.google.inject.Singleton;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the latencies of the stages of the processing.
+ * <p>
+ * Every stage has a {@link RollingHistogram} of nanoseconds which covers the last five minutes. Recording a latency
+ * reads the clock once and increments an atomic counter, so it can be called for every commit without slowing down the
+ * processing.
+ */
+@Singleton
+public class StageLatencies {
+
+  static final int WINDOW_MINUTES = 5;
+
+  private final long origin = System.nanoTime();
+  private final RollingHistogram[] histograms = new RollingHistogram[PipelineStage.values().length];
+  private final LatencyHistogram[] totals = new LatencyHistogram[PipelineStage.values().length];
+
+  public StageLatencies() {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new RollingHistogram(WINDOW_MINUTES, TimeUnit.MINUTES.toMillis(1));
+      totals[i] = LatencyHistogram.forNanos();
+    }
+  }
+
+  /**
+   * @return the start of a stage, which is passed to {@link #record}
+   */
+  public long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * records the latency of a stage
+   *
+   * @param stage      the stage
+   * @param startNanos start of the stage returned by {@link #start()} or the previous {@link #record}
+   * @return the end of the stage, which can be used as start of the next stage
+   */
+  public long record(PipelineStage stage, long startNanos) {
+    long now = System.nanoTime();
+    // the slices of the histogram need a time which is never negative, which is not guaranteed for nanoTime
+    histograms[stage.ordinal()].record(now - startNanos, TimeUnit.NANOSECONDS.toMillis(now - origin));
+    totals[stage.ordinal()].record(now - startNanos);
+    return now;
+  }
+
+  /**
+   * @param stage the stage
+   * @return latency percentiles in microseconds of the last five minutes
+   */
+  public EndpointStatistics.LatencyPercentiles getLatency(PipelineStage stage) {
+    RollingHistogram.Snapshot snapshot = histograms[stage.ordinal()].snapshot(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin));
+    return new EndpointStatistics.LatencyPercentiles(
+      snapshot.getTotal(),
+      TimeUnit.NANOSECONDS.toMicros(snapshot.percentile(50)),
+      TimeUnit.NANOSECONDS.toMicros(snapshot.percentile(95)),
+      TimeUnit.NANOSECONDS.toMicros(snapshot.percentile(99)),
+      TimeUnit.NANOSECONDS.toMicros(snapshot.getMax())
+    );
+  }
+
+  /**
+   * @param stage the stage
+   * @return latencies in nanoseconds of the stage since the start
+   */
+  public LatencyHistogram getTotalLatency(PipelineStage stage) {
+    return totals[stage.ordinal()];
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import com.google.inject.Inject;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.EagerSingleton;
+import sonia.scm.plugin.Extension;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs the latencies of the stages of the processing every
+ * {@link com.jb.pushevent.config.PushEventConfiguration#getLatencyLogIntervalSeconds()} seconds.
+ */
+@Extension
+@EagerSingleton
+public class StageLatencyLogger {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StageLatencyLogger.class);
+
+  /**
+   * delay until the interval is checked again if the logging is disabled
+   */
+  private static final long DISABLED_DELAY_SECONDS = 60;
+
+  private final StageLatencies latencies;
+  private final PushEventConfigurationStore configurationStore;
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pushevent-latency-log");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @Inject
+  public StageLatencyLogger(StageLatencies latencies, PushEventConfigurationStore configurationStore) {
+    this.latencies = latencies;
+    this.configurationStore = configurationStore;
+    scheduler.schedule(this::run, DISABLED_DELAY_SECONDS, TimeUnit.SECONDS);
+  }
+
+  private void run() {
+    long interval = DISABLED_DELAY_SECONDS;
+    try {
+      int configured = configurationStore.get().getLatencyLogIntervalSeconds();
+      if (configured > 0) {
+        interval = configured;
+        log();
+      }
+    } catch (RuntimeException e) {
+      LOG.warn("could not log the latencies of the processing", e);
+    } finally {
+      scheduler.schedule(this::run, interval, TimeUnit.SECONDS);
+    }
+  }
+
+  void log() {
+    StringBuilder message = new StringBuilder();
+    for (PipelineStage stage : PipelineStage.values()) {
+      EndpointStatistics.LatencyPercentiles latency = latencies.getLatency(stage);
+      if (latency.getCount() > 0) {
+        message.append(", ").append(stage.getKey())
+          .append(" n=").append(latency.getCount())
+          .append(" p50=").append(latency.getP50())
+          .append(" p95=").append(latency.getP95())
+          .append(" p99=").append(latency.getP99())
+          .append(" max=").append(latency.getMax());
+      }
+    }
+    if (message.length() > 0) {
+      LOG.info("latencies of the last {} minutes in microseconds: {}", StageLatencies.WINDOW_MINUTES, message.substring(2));
+    }
+  }
+
+  public void stop() {
+    scheduler.shutdownNow();
+  }
+}
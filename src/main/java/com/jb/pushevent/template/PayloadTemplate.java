@@ -0,0 +1,365 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.template;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled payload template, which renders an event into the json expected by a receiver.
+ * <p>
+ * A template is a json document. Strings may reference fields of the event with {@code ${path}}, e.g.
+ * {@code ${data.repositoryId}}. A string which only consists of a reference is replaced by the referenced value with
+ * its type, otherwise the referenced values are inserted as text. An object of the form
+ * {@code {"$each": "data.commits", "$template": ...}} renders the template once for every element of the referenced
+ * array. Within the template, paths are relative to the element, {@code ${@}} references the element itself and
+ * {@code ${$.path}} references a field of the event. Missing fields are rendered as {@code null} or as empty text.
+ * <p>
+ * The template is compiled once into a tree of writers with resolved paths and pre-serialized constants, so that
+ * rendering only walks the event and writes to the generator.
+ */
+public final class PayloadTemplate {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+  private static final String EACH = "$each";
+  private static final String TEMPLATE = "$template";
+  private static final String ITEM = "@";
+  private static final String ROOT = "$.";
+
+  private final Writer writer;
+
+  private PayloadTemplate(Writer writer) {
+    this.writer = writer;
+  }
+
+  /**
+   * @param source json of the template
+   * @return the compiled template
+   * @throws PayloadTemplateException if the template is not valid
+   */
+  public static PayloadTemplate compile(String source) {
+    JsonNode template;
+    try {
+      template = MAPPER.readTree(source);
+    } catch (JsonProcessingException e) {
+      throw new PayloadTemplateException("payload template is not valid json: " + e.getOriginalMessage(), e);
+    }
+    if (template == null || template.isMissingNode()) {
+      throw new PayloadTemplateException("payload template is empty");
+    }
+    return new PayloadTemplate(compileNode(template));
+  }
+
+  /**
+   * @param event json of the event
+   * @return the rendered payload
+   * @throws IOException if the payload could not be written
+   */
+  public byte[] render(JsonNode event) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+    render(event, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * renders the event to the stream, the stream is not closed
+   *
+   * @param event json of the event
+   * @param out   receives the payload
+   * @throws IOException if the payload could not be written
+   */
+  public void render(JsonNode event, OutputStream out) throws IOException {
+    try (JsonGenerator generator = FACTORY.createGenerator(out)) {
+      generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+      writer.write(generator, event, event);
+    }
+  }
+
+  private static Writer compileNode(JsonNode node) {
+    if (node.isObject()) {
+      if (node.has(EACH)) {
+        return compileEach(node);
+      }
+      return compileObject(node);
+    }
+    if (node.isArray()) {
+      return compileArray(node);
+    }
+    if (node.isTextual()) {
+      return compileText(node);
+    }
+    return new Constant(node);
+  }
+
+  private static Writer compileEach(JsonNode node) {
+    JsonNode path = node.get(EACH);
+    JsonNode template = node.get(TEMPLATE);
+    if (!path.isTextual() || template == null || node.size() != 2) {
+      throw new PayloadTemplateException("a loop requires exactly the fields " + EACH + " with a path and " + TEMPLATE);
+    }
+    return new Each(Path.parse(path.asText()), compileNode(template));
+  }
+
+  private static Writer compileObject(JsonNode node) {
+    List<SerializableString> names = new ArrayList<>(node.size());
+    List<Writer> values = new ArrayList<>(node.size());
+    boolean constant = true;
+    Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+    while (fields.hasNext()) {
+      Map.Entry<String, JsonNode> field = fields.next();
+      Writer value = compileNode(field.getValue());
+      constant &= value instanceof Constant;
+      names.add(new SerializedString(field.getKey()));
+      values.add(value);
+    }
+    if (constant) {
+      return new Constant(node);
+    }
+    return new ObjectWriter(names.toArray(new SerializableString[0]), values.toArray(new Writer[0]));
+  }
+
+  private static Writer compileArray(JsonNode node) {
+    Writer[] elements = new Writer[node.size()];
+    boolean constant = true;
+    for (int i = 0; i < elements.length; i++) {
+      elements[i] = compileNode(node.get(i));
+      constant &= elements[i] instanceof Constant;
+    }
+    if (constant) {
+      return new Constant(node);
+    }
+    return new ArrayWriter(elements);
+  }
+
+  private static Writer compileText(JsonNode node) {
+    String text = node.asText();
+    List<String> literals = new ArrayList<>();
+    List<Path> paths = new ArrayList<>();
+    int position = 0;
+    int start = text.indexOf("${");
+    while (start >= 0) {
+      int end = text.indexOf('}', start);
+      if (end < 0) {
+        throw new PayloadTemplateException("unclosed reference in payload template: " + text);
+      }
+      literals.add(text.substring(position, start));
+      paths.add(Path.parse(text.substring(start + 2, end)));
+      position = end + 1;
+      start = text.indexOf("${", position);
+    }
+    if (paths.isEmpty()) {
+      return new Constant(node);
+    }
+    literals.add(text.substring(position));
+    if (paths.size() == 1 && literals.get(0).isEmpty() && literals.get(1).isEmpty()) {
+      return new Reference(paths.get(0));
+    }
+    return new Interpolation(literals.toArray(new String[0]), paths.toArray(new Path[0]));
+  }
+
+  @FunctionalInterface
+  private interface Writer {
+    /**
+     * @param scope element of the innermost loop or the event outside of loops
+     * @param root  the event
+     */
+    void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException;
+  }
+
+  private static final class Path {
+
+    private final String[] fields;
+    private final boolean root;
+
+    private Path(String[] fields, boolean root) {
+      this.fields = fields;
+      this.root = root;
+    }
+
+    static Path parse(String path) {
+      String trimmed = path.trim();
+      if (trimmed.equals(ITEM)) {
+        return new Path(new String[0], false);
+      }
+      boolean root = trimmed.startsWith(ROOT);
+      if (root) {
+        trimmed = trimmed.substring(ROOT.length());
+      }
+      if (trimmed.isEmpty()) {
+        throw new PayloadTemplateException("empty reference in payload template");
+      }
+      return new Path(trimmed.split("\\."), root);
+    }
+
+    /**
+     * @return the referenced node or null if it does not exist
+     */
+    JsonNode resolve(JsonNode scope, JsonNode rootNode) {
+      JsonNode node = root ? rootNode : scope;
+      for (String field : fields) {
+        node = node.get(field);
+        if (node == null) {
+          return null;
+        }
+      }
+      return node;
+    }
+  }
+
+  private static final class Constant implements Writer {
+
+    private final String json;
+
+    Constant(JsonNode node) {
+      this.json = node.toString();
+    }
+
+    @Override
+    public void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException {
+      generator.writeRawValue(json);
+    }
+  }
+
+  private static final class Reference implements Writer {
+
+    private final Path path;
+
+    Reference(Path path) {
+      this.path = path;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException {
+      JsonNode value = path.resolve(scope, root);
+      if (value == null) {
+        generator.writeNull();
+      } else if (value.isTextual()) {
+        generator.writeString(value.textValue());
+      } else {
+        MAPPER.writeTree(generator, value);
+      }
+    }
+  }
+
+  private static final class Interpolation implements Writer {
+
+    private final String[] literals;
+    private final Path[] paths;
+
+    Interpolation(String[] literals, Path[] paths) {
+      this.literals = literals;
+      this.paths = paths;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException {
+      StringBuilder text = new StringBuilder(literals[0]);
+      for (int i = 0; i < paths.length; i++) {
+        JsonNode value = paths[i].resolve(scope, root);
+        if (value != null && !value.isNull()) {
+          text.append(value.isValueNode() ? value.asText() : value.toString());
+        }
+        text.append(literals[i + 1]);
+      }
+      generator.writeString(text.toString());
+    }
+  }
+
+  private static final class ObjectWriter implements Writer {
+
+    private final SerializableString[] names;
+    private final Writer[] values;
+
+    ObjectWriter(SerializableString[] names, Writer[] values) {
+      this.names = names;
+      this.values = values;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException {
+      generator.writeStartObject();
+      for (int i = 0; i < names.length; i++) {
+        generator.writeFieldName(names[i]);
+        values[i].write(generator, scope, root);
+      }
+      generator.writeEndObject();
+    }
+  }
+
+  private static final class ArrayWriter implements Writer {
+
+    private final Writer[] elements;
+
+    ArrayWriter(Writer[] elements) {
+      this.elements = elements;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException {
+      generator.writeStartArray();
+      for (Writer element : elements) {
+        element.write(generator, scope, root);
+      }
+      generator.writeEndArray();
+    }
+  }
+
+  private static final class Each implements Writer {
+
+    private final Path path;
+    private final Writer template;
+
+    Each(Path path, Writer template) {
+      this.path = path;
+      this.template = template;
+    }
+
+    @Override
+    public void write(JsonGenerator generator, JsonNode scope, JsonNode root) throws IOException {
+      generator.writeStartArray();
+      JsonNode items = path.resolve(scope, root);
+      if (items != null && items.isArray()) {
+        for (JsonNode item : items) {
+          template.write(generator, item, root);
+        }
+      }
+      generator.writeEndArray();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.template;
+
+import com.google.common.base.Strings;
+import com.google.inject.Singleton;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the compiled payload template of the configuration, so that the template is only compiled when the
+ * configuration is saved and not for every event.
+ */
+@Singleton
+public class PayloadTemplates {
+
+  private final AtomicReference<Compiled> current = new AtomicReference<>(new Compiled(null, null));
+
+  /**
+   * compiles the template of a configuration which is about to be saved
+   *
+   * @param source json of the template or null for the default payload
+   * @throws PayloadTemplateException if the template is not valid
+   */
+  public void update(String source) {
+    current.set(compile(source));
+  }
+
+  /**
+   * @param source json of the template of the current configuration
+   * @return the compiled template or null for the default payload
+   */
+  public PayloadTemplate get(String source) {
+    Compiled compiled = current.get();
+    if (!Objects.equals(compiled.source, source)) {
+      // the configuration was saved before the start of the plugin, it is compiled once with the first event
+      compiled = compile(source);
+      current.set(compiled);
+    }
+    return compiled.template;
+  }
+
+  private static Compiled compile(String source) {
+    if (Strings.isNullOrEmpty(source)) {
+      return new Compiled(source, null);
+    }
+    return new Compiled(source, PayloadTemplate.compile(source));
+  }
+
+  private static final class Compiled {
+    private final String source;
+    private final PayloadTemplate template;
+
+    Compiled(String source, PayloadTemplate template) {
+      this.source = source;
+      this.template = template;
+    }
+  }
+}
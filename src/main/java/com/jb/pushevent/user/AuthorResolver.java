@@ -0,0 +1,140 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.user;
+
+import com.github.legman.Subscribe;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.jb.pushevent.CommitCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sonia.scm.EagerSingleton;
+import sonia.scm.plugin.Extension;
+import sonia.scm.repository.Person;
+import sonia.scm.user.User;
+import sonia.scm.user.UserEvent;
+import sonia.scm.user.UserManager;
+import sonia.scm.web.security.AdministrationContext;
+
+import javax.inject.Inject;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves the author of a changeset to the SCM-Manager user with the same mail address, or if the author has no mail
+ * address, with the same name or display name.
+ * <p>
+ * The results, including authors without a user, are cached for a limited time, so that a push with many commits of
+ * the same authors only looks up every author once. The cache and the {@link CommitCache}, whose commits contain the
+ * resolved users, are cleared whenever a user is created, modified or deleted.
+ */
+@Extension
+@EagerSingleton
+public class AuthorResolver {
+
+  private static final Logger LOG = LoggerFactory.getLogger(AuthorResolver.class);
+
+  static final int MAX_ENTRIES = 1000;
+  static final long EXPIRY_MINUTES = 10;
+
+  private final UserManager userManager;
+  private final AdministrationContext administrationContext;
+  private final CommitCache commitCache;
+  private final Cache<String, Optional<String>> cache;
+
+  @Inject
+  public AuthorResolver(UserManager userManager, AdministrationContext administrationContext, CommitCache commitCache) {
+    this.userManager = userManager;
+    this.administrationContext = administrationContext;
+    this.commitCache = commitCache;
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(MAX_ENTRIES)
+      .expireAfterWrite(EXPIRY_MINUTES, TimeUnit.MINUTES)
+      .build();
+  }
+
+  /**
+   * @param author author of a changeset
+   * @return the name of the matching user or null if there is none
+   */
+  public String resolve(Person author) {
+    if (author == null) {
+      return null;
+    }
+    String key = key(author);
+    if (key == null) {
+      return null;
+    }
+    try {
+      return cache.get(key, () -> Optional.ofNullable(lookup(author))).orElse(null);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      LOG.warn("could not resolve the user of author {}", author, e);
+      return null;
+    }
+  }
+
+  @Subscribe(async = false)
+  public void onEvent(UserEvent event) {
+    // a change of a user may change the result for any author, e.g. if its mail address is changed
+    cache.invalidateAll();
+    commitCache.invalidateAll();
+  }
+
+  private static String key(Person author) {
+    if (!Strings.isNullOrEmpty(author.getMail())) {
+      return "mail:" + author.getMail().toLowerCase(Locale.ENGLISH);
+    }
+    if (!Strings.isNullOrEmpty(author.getName())) {
+      return "name:" + author.getName();
+    }
+    return null;
+  }
+
+  private String lookup(Person author) {
+    AtomicReference<String> result = new AtomicReference<>();
+    // the hook may be processed for a user who is not allowed to read other users
+    administrationContext.runAsAdmin(() -> result.set(find(author)));
+    return result.get();
+  }
+
+  private String find(Person author) {
+    String mail = author.getMail();
+    String name = author.getName();
+    for (User user : userManager.getAll()) {
+      if (!Strings.isNullOrEmpty(mail)) {
+        if (mail.equalsIgnoreCase(user.getMail())) {
+          return user.getName();
+        }
+      } else if (name.equals(user.getName()) || name.equals(user.getDisplayName())) {
+        return user.getName();
+      }
+    }
+    return null;
+  }
+}
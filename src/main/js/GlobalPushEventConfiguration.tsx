@@ -25,6 +25,7 @@ import React, { FC } from "react";
 import { Configuration, Title } from "@scm-manager/ui-components";
 import { useTranslation } from "react-i18next";
 import GlobalPushEventConfigurationForm from "./GlobalPushEventConfigurationForm";
+import PushEventDashboard from "./PushEventDashboard";
 
 type Props = {
   link: string;
@@ -37,6 +38,8 @@ const GlobalPushEventConfiguration: FC<Props> = ({ link }) => {
     <>
       <Title title={t("scm-pushevent-plugin.settings.title")} />
       <Configuration link={link} render={(props) => <GlobalPushEventConfigurationForm {...props} />} />
+      <hr />
+      <PushEventDashboard />
     </>
   );
 };
@@ -22,13 +22,22 @@
  * SOFTWARE.
  */
 import React, { FC, useEffect, useState } from "react";
-import { Checkbox, InputField } from "@scm-manager/ui-components";
+import { Checkbox, InputField, Select } from "@scm-manager/ui-components";
 import { useTranslation } from "react-i18next";
 
+export type FileChangesMode = "PER_COMMIT" | "AGGREGATED" | "BOTH";
+
+export type OverflowPolicy = "BLOCK" | "DROP_OLDEST" | "DROP_NEWEST" | "SPILL_TO_DISK";
+
 export type PushEventConfiguration = {
   url: string;
   active: boolean;
   token: string;
+  signingSecret?: string;
+  fileChangesMode: FileChangesMode;
+  overflowPolicy: OverflowPolicy;
+  maxQueueBytes: number;
+  blockTimeoutMillis: number;
 };
 
 type Props = {
@@ -42,10 +51,31 @@ const GlobalPushEventConfigurationForm: FC<Props> = ({ initialConfiguration, onC
   const [url, setUrl] = useState(initialConfiguration.url);
   const [active, setActive] = useState(initialConfiguration.active);
   const [token, setToken] = useState(initialConfiguration.token);
+  const [signingSecret, setSigningSecret] = useState(initialConfiguration.signingSecret || "");
+  const [fileChangesMode, setFileChangesMode] = useState<FileChangesMode>(
+    initialConfiguration.fileChangesMode || "PER_COMMIT"
+  );
+  const [overflowPolicy, setOverflowPolicy] = useState<OverflowPolicy>(initialConfiguration.overflowPolicy || "BLOCK");
+  const [maxQueueBytes, setMaxQueueBytes] = useState(initialConfiguration.maxQueueBytes);
+  const [blockTimeoutMillis, setBlockTimeoutMillis] = useState(initialConfiguration.blockTimeoutMillis);
 
   useEffect(() => {
-    onConfigurationChange({ url, active, token }, isValidConfig());
-  }, [url, active, token]);
+    // keep settings which are not part of this form, otherwise they would be reset on save
+    onConfigurationChange(
+      {
+        ...initialConfiguration,
+        url,
+        active,
+        token,
+        signingSecret,
+        fileChangesMode,
+        overflowPolicy,
+        maxQueueBytes,
+        blockTimeoutMillis
+      },
+      isValidConfig()
+    );
+  }, [url, active, token, signingSecret, fileChangesMode, overflowPolicy, maxQueueBytes, blockTimeoutMillis]);
 
   const isValidConfig = () => {
     if (url != null && token != null) {
@@ -77,6 +107,47 @@ const GlobalPushEventConfigurationForm: FC<Props> = ({ initialConfiguration, onC
         value={token}
         helpText={t("scm-pushevent-plugin.config.form.tokenHelpText")}
       />
+      <InputField
+        label={t("scm-pushevent-plugin.config.form.signingSecret")}
+        onChange={v => setSigningSecret(v)}
+        type="password"
+        value={signingSecret}
+        helpText={t("scm-pushevent-plugin.config.form.signingSecretHelpText")}
+      />
+      <Select
+        label={t("scm-pushevent-plugin.config.form.fileChangesMode")}
+        onChange={v => setFileChangesMode(v as FileChangesMode)}
+        value={fileChangesMode}
+        options={["PER_COMMIT", "AGGREGATED", "BOTH"].map(mode => ({
+          value: mode,
+          label: t(`scm-pushevent-plugin.config.form.fileChangesModes.${mode}`)
+        }))}
+        helpText={t("scm-pushevent-plugin.config.form.fileChangesModeHelpText")}
+      />
+      <Select
+        label={t("scm-pushevent-plugin.config.form.overflowPolicy")}
+        onChange={v => setOverflowPolicy(v as OverflowPolicy)}
+        value={overflowPolicy}
+        options={["BLOCK", "DROP_OLDEST", "DROP_NEWEST", "SPILL_TO_DISK"].map(policy => ({
+          value: policy,
+          label: t(`scm-pushevent-plugin.config.form.overflowPolicies.${policy}`)
+        }))}
+        helpText={t("scm-pushevent-plugin.config.form.overflowPolicyHelpText")}
+      />
+      <InputField
+        label={t("scm-pushevent-plugin.config.form.maxQueueBytes")}
+        onChange={v => setMaxQueueBytes(parseInt(v))}
+        type="number"
+        value={maxQueueBytes ? maxQueueBytes.toString() : ""}
+        helpText={t("scm-pushevent-plugin.config.form.maxQueueBytesHelpText")}
+      />
+      <InputField
+        label={t("scm-pushevent-plugin.config.form.blockTimeoutMillis")}
+        onChange={v => setBlockTimeoutMillis(parseInt(v))}
+        type="number"
+        value={blockTimeoutMillis ? blockTimeoutMillis.toString() : ""}
+        helpText={t("scm-pushevent-plugin.config.form.blockTimeoutMillisHelpText")}
+      />
     </>
   );
 };
@@ -0,0 +1,55 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+import { mergeMinutes } from "./PushEventDashboard";
+
+const minute = (start: number, delivered: number) => ({
+  start,
+  delivered,
+  failed: 0,
+  maxQueuedEvents: 0,
+  latencyP50: 0,
+  latencyP95: 0,
+  latencyP99: 0,
+  latencyMax: 0
+});
+
+describe("mergeMinutes", () => {
+  it("should replace the incomplete minute and append new minutes", () => {
+    const known = [minute(0, 1), minute(60000, 2)];
+    const merged = mergeMinutes(known, [minute(60000, 5), minute(120000, 1)]);
+    expect(merged.map(m => m.delivered)).toEqual([1, 5, 1]);
+  });
+
+  it("should keep at most 15 minutes", () => {
+    const known = Array.from({ length: 15 }, (_, i) => minute(i * 60000, i));
+    const merged = mergeMinutes(known, [minute(14 * 60000, 14), minute(15 * 60000, 15)]);
+    expect(merged.length).toBe(15);
+    expect(merged[0].start).toBe(60000);
+  });
+
+  it("should keep the known minutes without new minutes", () => {
+    const known = [minute(0, 1)];
+    expect(mergeMinutes(known, [])).toBe(known);
+  });
+});
@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+import React, { FC, useEffect, useRef, useState } from "react";
+import { apiClient, ErrorNotification, Subtitle } from "@scm-manager/ui-components";
+import { useTranslation } from "react-i18next";
+
+const HISTORY_URL = "/pushevent/stats/history";
+const POLL_INTERVAL_MILLIS = 10000;
+const MAX_MINUTES = 15;
+
+type MinuteStatistics = {
+  start: number;
+  delivered: number;
+  failed: number;
+  maxQueuedEvents: number;
+  latencyP50: number;
+  latencyP95: number;
+  latencyP99: number;
+  latencyMax: number;
+};
+
+type DeliveryHistory = {
+  queuedEvents: number;
+  inFlight: number;
+  minutes: MinuteStatistics[];
+};
+
+/**
+ * merges the minutes of a response into the known minutes. The response starts with the last known minute, which
+ * was still incomplete when it was fetched, so it replaces the known minutes from its start on.
+ */
+export const mergeMinutes = (known: MinuteStatistics[], received: MinuteStatistics[]) => {
+  if (received.length === 0) {
+    return known;
+  }
+  const firstStart = received[0].start;
+  return [...known.filter(minute => minute.start < firstStart), ...received].slice(-MAX_MINUTES);
+};
+
+const errorRate = (minute: MinuteStatistics) => {
+  const total = minute.delivered + minute.failed;
+  return total > 0 ? Math.round((minute.failed / total) * 1000) / 10 : 0;
+};
+
+const formatMinute = (start: number) => new Date(start).toLocaleTimeString([], { hour: "2-digit", minute: "2-digit" });
+
+type SparklineProps = {
+  values: number[];
+  color: string;
+};
+
+const Sparkline: FC<SparklineProps> = ({ values, color }) => {
+  const width = 150;
+  const height = 30;
+  const max = Math.max(1, ...values);
+  const step = values.length > 1 ? width / (values.length - 1) : width;
+  const points = values.map((value, index) => `${index * step},${height - (value / max) * height}`).join(" ");
+  return (
+    <svg width={width} height={height}>
+      <polyline fill="none" stroke={color} strokeWidth={2} points={points} />
+    </svg>
+  );
+};
+
+/**
+ * Shows the deliveries of the last minutes. Only the minutes since the last request are fetched and polling stops
+ * while the page is not visible, so the dashboard stays cheap when it is left open.
+ */
+const PushEventDashboard: FC = () => {
+  const [t] = useTranslation("plugins");
+  const [history, setHistory] = useState<DeliveryHistory>({ queuedEvents: 0, inFlight: 0, minutes: [] });
+  const [error, setError] = useState<Error | undefined>();
+  const minutesRef = useRef<MinuteStatistics[]>([]);
+
+  useEffect(() => {
+    let timeout: ReturnType<typeof setTimeout> | undefined;
+    let cancelled = false;
+
+    const fetchHistory = () => {
+      const known = minutesRef.current;
+      const since = known.length > 0 ? known[known.length - 1].start : 0;
+      apiClient
+        .get(`${HISTORY_URL}?since=${since}`)
+        .then(response => response.json())
+        .then((received: DeliveryHistory) => {
+          if (!cancelled) {
+            const minutes = mergeMinutes(minutesRef.current, received.minutes);
+            minutesRef.current = minutes;
+            setHistory({ ...received, minutes });
+            setError(undefined);
+          }
+        })
+        .catch(e => !cancelled && setError(e))
+        .finally(schedule);
+    };
+
+    const schedule = () => {
+      if (!cancelled && !document.hidden) {
+        timeout = setTimeout(fetchHistory, POLL_INTERVAL_MILLIS);
+      }
+    };
+
+    const onVisibilityChange = () => {
+      if (timeout) {
+        clearTimeout(timeout);
+        timeout = undefined;
+      }
+      if (!document.hidden) {
+        fetchHistory();
+      }
+    };
+
+    fetchHistory();
+    document.addEventListener("visibilitychange", onVisibilityChange);
+    return () => {
+      cancelled = true;
+      if (timeout) {
+        clearTimeout(timeout);
+      }
+      document.removeEventListener("visibilitychange", onVisibilityChange);
+    };
+  }, []);
+
+  const minutes = history.minutes;
+  const newestFirst = [...minutes].reverse();
+
+  return (
+    <>
+      <Subtitle subtitle={t("scm-pushevent-plugin.dashboard.title")} />
+      {error && <ErrorNotification error={error} />}
+      <table className="table is-narrow">
+        <tbody>
+          <tr>
+            <th>{t("scm-pushevent-plugin.dashboard.queuedEvents")}</th>
+            <td>{history.queuedEvents}</td>
+            <th>{t("scm-pushevent-plugin.dashboard.inFlight")}</th>
+            <td>{history.inFlight}</td>
+          </tr>
+          <tr>
+            <th>{t("scm-pushevent-plugin.dashboard.throughput")}</th>
+            <td>
+              <Sparkline values={minutes.map(minute => minute.delivered)} color="#33b2e8" />
+            </td>
+            <th>{t("scm-pushevent-plugin.dashboard.latencyP95")}</th>
+            <td>
+              <Sparkline values={minutes.map(minute => minute.latencyP95)} color="#ff3860" />
+            </td>
+          </tr>
+        </tbody>
+      </table>
+      <table className="table is-striped is-narrow is-fullwidth">
+        <thead>
+          <tr>
+            <th>{t("scm-pushevent-plugin.dashboard.minute")}</th>
+            <th>{t("scm-pushevent-plugin.dashboard.delivered")}</th>
+            <th>{t("scm-pushevent-plugin.dashboard.failed")}</th>
+            <th>{t("scm-pushevent-plugin.dashboard.errorRate")}</th>
+            <th>{t("scm-pushevent-plugin.dashboard.maxQueuedEvents")}</th>
+            <th>p50</th>
+            <th>p95</th>
+            <th>p99</th>
+            <th>max</th>
+          </tr>
+        </thead>
+        <tbody>
+          {newestFirst.map(minute => (
+            <tr key={minute.start}>
+              <td>{formatMinute(minute.start)}</td>
+              <td>{minute.delivered}</td>
+              <td>{minute.failed}</td>
+              <td>{errorRate(minute)} %</td>
+              <td>{minute.maxQueuedEvents}</td>
+              <td>{minute.latencyP50} ms</td>
+              <td>{minute.latencyP95} ms</td>
+              <td>{minute.latencyP99} ms</td>
+              <td>{minute.latencyMax} ms</td>
+            </tr>
+          ))}
+        </tbody>
+      </table>
+    </>
+  );
+};
+
+export default PushEventDashboard;
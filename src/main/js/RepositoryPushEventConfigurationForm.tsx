@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+import React, { FC, useEffect, useState } from "react";
+import { Checkbox, InputField } from "@scm-manager/ui-components";
+import { useTranslation } from "react-i18next";
+
+export type RepositoryPushEventConfiguration = {
+  excluded: boolean;
+  url?: string;
+  token?: string;
+  signingSecret?: string;
+};
+
+type Props = {
+  initialConfiguration: RepositoryPushEventConfiguration;
+  onConfigurationChange: (p1: RepositoryPushEventConfiguration, p2: boolean) => void;
+};
+
+const RepositoryPushEventConfigurationForm: FC<Props> = ({ initialConfiguration, onConfigurationChange }) => {
+  const [t] = useTranslation("plugins");
+
+  const [excluded, setExcluded] = useState(initialConfiguration.excluded);
+  const [url, setUrl] = useState(initialConfiguration.url || "");
+  const [token, setToken] = useState(initialConfiguration.token || "");
+  const [signingSecret, setSigningSecret] = useState(initialConfiguration.signingSecret || "");
+
+  useEffect(() => {
+    onConfigurationChange(
+      {
+        ...initialConfiguration,
+        excluded,
+        url,
+        token,
+        signingSecret
+      },
+      true
+    );
+  }, [excluded, url, token, signingSecret]);
+
+  return (
+    <>
+      <Checkbox
+        checked={excluded}
+        label={t("scm-pushevent-plugin.repositorySettings.form.excluded")}
+        name={"excluded"}
+        helpText={t("scm-pushevent-plugin.repositorySettings.form.excludedHelpText")}
+        onChange={v => setExcluded(v)}
+      />
+      <InputField
+        label={t("scm-pushevent-plugin.repositorySettings.form.endpointUrl")}
+        onChange={v => setUrl(v)}
+        type="text"
+        value={url}
+        disabled={excluded}
+        helpText={t("scm-pushevent-plugin.repositorySettings.form.endpointUrlHelpText")}
+      />
+      <InputField
+        label={t("scm-pushevent-plugin.repositorySettings.form.token")}
+        onChange={v => setToken(v)}
+        type="text"
+        value={token}
+        disabled={excluded || url.length === 0}
+        helpText={t("scm-pushevent-plugin.repositorySettings.form.tokenHelpText")}
+      />
+      <InputField
+        label={t("scm-pushevent-plugin.repositorySettings.form.signingSecret")}
+        onChange={v => setSigningSecret(v)}
+        type="password"
+        value={signingSecret}
+        disabled={excluded || url.length === 0}
+        helpText={t("scm-pushevent-plugin.repositorySettings.form.signingSecretHelpText")}
+      />
+    </>
+  );
+};
+
+export default RepositoryPushEventConfigurationForm;
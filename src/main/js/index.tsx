@@ -25,6 +25,7 @@
 import React from "react";
 import { ConfigurationBinder as configurationBinder } from "@scm-manager/ui-components";
 import GlobalPushEventConfiguration from "./GlobalPushEventConfiguration";
+import RepositoryPushEventConfiguration from "./RepositoryPushEventConfiguration";
 
 configurationBinder.bindGlobal(
   "/pushevent/",
@@ -32,3 +33,10 @@ configurationBinder.bindGlobal(
   "pushevent",
   GlobalPushEventConfiguration
 );
+
+configurationBinder.bindRepositorySetting(
+  "/pushevent",
+  "scm-pushevent-plugin.repositorySettings.navLink",
+  "pushevent",
+  RepositoryPushEventConfiguration
+);
@@ -0,0 +1,128 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Commit;
+import com.jb.pushevent.dto.FileChanges;
+import com.jb.pushevent.dto.PreserializedNode;
+import com.jb.pushevent.dto.Push;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CommitCacheTest {
+
+  private final CommitCache cache = new CommitCache();
+  private final PushEventConfiguration configuration = new PushEventConfiguration("http://localhost:8088/", "token", true);
+
+  @Test
+  void reuseCommitOfRepository() {
+    Commit commit = createCommit("42");
+    cache.put("hog", commit, configuration);
+
+    assertSame(commit, cache.get("hog", "42", configuration));
+    assertNull(cache.get("hog", "43", configuration));
+    assertNull(cache.get("other", "42", configuration));
+    assertEquals(1, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertTrue(cache.getSize() > 0);
+  }
+
+  @Test
+  void notReuseCommitOfOtherConfiguration() {
+    cache.put("hog", createCommit("42"), configuration);
+
+    assertNull(cache.get("hog", "42", configuration.copy()));
+  }
+
+  @Test
+  void forgetAllCommits() {
+    cache.put("hog", createCommit("42"), configuration);
+    cache.invalidateAll();
+
+    assertNull(cache.get("hog", "42", configuration));
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void notCacheIfDisabled() {
+    configuration.setCommitCacheBytes(0);
+    cache.put("hog", createCommit("42"), configuration);
+
+    assertNull(cache.get("hog", "42", configuration));
+  }
+
+  @Test
+  void spliceSerializedCommitIntoPayload() throws IOException {
+    Commit commit = createCommit("42");
+    Push expected = createPush(createCommit("42"));
+    cache.put("hog", commit, configuration);
+
+    Push push = createPush(cache.get("hog", "42", configuration));
+
+    ObjectMapper mapper = new ObjectMapper();
+    assertArrayEquals(mapper.writeValueAsBytes(expected.toJsonNode()), mapper.writeValueAsBytes(push.toJsonNode()));
+  }
+
+  @Test
+  void copyCommitWithOtherBranches() throws IOException {
+    Commit commit = createCommit("42");
+    commit.preserialize();
+
+    Commit copy = commit.copy();
+    copy.setBranches(Collections.singletonList("develop"));
+
+    assertEquals("main", commit.toJsonNode().get("branches").get(0).asText());
+    assertEquals("develop", copy.toJsonNode().get("branches").get(0).asText());
+    assertNotNull(copy.toJsonNode().get("fileChanges"));
+  }
+
+  private static Push createPush(Commit commit) {
+    Push push = new Push(new ObjectMapper().createObjectNode());
+    push.setRepositoryId("hog");
+    push.addCommit(commit);
+    return push;
+  }
+
+  private static Commit createCommit(String id) {
+    Commit commit = new Commit(new PreserializedNode());
+    commit.setCommitId(id);
+    commit.setCommitMessage("message of commit " + id + " with \u00fcmlauts");
+    commit.setDateCommitted(1_600_000_000_000L);
+    commit.setBranches(Arrays.asList("main"));
+    commit.setFilesChanged(new FileChanges(new ObjectMapper().createObjectNode()));
+    return commit;
+  }
+}
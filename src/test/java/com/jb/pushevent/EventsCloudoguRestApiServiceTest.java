@@ -25,40 +25,89 @@ package com.jb.pushevent;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jb.pushevent.config.PushEventConfiguration;
-import com.jb.pushevent.config.PushEventConfigurationStore;
 import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.signing.PayloadSigner;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
 import sonia.scm.net.ahc.AdvancedHttpClient;
+import sonia.scm.net.ahc.AdvancedHttpRequestWithBody;
+import sonia.scm.net.ahc.AdvancedHttpResponse;
 
-import static org.junit.Assert.assertThrows;
-import static org.mockito.Mockito.mock;
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.net.ConnectException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+@ExtendWith(MockitoExtension.class)
 class EventsCloudoguRestApiServiceTest {
 
-  private EventsCloudoguRestApiService eventsCloudoguRestApiService;
+  private final PushEventConfiguration configuration = new PushEventConfiguration("http://localhost:8088/", "token", true);
 
   @Mock
   private AdvancedHttpClient httpClient;
+  @Mock
+  private AdvancedHttpRequestWithBody request;
+  @Mock
+  private AdvancedHttpResponse response;
+
+  private byte[] payload;
 
   @BeforeEach
-  void setUp() {
-    PushEventConfigurationStore pushEventConfigurationStore = mock(PushEventConfigurationStore.class);
-    PushEventConfiguration pushEventConfiguration = mock(PushEventConfiguration.class);
+  void setUp() throws IOException {
+    payload = new Event(new ObjectMapper().createObjectNode()).toBytes();
+    when(httpClient.put(startsWith("http://localhost:8088/event/"))).thenReturn(request);
+  }
 
-    when(pushEventConfiguration.getUrl()).thenReturn("/endpoint");
-    when(pushEventConfiguration.getToken()).thenReturn("token");
-    when(pushEventConfiguration.getActive()).thenReturn(true);
-    when(pushEventConfigurationStore.get()).thenReturn(pushEventConfiguration);
+  @Test
+  void deliver() throws IOException {
+    when(request.request()).thenReturn(response);
+    when(response.isSuccessful()).thenReturn(true);
+
+    assertNull(new EventsCloudoguRestApiService(httpClient, configuration).deliver(payload));
 
-    eventsCloudoguRestApiService = new EventsCloudoguRestApiService(httpClient, pushEventConfigurationStore);
+    verify(request).rawContent(payload);
+    verify(request).contentType(MediaType.APPLICATION_JSON);
+    verify(request).header("Authorization", "Bearer token");
+    verify(request, never()).header(eq(PayloadSigner.SIGNATURE_HEADER), any());
   }
 
   @Test
-  void sendPush() {
-    Event event = new Event(new ObjectMapper().createObjectNode());
-      assertThrows(RuntimeException.class, () -> eventsCloudoguRestApiService.sendPush(event));
+  void signPayload() throws IOException {
+    configuration.setSigningSecret("secret");
+    when(request.request()).thenReturn(response);
+    when(response.isSuccessful()).thenReturn(true);
+
+    assertNull(new EventsCloudoguRestApiService(httpClient, configuration).deliver(payload));
+
+    verify(request).header(eq(PayloadSigner.TIMESTAMP_HEADER), any(Long.class));
+    verify(request).header(eq(PayloadSigner.SIGNATURE_HEADER), anyString());
+  }
+
+  @Test
+  void returnStatusOfRejectedEvent() throws IOException {
+    when(request.request()).thenReturn(response);
+    when(response.isSuccessful()).thenReturn(false);
+    when(response.getStatus()).thenReturn(503);
+
+    assertEquals("endpoint responded with status 503", new EventsCloudoguRestApiService(httpClient, configuration).deliver(payload));
+  }
+
+  @Test
+  void returnFailureOfUnreachableEndpoint() throws IOException {
+    when(request.request()).thenThrow(new ConnectException("connection refused"));
+
+    assertEquals("ConnectException: connection refused", new EventsCloudoguRestApiService(httpClient, configuration).deliver(payload));
   }
 }
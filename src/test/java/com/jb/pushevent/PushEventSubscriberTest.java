@@ -23,18 +23,32 @@
  */
 package com.jb.pushevent;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.config.DegradationMode;
+import com.jb.pushevent.config.FileChangesMode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
 import com.jb.pushevent.config.PushEventConfigurationStore;
+import com.jb.pushevent.delivery.PushCoalescer;
 import com.jb.pushevent.dto.FileChanges;
 import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.execution.ProcessingBudget;
+import com.jb.pushevent.execution.PushEventExecutor;
 import com.jb.pushevent.pathcollect.PathCollectFactory;
 import com.jb.pushevent.pathcollect.PathCollector;
+import com.jb.pushevent.refs.RefEventPublisher;
+import com.jb.pushevent.sampling.EventSampler;
+import com.jb.pushevent.stats.DegradationStatistics;
+import com.jb.pushevent.stats.StageLatencies;
+import com.jb.pushevent.user.AuthorResolver;
 import org.apache.shiro.subject.Subject;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import sonia.scm.net.ahc.AdvancedHttpClient;
 import sonia.scm.repository.Changeset;
 import sonia.scm.repository.Person;
 import sonia.scm.repository.Repository;
@@ -43,15 +57,24 @@ import sonia.scm.repository.api.HookContext;
 import sonia.scm.repository.api.HookFeature;
 
 import javax.inject.Inject;
-import javax.inject.Provider;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
-import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -70,7 +93,13 @@ class PushEventSubscriberTest {
   private PathCollector mockPathCollector;
 
   @Mock
-  private Provider<AdvancedHttpClient> mockHttpClientProvider;
+  private PushCoalescer mockPushCoalescer;
+
+  @Mock
+  private PushEventExecutor mockExecutor;
+
+  @Mock
+  private AuthorResolver mockAuthorResolver;
 
   @Mock
   private Repository mockRepository;
@@ -78,9 +107,31 @@ class PushEventSubscriberTest {
   @Mock
   private PushEventConfigurationStore mockPushEventConfigurationStore;
 
+  @Mock
+  private PushEventConfigurationResolver mockConfigurationResolver;
+
+  @Mock
+  private EventSampler mockEventSampler;
+
+  @Mock
+  private RefEventPublisher mockRefEventPublisher;
+
   @Mock
   private Subject subject;
 
+  private DegradationStatistics statistics;
+
+  private CommitCache commitCache;
+
+  private PushEventSubscriber pushEventSubscriber;
+
+  @BeforeEach
+  void setUp() {
+    statistics = new DegradationStatistics();
+    commitCache = new CommitCache();
+    pushEventSubscriber = new PushEventSubscriber(mockPathCollectorFactory, mockPushEventConfigurationStore, mockPushCoalescer, mockExecutor, statistics, mockAuthorResolver, new StageLatencies(), mockConfigurationResolver, mockEventSampler, commitCache, mockRefEventPublisher);
+  }
+
   private Set<Changeset> createTestChangesets() {
     Set<Changeset> changesets = new HashSet<>();
 
@@ -99,6 +150,13 @@ class PushEventSubscriberTest {
     return changesets;
   }
 
+  private Push createPush(PushEventSubscriber pushEventSubscriber, Set<Changeset> changesets, PushEventConfiguration configuration) throws IOException {
+    List<Push> pushes = new ArrayList<>();
+    pushEventSubscriber.createPushesFromEvent(mockRepository, changesets.iterator(), mockRepositoryHookEvent, subject, configuration, ProcessingBudget.UNLIMITED, pushes::add);
+    assertEquals(1, pushes.size());
+    return pushes.get(0);
+  }
+
   @Inject
   @Test
   void createPushObjectFromEvent() throws IOException {
@@ -111,19 +169,181 @@ class PushEventSubscriberTest {
     when(mockPathCollectorFactory.create(mockRepository)).thenReturn(mockPathCollector);
     when(mockPathCollector.collectAll(any())).thenReturn(new FileChanges(new ObjectMapper().createObjectNode()));
 
-    PushEventSubscriber pushEventSubscriber = new PushEventSubscriber(mockPathCollectorFactory, mockHttpClientProvider, mockPushEventConfigurationStore);
 
     when(subject.hasRole(any())).thenReturn(true);
     when(subject.getPrincipal()).thenReturn("Bill Gates <bill.gates@mail.com>");
 
-    try {
-      Push push = pushEventSubscriber.createPushDtoFromEvent(mockRepository, changesets, mockRepositoryHookEvent, subject);
-      assertNotNull(push);
-      assertEquals("Bill Gates <bill.gates@mail.com>", push.getUser());
-      assertEquals(3, push.getCommits().size());
-    } catch (IOException e) {
-      e.printStackTrace();
-      fail("should not throw an exception here");
-    }
+    Push push = createPush(pushEventSubscriber, changesets, new PushEventConfiguration());
+    assertNotNull(push);
+    assertEquals("Bill Gates <bill.gates@mail.com>", push.getUser());
+    assertEquals(3, push.getCommits().size());
+  }
+
+  @Test
+  void reuseCommitsOfPreviousPush() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+
+    when(mockRepositoryHookEvent.getContext()).thenReturn(mockContext);
+    when(mockContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)).thenReturn(true);
+    when(mockPathCollectorFactory.create(mockRepository)).thenReturn(mockPathCollector);
+    when(mockPathCollector.collectAll(any())).thenReturn(new FileChanges(new ObjectMapper().createObjectNode()));
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+
+    Push first = createPush(pushEventSubscriber, changesets, configuration);
+    Push second = createPush(pushEventSubscriber, changesets, configuration);
+
+    assertEquals(3, second.getCommits().size());
+    assertEquals(first.toJsonNode().get("commits"), second.toJsonNode().get("commits"));
+    assertEquals(3, commitCache.getHits());
+    verify(mockPathCollector, times(3)).collectAll(any());
+  }
+
+  @Test
+  void createAggregatedPushObjectFromEvent() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+
+    when(mockRepositoryHookEvent.getContext()).thenReturn(mockContext);
+    when(mockContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)).thenReturn(true);
+    when(mockPathCollectorFactory.create(mockRepository)).thenReturn(mockPathCollector);
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFileChangesMode(FileChangesMode.AGGREGATED);
+
+    Push push = createPush(pushEventSubscriber, changesets, configuration);
+
+    assertEquals(3, push.getCommits().size());
+    assertNotNull(push.getFileChanges());
+    push.getCommits().forEach(commit -> assertNull(commit.toJsonNode().get("fileChanges")));
+    verify(mockPathCollector, times(3)).aggregate(any(), any());
+  }
+
+  @Test
+  void skipPathCollectionIfFileChangesAreNotProjected() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFileChangesMode(FileChangesMode.BOTH);
+    configuration.setFields(Arrays.asList("commitCount", "commits.commitId"));
+
+    Push push = createPush(pushEventSubscriber, changesets, configuration);
+
+    assertEquals(3, push.toJsonNode().get("commitCount").asInt());
+    assertNull(push.toJsonNode().get("fileChanges"));
+    push.getCommits().forEach(commit -> {
+      assertNull(commit.toJsonNode().get("message"));
+      assertNull(commit.toJsonNode().get("fileChanges"));
+    });
+    verify(mockPathCollectorFactory, never()).create(any());
+  }
+
+  @Test
+  void splitPushIntoChunks() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFields(Collections.singletonList("commits.commitId"));
+    configuration.setMaxCommitsPerEvent(2);
+
+    List<Push> pushes = new ArrayList<>();
+    pushEventSubscriber.createPushesFromEvent(mockRepository, changesets.iterator(), mockRepositoryHookEvent, subject, configuration, ProcessingBudget.UNLIMITED, pushes::add);
+
+    assertEquals(2, pushes.size());
+    assertEquals(2, pushes.get(0).getCommits().size());
+    assertEquals(1, pushes.get(1).getCommits().size());
+
+    JsonNode first = pushes.get(0).toJsonNode().get("chunk");
+    JsonNode last = pushes.get(1).toJsonNode().get("chunk");
+    assertEquals(0, first.get("index").asInt());
+    assertFalse(first.get("last").asBoolean());
+    assertEquals(1, last.get("index").asInt());
+    assertTrue(last.get("last").asBoolean());
+    assertEquals(2, last.get("total").asInt());
+    assertEquals(first.get("pushId").asText(), last.get("pushId").asText());
+  }
+
+  @Test
+  void notSplitSmallPush() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFields(Collections.singletonList("commits.commitId"));
+    configuration.setMaxCommitsPerEvent(3);
+
+    List<Push> pushes = new ArrayList<>();
+    pushEventSubscriber.createPushesFromEvent(mockRepository, changesets.iterator(), mockRepositoryHookEvent, subject, configuration, ProcessingBudget.UNLIMITED, pushes::add);
+
+    assertEquals(1, pushes.size());
+    assertFalse(pushes.get(0).isChunked());
+    assertNull(pushes.get(0).toJsonNode().get("chunk"));
+  }
+
+  @Test
+  void skipPathsOfExceededBudget() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+    when(mockRepositoryHookEvent.getContext()).thenReturn(mockContext);
+    when(mockContext.isFeatureSupported(HookFeature.CHANGESET_PROVIDER)).thenReturn(true);
+    when(mockPathCollectorFactory.create(mockRepository)).thenReturn(mockPathCollector);
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    ProcessingBudget budget = new ProcessingBudget(System.nanoTime() - 1_000_000_000L, 1, DegradationMode.SKIP_PATHS);
+
+    List<Push> pushes = new ArrayList<>();
+    pushEventSubscriber.createPushesFromEvent(mockRepository, changesets.iterator(), mockRepositoryHookEvent, subject, configuration, budget, pushes::add);
+
+    assertEquals(1, pushes.size());
+    assertEquals("SKIP_PATHS", pushes.get(0).toJsonNode().get("degradation").asText());
+    assertEquals(3, pushes.get(0).getCommits().size());
+    pushes.get(0).getCommits().forEach(commit -> {
+      assertTrue(commit.toJsonNode().get("degraded").asBoolean());
+      assertNotNull(commit.toJsonNode().get("message"));
+      assertNull(commit.toJsonNode().get("fileChanges"));
+    });
+    verify(mockPathCollector, never()).collectAll(any());
+    assertEquals(Long.valueOf(1), statistics.getCounts().get("SKIP_PATHS"));
+  }
+
+  @Test
+  void deferRemainderOfExceededBudget() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+    when(subject.hasRole(any())).thenReturn(false);
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFields(Collections.singletonList("commits.commitId"));
+    ProcessingBudget budget = new ProcessingBudget(System.nanoTime() - 1_000_000_000L, 1, DegradationMode.DEFER);
+
+    List<Push> pushes = new ArrayList<>();
+    pushEventSubscriber.createPushesFromEvent(mockRepository, changesets.iterator(), mockRepositoryHookEvent, subject, configuration, budget, pushes::add);
+
+    assertTrue(pushes.isEmpty());
+    assertEquals(Long.valueOf(1), statistics.getCounts().get("DEFER"));
+
+    ArgumentCaptor<Runnable> deferred = ArgumentCaptor.forClass(Runnable.class);
+    verify(mockExecutor).executeNext(any(), deferred.capture(), eq(configuration));
+    deferred.getValue().run();
+
+    assertEquals(1, pushes.size());
+    assertEquals(3, pushes.get(0).getCommits().size());
+    assertEquals("DEFER", pushes.get(0).toJsonNode().get("degradation").asText());
+  }
+
+  @Test
+  void resolveAuthorUsers() throws IOException {
+    Set<Changeset> changesets = createTestChangesets();
+    when(subject.hasRole(any())).thenReturn(false);
+    when(mockAuthorResolver.resolve(any())).thenReturn("trillian");
+
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFields(Arrays.asList("commits.commitId", "commits.authorUser"));
+
+    Push push = createPush(pushEventSubscriber, changesets, configuration);
+
+    push.getCommits().forEach(commit -> assertEquals("trillian", commit.toJsonNode().get("authorUser").asText()));
   }
 }
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent;
+
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.execution.ProcessingBudget;
+import com.jb.pushevent.stats.StageLatencies;
+import com.jb.pushevent.user.AuthorResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Person;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class PushStreamTest {
+
+  @Mock
+  private AuthorResolver authorResolver;
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heart-of-gold");
+  private final CommitCache commitCache = new CommitCache();
+
+  @Test
+  void skipCommitsWhichAreNotProjected() throws IOException {
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setFields(Arrays.asList("commitCount", "user"));
+
+    Push push = process(configuration);
+
+    assertEquals(2, push.toJsonNode().get("commitCount").asInt());
+    assertFalse(push.toJsonNode().has("commits"));
+    push.getCommits().forEach(commit -> {
+      assertNull(commit.getCommitMessage());
+      assertNull(commit.getAuthor());
+      assertNull(commit.getBranches());
+      assertTrue(commit.toJsonNode().isEmpty());
+    });
+    verify(authorResolver, never()).resolve(any());
+    assertEquals(0, commitCache.getSize());
+  }
+
+  private Push process(PushEventConfiguration configuration) throws IOException {
+    List<Changeset> changesets = Arrays.asList(
+      new Changeset("id1", 20L, new Person("Arthur Dent", "arthur@hitchhiker.com"), "first"),
+      new Changeset("id2", 30L, new Person("Ford Prefect", "ford@hitchhiker.com"), "second")
+    );
+    changesets.forEach(changeset -> changeset.setBranches(Collections.singletonList("main")));
+
+    List<Push> pushes = new ArrayList<>();
+    try (PushStream stream = new PushStream(repository, changesets.iterator(), "trillian", null, authorResolver, new StageLatencies(), commitCache, configuration, ProcessingBudget.UNLIMITED)) {
+      assertTrue(stream.process(pushes::add));
+    }
+    assertEquals(1, pushes.size());
+    return pushes.get(0);
+  }
+}
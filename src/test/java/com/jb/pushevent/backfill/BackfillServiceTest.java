@@ -0,0 +1,227 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.backfill;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.PushEventSubscriber;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.EventQueue;
+import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.pathcollect.PathCollectFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Changeset;
+import sonia.scm.repository.ChangesetPagingResult;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.api.LogCommandBuilder;
+import sonia.scm.repository.api.RepositoryService;
+import sonia.scm.repository.api.RepositoryServiceFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BackfillServiceTest {
+
+  @Mock
+  private RepositoryServiceFactory repositoryServiceFactory;
+  @Mock
+  private RepositoryService repositoryService;
+  @Mock(answer = Answers.RETURNS_SELF)
+  private LogCommandBuilder logCommand;
+  @Mock
+  private PathCollectFactory pathCollectFactory;
+  @Mock
+  private PushEventSubscriber subscriber;
+  @Mock
+  private EventDispatcher dispatcher;
+  @Mock
+  private EventQueue queue;
+  @Mock
+  private PushEventConfigurationResolver configurationResolver;
+  @Mock
+  private BackfillCursorStore cursorStore;
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heart-of-gold");
+
+  private BackfillService service;
+  private PushEventConfiguration configuration;
+
+  @BeforeEach
+  void setUp() {
+    service = new BackfillService(repositoryServiceFactory, pathCollectFactory, subscriber, dispatcher, queue, configurationResolver, cursorStore);
+  }
+
+  private void mockLog() throws IOException {
+    configuration = new PushEventConfiguration("url", "token", true);
+    configuration.setBackfillChunkSize(2);
+    configuration.setBackfillPauseMillis(0);
+    when(configurationResolver.resolve("42")).thenReturn(configuration);
+    when(repositoryServiceFactory.create(repository)).thenReturn(repositoryService);
+    when(repositoryService.getLogCommand()).thenReturn(logCommand);
+    doAnswer(invocation -> {
+      PushEventSubscriber.PushConsumer consumer = invocation.getArgument(5);
+      consumer.accept(new Push(new ObjectMapper().createObjectNode()));
+      return null;
+    }).when(subscriber).createPushes(eq(repository), any(), any(), any(), any(), any());
+  }
+
+  private BackfillCursor cursor(int offset, int total) {
+    BackfillCursor cursor = new BackfillCursor();
+    cursor.setRepositoryId("42");
+    cursor.setTo("abc");
+    cursor.setOffset(offset);
+    cursor.setTotal(total);
+    cursor.setState(BackfillState.RUNNING);
+    return cursor;
+  }
+
+  private ChangesetPagingResult page(int size) {
+    List<Changeset> changesets = new ArrayList<>();
+    for (int i = 0; i < size; i++) {
+      changesets.add(new Changeset("c" + i, 1L, null, "commit " + i));
+    }
+    return new ChangesetPagingResult(5, changesets);
+  }
+
+  @Test
+  void sendAllChunks() throws IOException {
+    mockLog();
+    when(logCommand.getChangesets()).thenReturn(page(2), page(2), page(1));
+    when(dispatcher.dispatch(eq("42"), any(), any())).thenReturn(true);
+
+    BackfillCursor cursor = cursor(0, 5);
+    service.run(repository, cursor);
+
+    assertEquals(BackfillState.FINISHED, cursor.getState());
+    assertEquals(5, cursor.getOffset());
+    verify(dispatcher, times(3)).dispatch(eq("42"), any(), any());
+    // the log starts with the newest commit, so the oldest commits are at its end
+    verify(logCommand).setPagingStart(3);
+    verify(logCommand).setPagingStart(1);
+    verify(logCommand).setPagingStart(0);
+    verify(logCommand).setPagingLimit(1);
+  }
+
+  @Test
+  void sendCommitsInOrderOfHistory() throws IOException {
+    mockLog();
+    when(logCommand.getChangesets()).thenReturn(page(2));
+    when(dispatcher.dispatch(eq("42"), any(), any())).thenReturn(true);
+
+    service.run(repository, cursor(0, 2));
+
+    ArgumentCaptor<Iterable<Changeset>> changesets = ArgumentCaptor.forClass(Iterable.class);
+    verify(subscriber).createPushes(eq(repository), changesets.capture(), any(), any(), any(), any());
+    List<String> ids = new ArrayList<>();
+    changesets.getValue().forEach(changeset -> ids.add(changeset.getId()));
+    assertEquals(Arrays.asList("c1", "c0"), ids);
+  }
+
+  @Test
+  void skipPathCollectionIfFileChangesAreNotProjected() throws IOException {
+    mockLog();
+    configuration.setFields(Collections.singletonList("commits.commitId"));
+    when(logCommand.getChangesets()).thenReturn(page(2));
+    when(dispatcher.dispatch(eq("42"), any(), any())).thenReturn(true);
+
+    service.run(repository, cursor(0, 2));
+
+    verify(pathCollectFactory, never()).create(any());
+    verify(subscriber).createPushes(eq(repository), any(), any(), isNull(), any(), any());
+  }
+
+  @Test
+  void keepCursorIfChunkIsDropped() throws IOException {
+    mockLog();
+    when(logCommand.getChangesets()).thenReturn(page(2));
+    when(dispatcher.dispatch(eq("42"), any(), any())).thenReturn(true, false);
+
+    BackfillCursor cursor = cursor(0, 5);
+    service.run(repository, cursor);
+
+    assertEquals(BackfillState.FAILED, cursor.getState());
+    assertNotNull(cursor.getError());
+    assertEquals(2, cursor.getOffset());
+  }
+
+  @Test
+  void continueAtCursor() throws IOException {
+    mockLog();
+    when(logCommand.getChangesets()).thenReturn(page(1));
+    when(dispatcher.dispatch(eq("42"), any(), any())).thenReturn(true);
+
+    BackfillCursor cursor = cursor(4, 5);
+    service.run(repository, cursor);
+
+    assertEquals(BackfillState.FINISHED, cursor.getState());
+    verify(logCommand).setPagingStart(0);
+    verify(logCommand, times(1)).setPagingLimit(anyInt());
+    verify(logCommand).setPagingLimit(1);
+  }
+
+  @Test
+  void stopBackfillOfInactiveRepository() throws IOException {
+    when(configurationResolver.resolve("42")).thenReturn(new PushEventConfiguration("url", "token", false));
+
+    BackfillCursor cursor = cursor(0, 5);
+    service.run(repository, cursor);
+
+    assertEquals(BackfillState.FAILED, cursor.getState());
+    assertEquals(0, cursor.getOffset());
+    verify(dispatcher, never()).dispatch(any(), any(), any());
+  }
+
+  @Test
+  void notResumeFinishedBackfill() {
+    BackfillCursor cursor = cursor(5, 5);
+    cursor.setState(BackfillState.FINISHED);
+    when(cursorStore.get("42")).thenReturn(cursor);
+
+    assertNull(service.resume(repository));
+  }
+}
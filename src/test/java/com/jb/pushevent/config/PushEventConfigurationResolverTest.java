@@ -0,0 +1,145 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.HandlerEventType;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.RepositoryEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PushEventConfigurationResolverTest {
+
+  private static final String REPOSITORY_ID = "42";
+
+  @Mock
+  private PushEventConfigurationStore globalStore;
+  @Mock
+  private RepositoryPushEventConfigurationStore repositoryStore;
+
+  private final PushEventConfiguration global = new PushEventConfiguration("http://localhost:8088/", "token", true);
+
+  private PushEventConfigurationResolver resolver;
+
+  @BeforeEach
+  void setUp() {
+    when(globalStore.get()).thenReturn(global);
+    resolver = new PushEventConfigurationResolver(globalStore, repositoryStore);
+  }
+
+  @Test
+  void useGlobalConfigurationWithoutOverrides() {
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(new RepositoryPushEventConfiguration());
+
+    assertSame(global, resolver.resolve(REPOSITORY_ID));
+  }
+
+  @Test
+  void readRepositorySettingsOnlyOnce() {
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(new RepositoryPushEventConfiguration());
+
+    resolver.resolve(REPOSITORY_ID);
+    resolver.resolve(REPOSITORY_ID);
+
+    verify(repositoryStore, times(1)).get(REPOSITORY_ID);
+  }
+
+  @Test
+  void deactivateExcludedRepository() {
+    RepositoryPushEventConfiguration repository = new RepositoryPushEventConfiguration();
+    repository.setExcluded(true);
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(repository);
+
+    PushEventConfiguration effective = resolver.resolve(REPOSITORY_ID);
+
+    assertFalse(effective.getActive());
+    assertTrue(global.getActive());
+  }
+
+  @Test
+  void overrideEndpointWithoutGlobalToken() {
+    RepositoryPushEventConfiguration repository = new RepositoryPushEventConfiguration();
+    repository.setUrl("http://elsewhere:8088/");
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(repository);
+
+    PushEventConfiguration effective = resolver.resolve(REPOSITORY_ID);
+
+    assertNotSame(global, effective);
+    assertEquals("http://elsewhere:8088/", effective.getUrl());
+    assertEquals("", effective.getToken());
+    assertEquals("http://localhost:8088/", global.getUrl());
+  }
+
+  @Test
+  void resolveAgainAfterRepositoryUpdate() {
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(new RepositoryPushEventConfiguration());
+    assertTrue(resolver.resolve(REPOSITORY_ID).getActive());
+
+    RepositoryPushEventConfiguration repository = new RepositoryPushEventConfiguration();
+    repository.setExcluded(true);
+    resolver.setRepositoryConfiguration(REPOSITORY_ID, repository);
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(repository);
+
+    verify(repositoryStore).set(REPOSITORY_ID, repository);
+    assertFalse(resolver.resolve(REPOSITORY_ID).getActive());
+  }
+
+  @Test
+  void resolveAgainAfterGlobalUpdate() {
+    RepositoryPushEventConfiguration repository = new RepositoryPushEventConfiguration();
+    repository.setExcluded(true);
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(repository);
+    resolver.resolve(REPOSITORY_ID);
+
+    PushEventConfiguration updated = new PushEventConfiguration("http://localhost:9099/", "other", true);
+    when(globalStore.get()).thenReturn(updated);
+
+    assertEquals("http://localhost:9099/", resolver.resolve(REPOSITORY_ID).getUrl());
+    verify(repositoryStore, times(2)).get(REPOSITORY_ID);
+  }
+
+  @Test
+  void forgetDeletedRepository() {
+    when(repositoryStore.get(REPOSITORY_ID)).thenReturn(new RepositoryPushEventConfiguration());
+    resolver.resolve(REPOSITORY_ID);
+
+    resolver.onEvent(new RepositoryEvent(HandlerEventType.DELETE, new Repository(REPOSITORY_ID, "git", "hitchhiker", "heart-of-gold")));
+    resolver.resolve(REPOSITORY_ID);
+
+    verify(repositoryStore, times(2)).get(REPOSITORY_ID);
+  }
+}
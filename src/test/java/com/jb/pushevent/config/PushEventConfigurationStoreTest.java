@@ -0,0 +1,83 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.config;
+
+import com.jb.pushevent.template.PayloadTemplates;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.store.ConfigurationStore;
+import sonia.scm.store.ConfigurationStoreFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PushEventConfigurationStoreTest {
+
+  @Mock(answer = Answers.RETURNS_DEEP_STUBS)
+  private ConfigurationStoreFactory storeFactory;
+  @Mock
+  private ConfigurationStore<PushEventConfiguration> configurationStore;
+
+  private PushEventConfigurationStore store;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  void setUp() {
+    when(storeFactory.withType(PushEventConfiguration.class).withName("pushevent").build()).thenReturn((ConfigurationStore) configurationStore);
+    store = new PushEventConfigurationStore(storeFactory, new PayloadTemplates());
+  }
+
+  @Test
+  void readStoreOnlyOnce() {
+    PushEventConfiguration stored = new PushEventConfiguration("http://localhost:8088/", "token", true);
+    when(configurationStore.get()).thenReturn(stored);
+
+    assertSame(stored, store.get());
+    assertSame(stored, store.get());
+    verify(configurationStore, times(1)).get();
+  }
+
+  @Test
+  void replaceConfigurationOnUpdate() {
+    when(configurationStore.get()).thenReturn(null);
+    PushEventConfiguration initial = store.get();
+    assertEquals(ReloadPolicy.REROUTE, initial.getReloadPolicy());
+
+    PushEventConfiguration updated = new PushEventConfiguration("http://localhost:9099/", "other", true);
+    store.update(updated);
+
+    verify(configurationStore).set(updated);
+    assertSame(updated, store.get());
+    verify(configurationStore, times(1)).get();
+  }
+}
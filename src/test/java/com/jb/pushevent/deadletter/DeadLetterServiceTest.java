@@ -0,0 +1,152 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.deadletter;
+
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.QueuedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DeadLetterServiceTest {
+
+  @Mock
+  private DeadLetterStore store;
+  @Mock
+  private EventDispatcher dispatcher;
+  @Mock
+  private PushEventConfigurationStore configurationStore;
+
+  private final PushEventConfiguration configuration = new PushEventConfiguration();
+
+  private DeadLetterService service;
+
+  @BeforeEach
+  void setUp() {
+    configuration.setDeadLetterRedriveRate(1000);
+    configuration.setDeadLetterRedriveBatchSize(2);
+    service = new DeadLetterService(store, dispatcher, configurationStore);
+  }
+
+  @AfterEach
+  void tearDown() {
+    service.stop();
+  }
+
+  @Test
+  void shouldRemoveDeliveredDeadLetters() {
+    DeadLetter first = deadLetter("1");
+    DeadLetter second = deadLetter("2");
+    DeadLetter third = deadLetter("3");
+    when(dispatcher.send(any(QueuedEvent.class))).thenReturn(null);
+
+    service.run(Arrays.asList(first, second, third), configuration);
+
+    verify(dispatcher, times(3)).send(any(QueuedEvent.class));
+    verify(store).remove("1");
+    verify(store).remove("2");
+    verify(store).remove("3");
+    assertFalse(service.isRunning());
+  }
+
+  @Test
+  void shouldKeepFailedDeadLettersWithAdditionalAttempt() {
+    DeadLetter deadLetter = deadLetter("1");
+    when(dispatcher.send(any(QueuedEvent.class))).thenReturn("503 Service Unavailable");
+
+    service.run(Collections.singletonList(deadLetter), configuration);
+
+    verify(store, never()).remove("1");
+    verify(store).update(deadLetter);
+    assertEquals(2, deadLetter.getAttempts().size());
+    assertEquals("503 Service Unavailable", deadLetter.getReason());
+  }
+
+  @Test
+  void shouldRejectSecondRedriveWhileRunning() throws InterruptedException {
+    CountDownLatch sending = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(store.getAll()).thenReturn(Collections.singletonList(deadLetter("1")));
+    when(configurationStore.get()).thenReturn(configuration);
+    when(dispatcher.send(any(QueuedEvent.class))).thenAnswer(invocation -> {
+      sending.countDown();
+      release.await();
+      return null;
+    });
+
+    assertEquals(1, service.redrive(null));
+    assertTrue(sending.await(5, TimeUnit.SECONDS));
+    assertTrue(service.isRunning());
+    assertEquals(-1, service.redrive(null));
+
+    release.countDown();
+  }
+
+  @Test
+  void shouldRedriveOnlyExistingDeadLetters() throws InterruptedException {
+    CountDownLatch sent = new CountDownLatch(1);
+    when(store.get("1")).thenReturn(deadLetter("1"));
+    when(configurationStore.get()).thenReturn(configuration);
+    when(dispatcher.send(any(QueuedEvent.class))).thenAnswer(invocation -> {
+      sent.countDown();
+      return null;
+    });
+
+    assertEquals(1, service.redrive(Arrays.asList("1", "unknown")));
+    assertTrue(sent.await(5, TimeUnit.SECONDS));
+  }
+
+  private DeadLetter deadLetter(String id) {
+    DeadLetter deadLetter = new DeadLetter();
+    deadLetter.setId(id);
+    deadLetter.setRepositoryId("42");
+    deadLetter.setPayload("{}".getBytes());
+    List<DeadLetterAttempt> attempts = new ArrayList<>();
+    attempts.add(new DeadLetterAttempt(1L, "connection refused"));
+    deadLetter.setAttempts(attempts);
+    return deadLetter;
+  }
+}
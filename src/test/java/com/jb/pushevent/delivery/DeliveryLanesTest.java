@@ -0,0 +1,164 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeliveryLanesTest {
+
+  private static final int REPOSITORIES = 20;
+  private static final int EVENTS_PER_REPOSITORY = 200;
+
+  @Test
+  void deliverEventsOfRepositoryInOrder() throws InterruptedException {
+    Map<String, List<Integer>> delivered = new HashMap<>();
+    CountDownLatch latch = new CountDownLatch(REPOSITORIES * EVENTS_PER_REPOSITORY);
+    DeliveryLanes lanes = new DeliveryLanes(4, event -> {
+      synchronized (delivered) {
+        delivered.computeIfAbsent(event.getRepositoryId(), id -> new ArrayList<>()).add(ByteBuffer.wrap(event.getPayload()).getInt());
+      }
+      latch.countDown();
+    });
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (int i = 0; i < EVENTS_PER_REPOSITORY; i++) {
+        for (int repository = 0; repository < REPOSITORIES; repository++) {
+          lanes.submit(new QueuedEvent("repository-" + repository, ByteBuffer.allocate(4).putInt(i).array()), executor);
+        }
+      }
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+
+    assertEquals(REPOSITORIES, delivered.size());
+    delivered.values().forEach(events -> {
+      assertEquals(EVENTS_PER_REPOSITORY, events.size());
+      for (int i = 0; i < EVENTS_PER_REPOSITORY; i++) {
+        assertEquals(i, events.get(i).intValue());
+      }
+    });
+  }
+
+  @Test
+  void deliverLanesInParallel() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger delivered = new AtomicInteger();
+    DeliveryLanes lanes = new DeliveryLanes(2, event -> {
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      delivered.incrementAndGet();
+    });
+
+    String first = "a";
+    String second = "b";
+    while (DeliveryLanes.laneOf(second, 2) == DeliveryLanes.laneOf(first, 2)) {
+      second = second + "b";
+    }
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      lanes.submit(new QueuedEvent(first, new byte[0]), executor);
+      lanes.submit(new QueuedEvent(second, new byte[0]), executor);
+      assertTrue(started.await(10, TimeUnit.SECONDS));
+      release.countDown();
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+    assertEquals(2, delivered.get());
+  }
+
+  @Test
+  void resumeRejectedLane() {
+    List<Integer> delivered = new ArrayList<>();
+    DeliveryLanes lanes = new DeliveryLanes(1, event -> delivered.add(ByteBuffer.wrap(event.getPayload()).getInt()));
+    Executor rejecting = task -> {
+      throw new RejectedExecutionException("saturated");
+    };
+
+    assertThrows(RejectedExecutionException.class, () -> lanes.submit(new QueuedEvent("a", ByteBuffer.allocate(4).putInt(1).array()), rejecting));
+    assertThrows(RejectedExecutionException.class, () -> lanes.resume("a", rejecting));
+    lanes.resume("a", Runnable::run);
+    lanes.submit(new QueuedEvent("a", ByteBuffer.allocate(4).putInt(2).array()), Runnable::run);
+
+    assertEquals(2, delivered.size());
+    assertEquals(1, delivered.get(0).intValue());
+    assertEquals(2, delivered.get(1).intValue());
+  }
+
+  @Test
+  void removePendingEventsOfRejectedLane() {
+    DeliveryLanes lanes = new DeliveryLanes(1, event -> {
+    });
+    Executor rejecting = task -> {
+      throw new RejectedExecutionException("saturated");
+    };
+    QueuedEvent first = new QueuedEvent("a", new byte[1]);
+    QueuedEvent second = new QueuedEvent("a", new byte[1]);
+    assertThrows(RejectedExecutionException.class, () -> lanes.submit(first, rejecting));
+    assertThrows(RejectedExecutionException.class, () -> lanes.submit(second, rejecting));
+
+    List<QueuedEvent> removed = lanes.removePending();
+
+    assertEquals(2, removed.size());
+    assertSame(first, removed.get(0));
+    assertSame(second, removed.get(1));
+    assertTrue(lanes.removePending().isEmpty());
+  }
+
+  @Test
+  void assignRepositoryToSameLane() {
+    for (int i = 0; i < 100; i++) {
+      int lane = DeliveryLanes.laneOf("repository-" + i, 8);
+      assertTrue(lane >= 0 && lane < 8);
+      assertEquals(lane, DeliveryLanes.laneOf("repository-" + i, 8));
+    }
+    assertEquals(0, DeliveryLanes.laneOf(null, 8));
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.junit.jupiter.api.Test;
+import sonia.scm.net.ahc.AdvancedHttpClient;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class EndpointTest {
+
+  private final AdvancedHttpClient httpClient = mock(AdvancedHttpClient.class);
+
+  @Test
+  void matchUrlAndToken() {
+    Endpoint endpoint = new Endpoint(httpClient, new PushEventConfiguration("http://localhost:8088/", "token", true));
+
+    PushEventConfiguration otherSettings = new PushEventConfiguration("http://localhost:8088/", "token", false);
+    otherSettings.setMaxConcurrentDeliveries(8);
+    assertTrue(endpoint.matches(otherSettings));
+    assertFalse(endpoint.matches(new PushEventConfiguration("http://localhost:9099/", "token", true)));
+    assertFalse(endpoint.matches(new PushEventConfiguration("http://localhost:8088/", "other", true)));
+    assertEquals("http://localhost:8088/", endpoint.getUrl());
+  }
+
+  @Test
+  void retire() {
+    Endpoint endpoint = new Endpoint(httpClient, new PushEventConfiguration("http://localhost:8088/", "token", true));
+    assertFalse(endpoint.isRetired());
+
+    endpoint.retire();
+
+    assertTrue(endpoint.isRetired());
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.jb.pushevent.config.OverflowPolicy;
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EventQueueTest {
+
+  @TempDir
+  File spillDirectory;
+
+  private EventQueue queue;
+  private PushEventConfiguration configuration;
+
+  @BeforeEach
+  void setUp() {
+    queue = new EventQueue(new SpillStore(spillDirectory));
+    configuration = new PushEventConfiguration("url", "token", true);
+    configuration.setMaxQueueBytes(10);
+    configuration.setBlockTimeoutMillis(10);
+  }
+
+  private QueuedEvent event(String repositoryId, int size) {
+    return new QueuedEvent(repositoryId, new byte[size]);
+  }
+
+  @Test
+  void dropNewest() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+
+    assertTrue(queue.offer(event("first", 8), configuration));
+    assertFalse(queue.offer(event("second", 8), configuration));
+
+    assertEquals(1, queue.getQueuedEvents());
+    assertEquals(8, queue.getQueuedBytes());
+    assertEquals(1, queue.getDroppedEvents());
+    assertEquals(8, queue.getDroppedBytes());
+    assertEquals("first", queue.take().getRepositoryId());
+  }
+
+  @Test
+  void dropOldest() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+
+    assertTrue(queue.offer(event("first", 4), configuration));
+    assertTrue(queue.offer(event("second", 4), configuration));
+    assertTrue(queue.offer(event("third", 4), configuration));
+
+    assertEquals(1, queue.getDroppedEvents());
+    assertEquals("second", queue.take().getRepositoryId());
+    assertEquals("third", queue.take().getRepositoryId());
+  }
+
+  @Test
+  void blockUntilTimeout() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.BLOCK);
+
+    assertTrue(queue.offer(event("first", 8), configuration));
+    assertFalse(queue.offer(event("second", 8), configuration));
+
+    assertEquals(1, queue.getDroppedEvents());
+  }
+
+  @Test
+  void acceptSingleOversizedEvent() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.DROP_NEWEST);
+
+    assertTrue(queue.offer(event("first", 42), configuration));
+    assertEquals(42, queue.getQueuedBytes());
+  }
+
+  @Test
+  void spillToDisk() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.SPILL_TO_DISK);
+
+    QueuedEvent spilled = new QueuedEvent("second", new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+    assertTrue(queue.offer(event("first", 8), configuration));
+    assertTrue(queue.offer(spilled, configuration));
+    assertTrue(queue.offer(event("third", 1), configuration));
+
+    assertEquals(1, queue.getQueuedEvents());
+    assertEquals(2, queue.getSpilledEvents());
+    assertEquals(2, queue.getEventsOnDisk());
+
+    assertEquals("first", queue.take().getRepositoryId());
+    QueuedEvent restored = queue.take();
+    assertEquals("second", restored.getRepositoryId());
+    assertArrayEquals(spilled.getPayload(), restored.getPayload());
+    assertEquals(spilled.getEnqueuedAt(), restored.getEnqueuedAt());
+    assertEquals("third", queue.take().getRepositoryId());
+    assertEquals(0, queue.getEventsOnDisk());
+  }
+
+  @Test
+  void restoreSpilledEvents() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.SPILL_TO_DISK);
+    queue.offer(event("first", 8), configuration);
+    queue.offer(event("second", 8), configuration);
+
+    EventQueue restarted = new EventQueue(new SpillStore(spillDirectory));
+
+    assertEquals(1, restarted.getEventsOnDisk());
+    assertEquals("second", restarted.take().getRepositoryId());
+  }
+
+  @Test
+  void spillQueuedEventsOnClose() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.SPILL_TO_DISK);
+    queue.offer(event("first", 4), configuration);
+    queue.offer(event("second", 4), configuration);
+    queue.offer(event("third", 4), configuration);
+    assertEquals(1, queue.getEventsOnDisk());
+
+    // the queued events are older than the spilled one
+    queue.close(configuration);
+
+    assertEquals(0, queue.getQueuedEvents());
+    assertEquals(0, queue.getDroppedEvents());
+    EventQueue restarted = new EventQueue(new SpillStore(spillDirectory));
+    assertEquals(3, restarted.getEventsOnDisk());
+    assertEquals("first", restarted.take().getRepositoryId());
+    assertEquals("second", restarted.take().getRepositoryId());
+    assertEquals("third", restarted.take().getRepositoryId());
+  }
+
+  @Test
+  void countQueuedEventsAsDroppedOnClose() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.BLOCK);
+    queue.offer(event("first", 4), configuration);
+    queue.offer(event("second", 4), configuration);
+
+    queue.close(configuration);
+
+    assertEquals(0, queue.getQueuedEvents());
+    assertEquals(0, queue.getQueuedBytes());
+    assertEquals(2, queue.getDroppedEvents());
+    assertEquals(8, queue.getDroppedBytes());
+  }
+
+  @Test
+  void putBackTakenEvents() throws InterruptedException {
+    queue.offer(event("third", 1), configuration);
+
+    queue.putBack(Arrays.asList(event("first", 1), event("second", 1)));
+
+    assertEquals(3, queue.getQueuedEvents());
+    assertEquals("first", queue.take().getRepositoryId());
+    assertEquals("second", queue.take().getRepositoryId());
+    assertEquals("third", queue.take().getRepositoryId());
+  }
+
+  @Test
+  void keepOrderOfConcurrentlySpilledEvents() throws InterruptedException {
+    configuration.setOverflowPolicy(OverflowPolicy.SPILL_TO_DISK);
+    int repositories = 4;
+    int eventsPerRepository = 50;
+
+    ExecutorService executor = Executors.newFixedThreadPool(repositories);
+    try {
+      for (int repository = 0; repository < repositories; repository++) {
+        String repositoryId = "repository-" + repository;
+        executor.execute(() -> {
+          for (int i = 0; i < eventsPerRepository; i++) {
+            try {
+              queue.offer(new QueuedEvent(repositoryId, ByteBuffer.allocate(8).putInt(i).array()), configuration);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    Map<String, Integer> next = new HashMap<>();
+    for (int i = 0; i < repositories * eventsPerRepository; i++) {
+      QueuedEvent event = queue.take();
+      int expected = next.getOrDefault(event.getRepositoryId(), 0);
+      assertEquals(expected, ByteBuffer.wrap(event.getPayload()).getInt());
+      next.put(event.getRepositoryId(), expected + 1);
+    }
+    assertEquals(0, queue.getEventsOnDisk());
+  }
+}
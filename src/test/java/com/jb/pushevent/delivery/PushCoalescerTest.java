@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Commit;
+import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.dto.Push;
+import com.jb.pushevent.execution.PushEventExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PushCoalescerTest {
+
+  @Mock
+  private EventDispatcher eventDispatcher;
+
+  private PushCoalescer pushCoalescer;
+  private PushEventConfiguration configuration;
+
+  @BeforeEach
+  void setUp() {
+    pushCoalescer = new PushCoalescer(eventDispatcher, new PushEventExecutor());
+    configuration = new PushEventConfiguration();
+  }
+
+  private Push push(String repositoryId, String user, String... commitIds) {
+    Push push = new Push(new ObjectMapper().createObjectNode());
+    push.setRepositoryId(repositoryId);
+    push.setUser(user);
+    HashSet<Commit> commits = new HashSet<>();
+    Arrays.stream(commitIds).forEach(id -> {
+      Commit commit = new Commit(new ObjectMapper().createObjectNode());
+      commit.setCommitId(id);
+      commits.add(commit);
+    });
+    push.setCommits(commits);
+    return push;
+  }
+
+  @Test
+  void dispatchImmediatelyWithoutWindow() throws IOException {
+    pushCoalescer.submit(push("repo", "trillian", "1"), configuration);
+
+    verify(eventDispatcher).dispatch(eq("repo"), any(Event.class), eq(configuration));
+  }
+
+  @Test
+  void mergePushesWithinWindow() throws IOException {
+    configuration.setCoalescingWindowMillis(200);
+
+    pushCoalescer.submit(push("repo", "trillian", "1", "2"), configuration);
+    pushCoalescer.submit(push("repo", "trillian", "2", "3"), configuration);
+
+    ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+    verify(eventDispatcher, timeout(2000)).dispatch(eq("repo"), captor.capture(), eq(configuration));
+    assertEquals(3, captor.getValue().getData().get("commits").size());
+  }
+
+  @Test
+  void keepPushesOfDifferentUsersApart() throws IOException {
+    configuration.setCoalescingWindowMillis(100);
+
+    pushCoalescer.submit(push("repo", "trillian", "1"), configuration);
+    pushCoalescer.submit(push("repo", "dent", "2"), configuration);
+
+    verify(eventDispatcher, timeout(2000).times(2)).dispatch(eq("repo"), any(Event.class), eq(configuration));
+  }
+
+  @Test
+  void keepPushesOfDifferentUsersInOrder() throws IOException {
+    configuration.setCoalescingWindowMillis(100);
+
+    pushCoalescer.submit(push("repo", "trillian", "1"), configuration);
+    pushCoalescer.submit(push("repo", "dent", "2"), configuration);
+    pushCoalescer.submit(push("repo", "trillian", "3"), configuration);
+
+    ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+    verify(eventDispatcher, timeout(2000).times(3)).dispatch(eq("repo"), captor.capture(), eq(configuration));
+    List<Event> events = captor.getAllValues();
+    assertEquals("1", events.get(0).getData().get("commits").get(0).get("commitId").asText());
+    assertEquals("2", events.get(1).getData().get("commits").get(0).get("commitId").asText());
+    assertEquals("3", events.get(2).getData().get("commits").get(0).get("commitId").asText());
+  }
+
+  @Test
+  void dispatchAfterWindowOutsideOfScheduler() throws IOException {
+    configuration.setCoalescingWindowMillis(100);
+    List<String> threads = new CopyOnWriteArrayList<>();
+    when(eventDispatcher.dispatch(eq("repo"), any(Event.class), eq(configuration))).thenAnswer(invocation -> {
+      threads.add(Thread.currentThread().getName());
+      return true;
+    });
+
+    pushCoalescer.submit(push("repo", "trillian", "1"), configuration);
+
+    verify(eventDispatcher, timeout(2000)).dispatch(eq("repo"), any(Event.class), eq(configuration));
+    assertEquals(1, threads.size());
+    assertNotEquals("pushevent-coalescer", threads.get(0));
+  }
+
+  @Test
+  void flushPendingPushesOnStop() throws IOException {
+    configuration.setCoalescingWindowMillis(60_000);
+
+    pushCoalescer.submit(push("repo", "trillian", "1"), configuration);
+    pushCoalescer.stop();
+
+    verify(eventDispatcher, times(1)).dispatch(eq("repo"), any(Event.class), eq(configuration));
+  }
+
+  @Test
+  void dispatchPendingPushInsteadOfExceedingMaxCommits() throws IOException {
+    configuration.setCoalescingWindowMillis(60_000);
+    configuration.setMaxCommitsPerEvent(3);
+
+    pushCoalescer.submit(push("repo", "trillian", "1", "2"), configuration);
+    pushCoalescer.submit(push("repo", "trillian", "3", "4"), configuration);
+
+    ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+    verify(eventDispatcher).dispatch(eq("repo"), captor.capture(), eq(configuration));
+    assertEquals(2, captor.getValue().getData().get("commits").size());
+
+    pushCoalescer.stop();
+    verify(eventDispatcher, times(2)).dispatch(eq("repo"), captor.capture(), eq(configuration));
+    assertEquals(2, captor.getValue().getData().get("commits").size());
+  }
+
+  @Test
+  void dispatchPendingPushBeforeChunk() throws IOException {
+    configuration.setCoalescingWindowMillis(60_000);
+
+    pushCoalescer.submit(push("repo", "trillian", "1"), configuration);
+    Push chunk = push("repo", "dent", "2");
+    chunk.setChunk("push", 0, false);
+    pushCoalescer.submit(chunk, configuration);
+
+    ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+    verify(eventDispatcher, times(2)).dispatch(eq("repo"), captor.capture(), eq(configuration));
+    List<Event> events = captor.getAllValues();
+    assertEquals("1", events.get(0).getData().get("commits").get(0).get("commitId").asText());
+    assertEquals("2", events.get(1).getData().get("commits").get(0).get("commitId").asText());
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositorySequenceTest {
+
+  private static final int EVENTS = 500;
+
+  @Test
+  void passTurnsInOrderOfNumbers() throws InterruptedException {
+    RepositorySequence sequence = new RepositorySequence();
+    List<Long> queued = new ArrayList<>();
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      for (int i = 0; i < EVENTS; i++) {
+        executor.execute(() -> {
+          long number = sequence.next();
+          // simulates the serialization, which takes different times for every event
+          if (ThreadLocalRandom.current().nextBoolean()) {
+            Thread.yield();
+          }
+          sequence.awaitTurn(number);
+          try {
+            queued.add(number);
+          } finally {
+            sequence.finishTurn(number);
+          }
+        });
+      }
+    } finally {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    assertEquals(EVENTS, queued.size());
+    for (int i = 0; i < EVENTS; i++) {
+      assertEquals(i + 1, queued.get(i).longValue());
+    }
+  }
+
+  @Test
+  void passTurnOfSkippedEvent() {
+    RepositorySequence sequence = new RepositorySequence();
+    long first = sequence.next();
+    long second = sequence.next();
+
+    sequence.skip(first);
+    sequence.awaitTurn(second);
+    sequence.finishTurn(second);
+
+    assertEquals(3, sequence.next());
+  }
+}
@@ -28,7 +28,9 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class EventTest {
 
@@ -67,6 +69,13 @@ class EventTest {
     assertEquals(expected, event.getTime());
   }
 
+  @Test
+  void setSequence() {
+    event.setSequence(42);
+    assertEquals(42, event.getSequence());
+    assertEquals(42, event.toJsonNode().get("sequence").asLong());
+  }
+
   @Test
   void setData() {
     Push push = new Push(new ObjectMapper().createObjectNode());
@@ -101,4 +110,10 @@ class EventTest {
   void getType() {
     assertEquals("push", Event.TYPE);
   }
+
+  @Test
+  void isPush() {
+    assertTrue(event.isPush());
+    assertFalse(Event.of("sampling_summary", new ObjectMapper().createObjectNode()).isPush());
+  }
 }
@@ -0,0 +1,121 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.dto;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FieldProjectionTest {
+
+  @Test
+  void includeEverythingWithoutFields() {
+    FieldProjection projection = FieldProjection.of(Collections.emptyList());
+
+    assertSame(FieldProjection.ALL, projection);
+    assertTrue(projection.includes("commits.message"));
+    assertFalse(projection.selects("commitCount"));
+  }
+
+  @Test
+  void includeParentsAndChildrenOfSelectedFields() {
+    FieldProjection projection = FieldProjection.of(Arrays.asList("user", "commits.fileChanges.added"));
+
+    assertTrue(projection.includes("user"));
+    assertTrue(projection.includes("commits"));
+    assertTrue(projection.includes("commits.fileChanges"));
+    assertTrue(projection.includes("commits.fileChanges.added"));
+    assertFalse(projection.includes("commits.message"));
+    assertFalse(projection.includes("commits.fileChanges.removed"));
+    assertFalse(projection.includes("fileChanges"));
+  }
+
+  @Test
+  void includeChildrenOfSelectedObject() {
+    FieldProjection projection = FieldProjection.of(Collections.singletonList("commits"));
+
+    assertTrue(projection.includes("commits.message"));
+    assertSame(FieldProjection.ALL, projection.nested("commits"));
+  }
+
+  @Test
+  void excludeNestedObjectWithoutSelectedFields() {
+    FieldProjection projection = FieldProjection.of(Collections.singletonList("commitCount"));
+    FieldProjection commit = projection.nested("commits");
+
+    assertSame(FieldProjection.NONE, commit);
+    assertFalse(commit.includes("message"));
+    assertFalse(commit.includes("authorUser"));
+    assertFalse(commit.nested("fileChanges").includes("added"));
+  }
+
+  @Test
+  void includeNestedObjectOfSelectedParent() {
+    FieldProjection projection = FieldProjection.of(Collections.singletonList("commits"));
+
+    assertSame(FieldProjection.ALL, projection.nested("commits").nested("fileChanges"));
+  }
+
+  @Test
+  void projectNestedObject() {
+    FieldProjection projection = FieldProjection.of(Arrays.asList("commits.commitId", "commits.fileChanges.added"));
+    FieldProjection commit = projection.nested("commits");
+
+    assertTrue(commit.includes("commitId"));
+    assertTrue(commit.includes("fileChanges"));
+    assertFalse(commit.includes("author"));
+    assertTrue(commit.nested("fileChanges").includes("added"));
+    assertFalse(commit.nested("fileChanges").includes("moved"));
+  }
+
+  @Test
+  void writeProjectedFieldsOnly() {
+    FieldProjection projection = FieldProjection.of(Arrays.asList("repositoryId", "commitCount", "commits.commitId"));
+    Push push = new Push(new ObjectMapper().createObjectNode(), projection);
+    push.setRepositoryId("42");
+    push.setUser("trillian");
+
+    Commit commit = new Commit(new ObjectMapper().createObjectNode(), projection.nested("commits"));
+    commit.setCommitId("abc");
+    commit.setCommitMessage("hitchhiker");
+    push.addCommit(commit);
+    push.setCommits(push.getCommits());
+
+    JsonNode node = push.toJsonNode();
+    assertEquals("42", node.get("repositoryId").asText());
+    assertFalse(node.has("user"));
+    assertEquals("trillian", push.getUser());
+    assertEquals(1, node.get("commitCount").asInt());
+    assertEquals("abc", node.get("commits").get(0).get("commitId").asText());
+    assertFalse(node.get("commits").get(0).has("message"));
+  }
+}
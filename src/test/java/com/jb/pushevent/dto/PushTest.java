@@ -23,6 +23,7 @@
  */
 package com.jb.pushevent.dto;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -140,6 +141,21 @@ class PushTest {
     assertFalse(push.getCommits().isEmpty());
   }
 
+  @Test
+  void appendCommitsToJsonInOrder() {
+    for (int i = 0; i < 3; i++) {
+      Commit commit = new Commit(new ObjectMapper().createObjectNode());
+      commit.setCommitId(String.valueOf(i));
+      push.addCommit(commit);
+    }
+
+    JsonNode commits = push.toJsonNode().get("commits");
+    assertEquals(3, commits.size());
+    for (int i = 0; i < 3; i++) {
+      assertEquals(String.valueOf(i), commits.get(i).get("commitId").asText());
+    }
+  }
+
   @Test
   void setCommits() {
     Set<Commit> commits = Stream.of(new Commit(new ObjectMapper().createObjectNode())).collect(Collectors.toCollection(HashSet::new));
@@ -163,4 +179,26 @@ class PushTest {
   void getNode() {
     assertNotNull(push.getNode());
   }
+
+  @Test
+  void mergeCommits() {
+    Commit first = new Commit(new ObjectMapper().createObjectNode());
+    first.setCommitId("1");
+    Commit second = new Commit(new ObjectMapper().createObjectNode());
+    second.setCommitId("2");
+    Commit secondAgain = new Commit(new ObjectMapper().createObjectNode());
+    secondAgain.setCommitId("2");
+
+    push.setCommits(Stream.of(first, second).collect(Collectors.toCollection(HashSet::new)));
+    push.setDatePushed(10L);
+    Push other = new Push(new ObjectMapper().createObjectNode());
+    other.setCommits(Stream.of(secondAgain).collect(Collectors.toCollection(HashSet::new)));
+    other.setDatePushed(20L);
+
+    push.mergeCommits(other);
+
+    assertEquals(2, push.getCommits().size());
+    assertEquals(2, push.toJsonNode().get("commits").size());
+    assertEquals(Long.valueOf(20L), push.getDatePushed());
+  }
 }
@@ -0,0 +1,85 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.execution;
+
+import com.jb.pushevent.config.ExecutionMode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compares virtual and platform threads with many concurrent pushes against a slow stub receiver.
+ * <p>
+ * Run with {@code gradle test -Dpushevent.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "pushevent.benchmark", matches = "true")
+class PushEventExecutorBenchmark {
+
+  private static final int PUSHES = 5_000;
+  private static final long RECEIVER_LATENCY_MILLIS = 50;
+
+  @Test
+  void compareExecutionModes() throws InterruptedException {
+    long platform = run(ExecutionMode.PLATFORM_THREADS);
+    System.out.printf("platform threads: %d pushes in %d ms%n", PUSHES, platform);
+    if (PushEventExecutor.isVirtualThreadSupported()) {
+      long virtual = run(ExecutionMode.VIRTUAL_THREADS);
+      System.out.printf("virtual threads:  %d pushes in %d ms%n", PUSHES, virtual);
+    } else {
+      System.out.println("virtual threads are not supported by this runtime");
+    }
+  }
+
+  private long run(ExecutionMode mode) throws InterruptedException {
+    PushEventExecutor executor = new PushEventExecutor();
+    PushEventConfiguration configuration = new PushEventConfiguration();
+    configuration.setExecutionMode(mode);
+
+    CountDownLatch latch = new CountDownLatch(PUSHES);
+    long start = System.nanoTime();
+    for (int i = 0; i < PUSHES; i++) {
+      executor.execute(() -> {
+        stubReceiver();
+        latch.countDown();
+      }, configuration);
+    }
+    assertTrue(latch.await(5, TimeUnit.MINUTES));
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    executor.shutdown();
+    return elapsed;
+  }
+
+  private void stubReceiver() {
+    try {
+      Thread.sleep(RECEIVER_LATENCY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
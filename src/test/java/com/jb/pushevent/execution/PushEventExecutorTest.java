@@ -0,0 +1,255 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.execution;
+
+import com.jb.pushevent.config.ExecutionMode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PushEventExecutorTest {
+
+  private PushEventExecutor executor;
+  private PushEventConfiguration configuration;
+
+  @BeforeEach
+  void setUp() {
+    executor = new PushEventExecutor();
+    configuration = new PushEventConfiguration();
+  }
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdown();
+  }
+
+  @Test
+  void usePlatformThreadPool() {
+    configuration.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+    configuration.setMaxPlatformThreads(3);
+
+    ExecutorService service = executor.executor(configuration);
+
+    assertTrue(service instanceof ThreadPoolExecutor);
+    assertEquals(3, ((ThreadPoolExecutor) service).getMaximumPoolSize());
+  }
+
+  @Test
+  void useVirtualThreadsIfSupported() {
+    configuration.setExecutionMode(ExecutionMode.AUTO);
+
+    ExecutorService service = executor.executor(configuration);
+
+    assertEquals(!PushEventExecutor.isVirtualThreadSupported(), service instanceof ThreadPoolExecutor);
+  }
+
+  @Test
+  void reuseExecutorForSameSettings() {
+    configuration.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+
+    assertSame(executor.executor(configuration), executor.executor(configuration));
+  }
+
+  @Test
+  void replaceExecutorOnChangedSettings() {
+    configuration.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+    ExecutorService first = executor.executor(configuration);
+
+    configuration.setMaxPlatformThreads(2);
+    ExecutorService second = executor.executor(configuration);
+
+    assertNotSame(first, second);
+    assertTrue(first.isShutdown());
+  }
+
+  @Test
+  void executeTasks() throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(10);
+
+    for (int i = 0; i < 10; i++) {
+      executor.execute(latch::countDown, configuration);
+    }
+
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void executeTasksWhileExecutorIsSwapped() throws InterruptedException {
+    configuration.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+    configuration.setMaxPlatformThreads(4);
+    PushEventConfiguration other = new PushEventConfiguration();
+    other.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+    other.setMaxPlatformThreads(2);
+    int tasks = 10_000;
+    CountDownLatch latch = new CountDownLatch(tasks);
+    AtomicBoolean submitting = new AtomicBoolean(true);
+
+    Thread swapper = new Thread(() -> {
+      while (submitting.get()) {
+        executor.executor(other);
+        executor.executor(configuration);
+      }
+    });
+    swapper.start();
+    try {
+      for (int i = 0; i < tasks; i++) {
+        executor.executeOrRun(latch::countDown, configuration);
+      }
+    } finally {
+      submitting.set(false);
+      swapper.join();
+    }
+
+    assertTrue(latch.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void rejectTaskIfPoolIsSaturated() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    saturatePool(release);
+    try {
+      assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+      }, configuration));
+    } finally {
+      release.countDown();
+    }
+  }
+
+  @Test
+  void runTaskInCallerIfPoolIsSaturated() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    saturatePool(release);
+    AtomicReference<Thread> thread = new AtomicReference<>();
+    try {
+      executor.executeOrRun(() -> thread.set(Thread.currentThread()), configuration);
+    } finally {
+      release.countDown();
+    }
+
+    assertSame(Thread.currentThread(), thread.get());
+  }
+
+  @Test
+  void executeTasksOfKeyInOrder() throws InterruptedException {
+    configuration.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+    configuration.setMaxPlatformThreads(4);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(3);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    executor.executeInOrder("42", () -> {
+      await(release);
+      order.add("first");
+      finished.countDown();
+    }, configuration);
+    executor.executeInOrder("42", () -> {
+      order.add("second");
+      finished.countDown();
+    }, configuration);
+    executor.executeInOrder("21", () -> {
+      order.add("other");
+      finished.countDown();
+    }, configuration);
+
+    // the task of the other key is not blocked by the first task
+    Thread.sleep(100);
+    assertEquals(Collections.singletonList("other"), order);
+    release.countDown();
+
+    assertTrue(finished.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("other", "first", "second"), order);
+  }
+
+  @Test
+  void executeNextTaskBeforePendingTasksOfKey() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch finished = new CountDownLatch(3);
+    List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+    executor.executeInOrder("42", () -> {
+      await(release);
+      order.add("first");
+      executor.executeNext("42", () -> {
+        order.add("remainder");
+        finished.countDown();
+      }, configuration);
+      finished.countDown();
+    }, configuration);
+    executor.executeInOrder("42", () -> {
+      order.add("second");
+      finished.countDown();
+    }, configuration);
+    release.countDown();
+
+    assertTrue(finished.await(5, TimeUnit.SECONDS));
+    assertEquals(Arrays.asList("first", "remainder", "second"), order);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void saturatePool(CountDownLatch release) throws InterruptedException {
+    configuration.setExecutionMode(ExecutionMode.PLATFORM_THREADS);
+    configuration.setMaxPlatformThreads(1);
+    CountDownLatch started = new CountDownLatch(1);
+    executor.execute(() -> {
+      started.countDown();
+      try {
+        release.await(10, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }, configuration);
+    assertTrue(started.await(10, TimeUnit.SECONDS));
+    ThreadPoolExecutor pool = (ThreadPoolExecutor) executor.executor(configuration);
+    while (pool.getQueue().remainingCapacity() > 0) {
+      executor.execute(() -> {
+      }, configuration);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeliveryJournalTest {
+
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+  private static final long START = Instant.parse("2024-01-16T00:00:00Z").toEpochMilli();
+
+  @TempDir
+  File directory;
+
+  private DeliveryJournal journal;
+
+  @AfterEach
+  void close() {
+    if (journal != null) {
+      journal.close();
+    }
+  }
+
+  @Test
+  void findEventsOfRepositoryWithinTimeRange() throws IOException {
+    journal = open(START);
+    for (int i = 0; i < 48; i++) {
+      write(START + i * TimeUnit.HOURS.toMillis(1), i % 2 == 0 ? "a" : "b", i);
+    }
+
+    JournalPage page = journal.query("a", START + DAY - 1, START + DAY + TimeUnit.HOURS.toMillis(4), null, 50);
+
+    assertEquals(3, page.getEntries().size());
+    assertEquals(START + DAY, page.getEntries().get(0).getTime());
+    assertEquals("24", payload(page.getEntries().get(0)));
+    assertEquals("26", payload(page.getEntries().get(1)));
+    assertEquals("28", payload(page.getEntries().get(2)));
+    page.getEntries().forEach(entry -> assertEquals("a", entry.getRepositoryId()));
+    assertNull(page.getNext());
+  }
+
+  @Test
+  void pageWithCursor() throws IOException {
+    journal = open(START);
+    for (int i = 0; i < 30; i++) {
+      write(START + i * TimeUnit.HOURS.toMillis(2), "a", i);
+    }
+
+    List<String> payloads = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      JournalPage page = journal.query("a", START, START + 10 * DAY, cursor, 7);
+      page.getEntries().forEach(entry -> payloads.add(payload(entry)));
+      cursor = page.getNext();
+      pages++;
+    } while (cursor != null);
+
+    assertEquals(30, payloads.size());
+    assertEquals("0", payloads.get(0));
+    assertEquals("29", payloads.get(29));
+    assertTrue(pages >= 5);
+  }
+
+  @Test
+  void findAllRepositories() throws IOException {
+    journal = open(START);
+    write(START, "a", 1);
+    write(START + 1, "b", 2);
+
+    JournalPage page = journal.query(null, START, START + 1, null, 50);
+
+    assertEquals(2, page.getEntries().size());
+  }
+
+  @Test
+  void keepEventsInTimeOrder() throws IOException {
+    journal = open(START);
+    write(START + 10, "a", 1);
+    // an event which is written later but with an earlier time is journaled with the time of the previous event
+    write(START + 5, "a", 2);
+
+    JournalPage page = journal.query("a", START + 10, START + 10, null, 50);
+
+    assertEquals(2, page.getEntries().size());
+  }
+
+  @Test
+  void reopenJournal() throws IOException {
+    journal = open(START);
+    write(START, "a", 1);
+    journal.close();
+
+    journal = open(START);
+    write(START + 1, "a", 2);
+
+    JournalPage page = journal.query("a", START, START + DAY, null, 50);
+    assertEquals(2, page.getEntries().size());
+    assertTrue(page.getEntries().get(0).isDelivered());
+  }
+
+  @Test
+  void followEntriesOfRepositoryAfterReopen() throws IOException {
+    journal = open(START);
+    for (int i = 0; i < 10; i++) {
+      write(START + i, i % 3 == 0 ? "a" : "b", i);
+    }
+    journal.close();
+    journal = open(START);
+    write(START + 10, "a", 10);
+
+    JournalPage first = journal.query("a", START + 1, START + DAY, null, 2);
+    JournalPage second = journal.query("a", START + 1, START + DAY, first.getNext(), 2);
+
+    assertEquals("3", payload(first.getEntries().get(0)));
+    assertEquals("6", payload(first.getEntries().get(1)));
+    assertEquals(2, second.getEntries().size());
+    assertEquals("9", payload(second.getEntries().get(0)));
+    assertEquals("10", payload(second.getEntries().get(1)));
+  }
+
+  @Test
+  void queryReopenedJournalWithoutAppending() throws IOException {
+    journal = open(START);
+    write(START, "a", 1);
+    journal.close();
+
+    journal = new DeliveryJournal(directory, null, Clock.fixed(Instant.ofEpochMilli(START), ZoneOffset.UTC));
+
+    JournalPage page = journal.query("a", START, START + DAY, null, 50);
+    assertEquals(1, page.getEntries().size());
+    assertEquals("1", payload(page.getEntries().get(0)));
+  }
+
+  @Test
+  void deleteAndCompactExpiredEvents() throws IOException {
+    journal = open(START + 3 * DAY + DAY / 2);
+    for (int i = 0; i < 4 * 24; i++) {
+      write(START + i * TimeUnit.HOURS.toMillis(1), "a", i);
+    }
+
+    journal.maintain(2);
+
+    JournalPage page = journal.query("a", 0, START + 4 * DAY, null, 500);
+    assertEquals(60, page.getEntries().size());
+    assertEquals(START + DAY + DAY / 2, page.getEntries().get(0).getTime());
+    assertFalse(new File(directory, "20240116.journal").exists());
+    assertTrue(new File(directory, "20240117.journal").exists());
+  }
+
+  @Test
+  void rejectInvalidCursor() throws IOException {
+    journal = open(START);
+
+    assertThrows(IllegalArgumentException.class, () -> journal.query("a", START, START + DAY, "invalid", 50));
+  }
+
+  @Test
+  void growIndex() throws IOException {
+    journal = open(START);
+    for (int i = 0; i < 10_000; i++) {
+      write(START + i, "repository-" + (i % 10), i);
+    }
+
+    JournalPage page = journal.query("repository-3", START, START + DAY, null, 500);
+
+    assertEquals(500, page.getEntries().size());
+    assertNotNull(page.getNext());
+    assertEquals("3", payload(page.getEntries().get(0)));
+  }
+
+  private DeliveryJournal open(long now) throws IOException {
+    DeliveryJournal opened = new DeliveryJournal(directory, null, Clock.fixed(Instant.ofEpochMilli(now), ZoneOffset.UTC));
+    opened.open();
+    return opened;
+  }
+
+  private void write(long time, String repositoryId, int payload) {
+    journal.write(new DeliveryJournal.Append(time, repositoryId, true, String.valueOf(payload).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private String payload(JournalEntry entry) {
+    return new String(entry.getPayload(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MetricsBufferTest {
+
+  private final MetricsBuffer buffer = new MetricsBuffer(4);
+
+  @Test
+  void appendNumbers() {
+    buffer.append(0L).append(' ').append(42L).append(' ').append(-7L).append(' ').append(Long.MAX_VALUE);
+
+    assertEquals("0 42 -7 9223372036854775807", text());
+  }
+
+  @Test
+  void appendDecimals() {
+    buffer.appendDecimal(5, 3).append(' ')
+      .appendDecimal(2_500, 3).append(' ')
+      .appendDecimal(10_000, 3).append(' ')
+      .appendDecimal(1_234_567_890L, 9).append(' ')
+      .appendDecimal(50_000, 9).append(' ')
+      .appendDecimal(0, 9);
+
+    assertEquals("0.005 2.5 10 1.23456789 0.00005 0", text());
+  }
+
+  @Test
+  void escapeLabelValues() {
+    buffer.appendLabelValue("a\"b\\c\nd");
+
+    assertEquals("a\\\"b\\\\c\\nd", text());
+  }
+
+  @Test
+  void encodeUtf8() {
+    buffer.appendLabelValue("http://m\u00fcller.example/\u20ac/\ud83d\ude00");
+
+    assertEquals("http://m\u00fcller.example/\u20ac/\ud83d\ude00", text());
+  }
+
+  @Test
+  void reuseBuffer() {
+    buffer.append("first scrape");
+    buffer.reset();
+    buffer.append("second");
+
+    assertEquals("second", text());
+  }
+
+  private String text() {
+    return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
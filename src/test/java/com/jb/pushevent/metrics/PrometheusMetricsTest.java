@@ -0,0 +1,126 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.metrics;
+
+import com.jb.pushevent.CommitCache;
+import com.jb.pushevent.config.DegradationMode;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.delivery.EventQueue;
+import com.jb.pushevent.sampling.EventSampler;
+import com.jb.pushevent.stats.DegradationStatistics;
+import com.jb.pushevent.stats.DeliveryStatistics;
+import com.jb.pushevent.stats.PipelineStage;
+import com.jb.pushevent.stats.StageLatencies;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PrometheusMetricsTest {
+
+  @Mock
+  private EventQueue queue;
+  @Mock
+  private EventDispatcher dispatcher;
+  @Mock
+  private EventSampler eventSampler;
+
+  private final DeliveryStatistics deliveryStatistics = new DeliveryStatistics();
+  private final DegradationStatistics degradationStatistics = new DegradationStatistics();
+  private final StageLatencies stageLatencies = new StageLatencies();
+
+  private PrometheusMetrics metrics;
+
+  @BeforeEach
+  void setUp() {
+    when(queue.getQueuedEvents()).thenReturn(3);
+    when(queue.getQueuedBytes()).thenReturn(1024L);
+    when(dispatcher.getInFlight()).thenReturn(2);
+    when(eventSampler.getSampledOut()).thenReturn(5L);
+    metrics = new PrometheusMetrics(queue, dispatcher, deliveryStatistics, degradationStatistics, stageLatencies, new CommitCache(), eventSampler);
+  }
+
+  @Test
+  void renderGaugesAndCounters() {
+    degradationStatistics.record(null);
+    degradationStatistics.record(DegradationMode.SUMMARIZE);
+
+    String text = scrape();
+
+    assertTrue(text.contains("# TYPE scm_pushevent_queued_events gauge\nscm_pushevent_queued_events 3\n"));
+    assertTrue(text.contains("scm_pushevent_queued_bytes 1024\n"));
+    assertTrue(text.contains("scm_pushevent_in_flight_requests 2\n"));
+    assertTrue(text.contains("scm_pushevent_pushes_total{degradation=\"WITHIN_BUDGET\"} 1\n"));
+    assertTrue(text.contains("scm_pushevent_pushes_total{degradation=\"SUMMARIZE\"} 1\n"));
+    assertTrue(text.contains("scm_pushevent_sampled_out_pushes_total 5\n"));
+  }
+
+  @Test
+  void renderDeliveryHistogram() {
+    deliveryStatistics.recordSuccess("http://localhost:8088/", 7);
+    deliveryStatistics.recordSuccess("http://localhost:8088/", 300);
+    deliveryStatistics.recordFailure("http://localhost:8088/", 20_000, "timeout");
+
+    String text = scrape();
+
+    String endpoint = "endpoint=\"http://localhost:8088/\"";
+    assertTrue(text.contains("scm_pushevent_delivered_events_total{" + endpoint + "} 2\n"));
+    assertTrue(text.contains("scm_pushevent_failed_deliveries_total{" + endpoint + "} 1\n"));
+    assertTrue(text.contains("# TYPE scm_pushevent_delivery_duration_seconds histogram\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_bucket{" + endpoint + ",le=\"0.005\"} 0\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_bucket{" + endpoint + ",le=\"0.01\"} 1\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_bucket{" + endpoint + ",le=\"0.5\"} 2\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_bucket{" + endpoint + ",le=\"10\"} 2\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_bucket{" + endpoint + ",le=\"+Inf\"} 3\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_sum{" + endpoint + "} 20.307\n"));
+    assertTrue(text.contains("scm_pushevent_delivery_duration_seconds_count{" + endpoint + "} 3\n"));
+  }
+
+  @Test
+  void renderStageHistograms() {
+    stageLatencies.record(PipelineStage.HTTP, stageLatencies.start());
+
+    String text = scrape();
+
+    assertTrue(text.contains("scm_pushevent_stage_duration_seconds_count{stage=\"http\"} 1\n"));
+    assertTrue(text.contains("scm_pushevent_stage_duration_seconds_count{stage=\"serialization\"} 0\n"));
+  }
+
+  @Test
+  void renderSameMetricsOnEveryScrape() {
+    assertEquals(scrape(), scrape());
+  }
+
+  private String scrape() {
+    return new String(metrics.scrape(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.pathcollect;
+
+import com.jb.pushevent.dto.FileChanges;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetFileChangesTest {
+
+  private NetFileChanges netFileChanges;
+
+  @BeforeEach
+  void setUp() {
+    netFileChanges = new NetFileChanges();
+  }
+
+  @Test
+  void addedAndRemovedCancelOut() {
+    netFileChanges.add("a.txt");
+    netFileChanges.modify("a.txt");
+    netFileChanges.remove("a.txt");
+
+    FileChanges fileChanges = netFileChanges.toFileChanges();
+    assertTrue(fileChanges.getAdded().isEmpty());
+    assertTrue(fileChanges.getRemoved().isEmpty());
+    assertTrue(fileChanges.getModified().isEmpty());
+  }
+
+  @Test
+  void addedAndModifiedStaysAdded() {
+    netFileChanges.add("a.txt");
+    netFileChanges.modify("a.txt");
+
+    FileChanges fileChanges = netFileChanges.toFileChanges();
+    assertTrue(fileChanges.getAdded().contains("a.txt"));
+    assertTrue(fileChanges.getModified().isEmpty());
+  }
+
+  @Test
+  void removedAndAddedIsModified() {
+    netFileChanges.remove("a.txt");
+    netFileChanges.add("a.txt");
+
+    FileChanges fileChanges = netFileChanges.toFileChanges();
+    assertTrue(fileChanges.getModified().contains("a.txt"));
+    assertTrue(fileChanges.getRemoved().isEmpty());
+  }
+
+  @Test
+  void renameChainIsCollapsed() {
+    netFileChanges.rename("a.txt", "b.txt");
+    netFileChanges.rename("b.txt", "c.txt");
+
+    FileChanges fileChanges = netFileChanges.toFileChanges();
+    assertEquals(1, fileChanges.getMoved().size());
+    assertTrue(fileChanges.getMoved().contains("a.txt --> c.txt"));
+  }
+
+  @Test
+  void renameOfAddedFileIsAddition() {
+    netFileChanges.add("a.txt");
+    netFileChanges.rename("a.txt", "b.txt");
+
+    FileChanges fileChanges = netFileChanges.toFileChanges();
+    assertTrue(fileChanges.getAdded().contains("b.txt"));
+    assertEquals(1, fileChanges.getAdded().size());
+    assertTrue(fileChanges.getMoved().isEmpty());
+  }
+
+  @Test
+  void removalOfMovedFileRemovesOrigin() {
+    netFileChanges.rename("a.txt", "b.txt");
+    netFileChanges.remove("b.txt");
+
+    FileChanges fileChanges = netFileChanges.toFileChanges();
+    assertTrue(fileChanges.getMoved().isEmpty());
+    assertTrue(fileChanges.getRemoved().contains("a.txt"));
+  }
+}
@@ -23,6 +23,7 @@
  */
 package com.jb.pushevent.pathcollect;
 
+import com.jb.pushevent.config.RenameDetection;
 import com.jb.pushevent.dto.FileChanges;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -33,13 +34,17 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import sonia.scm.repository.Changeset;
+import sonia.scm.repository.Copied;
 import sonia.scm.repository.Modifications;
 import sonia.scm.repository.Person;
+import sonia.scm.repository.Renamed;
 import sonia.scm.repository.Repository;
 import sonia.scm.repository.api.ModificationsCommandBuilder;
 import sonia.scm.repository.api.RepositoryService;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -102,6 +107,53 @@ class PathCollectorTest {
 
   }
 
+  private FileChanges collectRenameAndCopy() throws IOException {
+    Renamed renamed = Mockito.mock(Renamed.class);
+    when(renamed.getOldPath()).thenReturn("old.txt");
+    when(renamed.getNewPath()).thenReturn("new.txt");
+    Copied copied = Mockito.mock(Copied.class);
+    when(copied.getSourcePath()).thenReturn("source.txt");
+    when(copied.getTargetPath()).thenReturn("target.txt");
+
+    Modifications modifications = Mockito.mock(Modifications.class);
+    when(modifications.getRenamed()).thenReturn(Collections.singletonList(renamed));
+    when(modifications.getCopied()).thenReturn(Collections.singletonList(copied));
+    when(modificationsCommandBuilder.getModifications()).thenReturn(modifications);
+
+    return pathCollector.collectAll(Collections.singletonList(new Changeset("id1", 20L, new Person(), "rename")));
+  }
+
+  @Test
+  void reportRenamesAndCopies() throws IOException {
+    FileChanges f = collectRenameAndCopy();
+
+    Assertions.assertEquals(Collections.singleton("old.txt --> new.txt"), f.getMoved());
+    Assertions.assertEquals(Collections.singleton("source.txt --> target.txt"), f.getCopied());
+  }
+
+  @Test
+  void reportRenamesAsAdditionsAndRemovalsWithoutDetection() throws IOException {
+    pathCollector.setRenameDetection(RenameDetection.OFF);
+
+    FileChanges f = collectRenameAndCopy();
+
+    Assertions.assertTrue(f.getMoved().isEmpty());
+    Assertions.assertTrue(f.getCopied().isEmpty());
+    Assertions.assertEquals(Collections.singleton("old.txt"), f.getRemoved());
+    Assertions.assertEquals(new HashSet<>(Arrays.asList("new.txt", "target.txt")), f.getAdded());
+  }
+
+  @Test
+  void reportCopiesAsAdditionsWithRenamesOnly() throws IOException {
+    pathCollector.setRenameDetection(RenameDetection.RENAMES);
+
+    FileChanges f = collectRenameAndCopy();
+
+    Assertions.assertEquals(Collections.singleton("old.txt --> new.txt"), f.getMoved());
+    Assertions.assertTrue(f.getCopied().isEmpty());
+    Assertions.assertEquals(Collections.singleton("target.txt"), f.getAdded());
+  }
+
   @AfterEach
   void close() {
     pathCollector.close();
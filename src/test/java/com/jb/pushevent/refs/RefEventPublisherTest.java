@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.refs;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.dto.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+import sonia.scm.repository.Tag;
+import sonia.scm.repository.api.HookBranchProvider;
+import sonia.scm.repository.api.HookContext;
+import sonia.scm.repository.api.HookFeature;
+import sonia.scm.repository.api.HookTagProvider;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RefEventPublisherTest {
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heart-of-gold");
+  private final PushEventConfiguration configuration = new PushEventConfiguration("http://localhost:8088/", "token", true);
+
+  @Mock
+  private EventDispatcher dispatcher;
+  @Mock
+  private HookContext context;
+  @Mock
+  private HookBranchProvider branchProvider;
+  @Mock
+  private HookTagProvider tagProvider;
+
+  private RefEventPublisher publisher;
+
+  @BeforeEach
+  void setUp() {
+    publisher = new RefEventPublisher(dispatcher);
+  }
+
+  private void mockBranchProvider() {
+    when(context.isFeatureSupported(HookFeature.BRANCH_PROVIDER)).thenReturn(true);
+    when(context.getBranchProvider()).thenReturn(branchProvider);
+  }
+
+  private void mockTagProvider() {
+    when(context.isFeatureSupported(HookFeature.TAG_PROVIDER)).thenReturn(true);
+    when(context.getTagProvider()).thenReturn(tagProvider);
+  }
+
+  @Test
+  void detectRefOnlyPush() {
+    mockBranchProvider();
+    when(branchProvider.getCreatedOrModified()).thenReturn(Collections.emptyList());
+
+    assertTrue(RefEventPublisher.isRefOnly(context));
+  }
+
+  @Test
+  void detectPushWithModifiedBranches() {
+    mockBranchProvider();
+    when(branchProvider.getCreatedOrModified()).thenReturn(Collections.singletonList("main"));
+
+    assertFalse(RefEventPublisher.isRefOnly(context));
+  }
+
+  @Test
+  void notDetectRefOnlyPushWithoutBranchProvider() {
+    when(context.isFeatureSupported(HookFeature.BRANCH_PROVIDER)).thenReturn(false);
+
+    assertFalse(RefEventPublisher.isRefOnly(context));
+  }
+
+  @Test
+  void publishDeletedBranchesAndTags() throws IOException {
+    mockBranchProvider();
+    mockTagProvider();
+    Tag created = mock(Tag.class);
+    when(created.getName()).thenReturn("1.0.0");
+    when(created.getRevision()).thenReturn("abc");
+    when(branchProvider.getDeletedOrClosed()).thenReturn(Collections.singletonList("feature/old"));
+    when(tagProvider.getCreatedTags()).thenReturn(Collections.singletonList(created));
+    when(tagProvider.getDeletedTags()).thenReturn(Collections.emptyList());
+    when(dispatcher.dispatch(eq("42"), any(), eq(configuration))).thenReturn(true);
+
+    int sent = publisher.publishRefChanges(repository, context, () -> "trillian", configuration);
+
+    assertEquals(2, sent);
+    List<Event> events = captureEvents(2);
+    assertEquals("branch_deleted", events.get(0).getType());
+    assertEquals("feature/old", data(events.get(0)).get("branch").asText());
+    assertEquals("trillian", data(events.get(0)).get("user").asText());
+    assertEquals("tag_created", events.get(1).getType());
+    assertEquals("1.0.0", data(events.get(1)).get("tag").asText());
+    assertEquals("abc", data(events.get(1)).get("revision").asText());
+  }
+
+  @Test
+  void notResolveUserWithoutChanges() {
+    mockBranchProvider();
+    mockTagProvider();
+    when(branchProvider.getDeletedOrClosed()).thenReturn(Collections.emptyList());
+    when(tagProvider.getCreatedTags()).thenReturn(Collections.emptyList());
+    when(tagProvider.getDeletedTags()).thenReturn(Collections.emptyList());
+
+    int sent = publisher.publishRefChanges(repository, context, () -> {
+      throw new AssertionError("user should not be resolved");
+    }, configuration);
+
+    assertEquals(0, sent);
+  }
+
+  @Test
+  void publishUpdatedBranches() throws IOException {
+    mockBranchProvider();
+    when(branchProvider.getCreatedOrModified()).thenReturn(Arrays.asList("main", "develop"));
+    when(dispatcher.dispatch(eq("42"), any(), eq(configuration))).thenReturn(true);
+
+    int sent = publisher.publishUpdatedBranches(repository, context, () -> null, configuration);
+
+    assertEquals(2, sent);
+    List<Event> events = captureEvents(2);
+    assertEquals("branch_updated", events.get(0).getType());
+    assertEquals("develop", data(events.get(1)).get("branch").asText());
+    assertFalse(data(events.get(1)).has("user"));
+  }
+
+  @Test
+  void notPublishUpdatedBranchesWithoutBranchProvider() throws IOException {
+    when(context.isFeatureSupported(HookFeature.BRANCH_PROVIDER)).thenReturn(false);
+
+    assertEquals(0, publisher.publishUpdatedBranches(repository, context, () -> null, configuration));
+    verify(dispatcher, never()).dispatch(any(), any(), any());
+  }
+
+  private List<Event> captureEvents(int count) throws IOException {
+    ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+    verify(dispatcher, times(count)).dispatch(eq("42"), captor.capture(), eq(configuration));
+    return captor.getAllValues();
+  }
+
+  private static JsonNode data(Event event) {
+    return event.toJsonNode().get("data");
+  }
+}
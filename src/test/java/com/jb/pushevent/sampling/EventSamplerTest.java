@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.sampling;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.config.PushEventConfigurationResolver;
+import com.jb.pushevent.config.PushEventConfigurationStore;
+import com.jb.pushevent.config.SamplingRule;
+import com.jb.pushevent.delivery.EventDispatcher;
+import com.jb.pushevent.dto.Event;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Repository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class EventSamplerTest {
+
+  private final Repository repository = new Repository("42", "git", "hitchhiker", "heart-of-gold");
+  private final PushEventConfiguration configuration = new PushEventConfiguration("http://localhost:8088/", "token", true);
+  private final AtomicLong clock = new AtomicLong(1_600_000_020_000L);
+
+  @Mock
+  private EventDispatcher dispatcher;
+  @Mock
+  private PushEventConfigurationStore configurationStore;
+  @Mock
+  private PushEventConfigurationResolver configurationResolver;
+
+  private double random = 0.0;
+  private EventSampler sampler;
+
+  @BeforeEach
+  void setUp() {
+    sampler = new EventSampler(dispatcher, configurationStore, configurationResolver, clock::get, () -> random);
+  }
+
+  @Test
+  void matchGlobPatterns() {
+    Pattern segment = SamplingRules.compile("hitchhiker/*");
+    assertTrue(segment.matcher("hitchhiker/heart-of-gold").matches());
+    assertFalse(segment.matcher("hitchhiker/heart/gold").matches());
+
+    Pattern any = SamplingRules.compile("**-gold");
+    assertTrue(any.matcher("hitchhiker/heart/of-gold").matches());
+
+    Pattern single = SamplingRules.compile("hitchhiker/b?t");
+    assertTrue(single.matcher("hitchhiker/bot").matches());
+    assertFalse(single.matcher("hitchhiker/boot").matches());
+
+    Pattern literal = SamplingRules.compile("a.b/c+d");
+    assertTrue(literal.matcher("a.b/c+d").matches());
+    assertFalse(literal.matcher("axb/cd").matches());
+  }
+
+  @Test
+  void acceptWithoutMatchingRule() {
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("other/*", 0.0, 0)));
+
+    assertTrue(sampler.accept(repository, configuration));
+  }
+
+  @Test
+  void applyFirstMatchingRule() {
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("hitchhiker/*", 1.0, 0), new SamplingRule("**", 0.0, 0)));
+
+    assertTrue(sampler.accept(repository, configuration));
+  }
+
+  @Test
+  void sampleOutByRate() {
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("hitchhiker/*", 0.25, 0)));
+
+    random = 0.1;
+    assertTrue(sampler.accept(repository, configuration));
+    random = 0.5;
+    assertFalse(sampler.accept(repository, configuration));
+  }
+
+  @Test
+  void limitEventsPerInterval() {
+    configuration.setSamplingIntervalSeconds(60);
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("hitchhiker/*", 1.0, 2)));
+
+    assertTrue(sampler.accept(repository, configuration));
+    assertTrue(sampler.accept(repository, configuration));
+    assertFalse(sampler.accept(repository, configuration));
+
+    clock.addAndGet(60_000);
+    assertTrue(sampler.accept(repository, configuration));
+  }
+
+  @Test
+  void sendSummaryOfDroppedEvents() throws IOException {
+    when(configurationResolver.resolve("42")).thenReturn(configuration);
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("hitchhiker/*", 0.5, 1)));
+
+    random = 0.9;
+    sampler.accept(repository, configuration);
+    random = 0.1;
+    sampler.accept(repository, configuration);
+    sampler.accept(repository, configuration);
+    clock.addAndGet(10_000);
+    sampler.summarize();
+
+    ArgumentCaptor<Event> event = ArgumentCaptor.forClass(Event.class);
+    verify(dispatcher).dispatch(eq("42"), event.capture(), eq(configuration));
+    assertEquals(EventSampler.SUMMARY_TYPE, event.getValue().getType());
+    JsonNode data = event.getValue().toJsonNode().get("data");
+    assertEquals(3, data.get("received").asLong());
+    assertEquals(1, data.get("sent").asLong());
+    assertEquals(1, data.get("sampledOut").asLong());
+    assertEquals(1, data.get("rateLimited").asLong());
+  }
+
+  @Test
+  void sendNoSummaryWithoutDroppedEvents() throws IOException {
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("hitchhiker/*", 1.0, 0)));
+
+    sampler.accept(repository, configuration);
+    sampler.summarize();
+
+    verify(dispatcher, never()).dispatch(any(), any(), any());
+  }
+
+  @Test
+  void countEveryDroppedEventWhileSummarizing() throws Exception {
+    when(configurationResolver.resolve("42")).thenReturn(configuration);
+    configuration.setSamplingRules(Arrays.asList(new SamplingRule("hitchhiker/*", 0.5, 0)));
+    sampler = new EventSampler(dispatcher, configurationStore, configurationResolver, clock::get, () -> ThreadLocalRandom.current().nextDouble());
+
+    ExecutorService pushes = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      futures.add(pushes.submit(() -> {
+        for (int j = 0; j < 10_000; j++) {
+          sampler.accept(repository, configuration);
+        }
+      }));
+    }
+    while (futures.stream().anyMatch(future -> !future.isDone())) {
+      sampler.summarize();
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pushes.shutdown();
+    sampler.summarize();
+
+    ArgumentCaptor<Event> events = ArgumentCaptor.forClass(Event.class);
+    verify(dispatcher, atLeastOnce()).dispatch(eq("42"), events.capture(), eq(configuration));
+    long sampledOut = 0;
+    for (Event event : events.getAllValues()) {
+      JsonNode data = event.toJsonNode().get("data");
+      assertTrue(data.get("sent").asLong() >= 0);
+      sampledOut += data.get("sampledOut").asLong();
+    }
+    assertTrue(sampler.getSampledOut() > 0);
+    assertEquals(sampler.getSampledOut(), sampledOut);
+  }
+}
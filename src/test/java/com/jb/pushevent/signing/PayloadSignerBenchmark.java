@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.signing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of the signature for large payloads, compared with copying the payload once, which is the
+ * least work the http client does with the body.
+ * <p>
+ * Run with {@code gradle test -Dpushevent.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "pushevent.benchmark", matches = "true")
+class PayloadSignerBenchmark {
+
+  private static final int[] SIZES = {1 << 20, 4 << 20, 16 << 20};
+  private static final int WARMUP = 20;
+  private static final int ITERATIONS = 100;
+
+  @Test
+  void measureSigningOverhead() {
+    PayloadSigner signer = new PayloadSigner("secret");
+    for (int size : SIZES) {
+      byte[] payload = new byte[size];
+      new Random(42).nextBytes(payload);
+
+      for (int i = 0; i < WARMUP; i++) {
+        signer.sign(i, payload);
+        payload.clone();
+      }
+
+      long start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        payload.clone();
+      }
+      long copied = System.nanoTime() - start;
+
+      start = System.nanoTime();
+      for (int i = 0; i < ITERATIONS; i++) {
+        signer.sign(i, payload);
+      }
+      long signed = System.nanoTime() - start;
+
+      double megabytes = (double) size * ITERATIONS / (1 << 20);
+      System.out.printf("%2d MB payload: copy %5d ms, signature %5d ms (%.0f MB/s)%n", size >> 20,
+        TimeUnit.NANOSECONDS.toMillis(copied), TimeUnit.NANOSECONDS.toMillis(signed),
+        megabytes / (signed / 1e9));
+    }
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.signing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class PayloadSignerTest {
+
+  private static final byte[] PAYLOAD = "{\"id\":\"42\"}".getBytes(StandardCharsets.UTF_8);
+  private static final String SIGNATURE = "sha256=54de5a59760dbe7604f8672d9319890c5173a9723af81214347fc9d2b81153df";
+
+  @Test
+  void signTimestampAndPayload() {
+    PayloadSigner signer = new PayloadSigner("secret");
+
+    assertEquals(SIGNATURE, signer.sign(1_600_000_000L, PAYLOAD));
+  }
+
+  @Test
+  void reuseMac() {
+    PayloadSigner signer = new PayloadSigner("secret");
+
+    signer.sign(1_600_000_001L, "other".getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(SIGNATURE, signer.sign(1_600_000_000L, PAYLOAD));
+  }
+
+  @Test
+  void signTimestamp() {
+    PayloadSigner signer = new PayloadSigner("secret");
+
+    assertNotEquals(SIGNATURE, signer.sign(1_600_000_001L, PAYLOAD));
+  }
+
+  @Test
+  void notSignWithoutSecret() {
+    assertNull(PayloadSigner.of(null));
+    assertNull(PayloadSigner.of(""));
+    assertNotNull(PayloadSigner.of("secret"));
+  }
+
+  @Test
+  void signConcurrently() throws InterruptedException, ExecutionException {
+    PayloadSigner signer = new PayloadSigner("secret");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<String>> signatures = new ArrayList<>();
+      for (int i = 0; i < 200; i++) {
+        signatures.add(executor.submit(() -> signer.sign(1_600_000_000L, PAYLOAD)));
+      }
+      for (Future<String> signature : signatures) {
+        assertEquals(SIGNATURE, signature.get());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
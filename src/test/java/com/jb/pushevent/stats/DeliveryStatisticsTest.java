@@ -0,0 +1,216 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeliveryStatisticsTest {
+
+  private static final String URL = "http://localhost:8088/";
+
+  private MutableClock clock;
+  private DeliveryStatistics statistics;
+
+  @BeforeEach
+  void setUp() {
+    clock = new MutableClock(1_600_000_000_000L);
+    statistics = new DeliveryStatistics(clock);
+  }
+
+  private EndpointStatistics endpoint() {
+    return statistics.getEndpoints().iterator().next();
+  }
+
+  @Test
+  void countDeliveriesWithinWindows() {
+    statistics.recordSuccess(URL, 10);
+    clock.advance(2 * 60_000);
+    statistics.recordSuccess(URL, 10);
+    statistics.recordFailure(URL, 10, "down");
+
+    EndpointStatistics endpoint = endpoint();
+    assertEquals(2, endpoint.getDelivered());
+    assertEquals(1, endpoint.getFailed());
+    assertEquals(1, endpoint.getDelivered(60, clock.millis()));
+    assertEquals(2, endpoint.getDelivered(5 * 60, clock.millis()));
+    assertEquals(1, endpoint.getFailed(60, clock.millis()));
+
+    clock.advance(16 * 60_000);
+    assertEquals(0, endpoint.getDelivered(15 * 60, clock.millis()));
+    assertEquals(2, endpoint.getDelivered());
+  }
+
+  @Test
+  void calculateLatencyPercentiles() {
+    for (int i = 1; i <= 100; i++) {
+      statistics.recordSuccess(URL, i);
+    }
+
+    EndpointStatistics.LatencyPercentiles latency = endpoint().getLatency(clock.millis());
+    assertEquals(100, latency.getCount());
+    assertEquals(100, latency.getMax());
+    assertWithinPrecision(50, latency.getP50());
+    assertWithinPrecision(95, latency.getP95());
+    assertWithinPrecision(99, latency.getP99());
+  }
+
+  @Test
+  void forgetOutdatedLatencies() {
+    statistics.recordSuccess(URL, 1000);
+    clock.advance(6 * 60_000);
+    statistics.recordSuccess(URL, 10);
+
+    EndpointStatistics.LatencyPercentiles latency = endpoint().getLatency(clock.millis());
+    assertEquals(1, latency.getCount());
+    assertEquals(10, latency.getMax());
+  }
+
+  @Test
+  void keepLastError() {
+    statistics.recordSuccess(URL, 10);
+    assertNull(endpoint().getLastError());
+
+    statistics.recordFailure(URL, 10, "first");
+    clock.advance(1000);
+    statistics.recordFailure(URL, 10, "second");
+
+    EndpointStatistics.LastError lastError = endpoint().getLastError();
+    assertEquals("second", lastError.getMessage());
+    assertEquals(clock.millis(), lastError.getTime());
+  }
+
+  @Test
+  void separateEndpoints() {
+    statistics.recordSuccess(URL, 10);
+    statistics.recordSuccess("http://other/", 10);
+
+    assertEquals(2, statistics.getEndpoints().size());
+  }
+
+  @Test
+  void aggregateDeliveriesPerMinute() {
+    long start = startOfNextMinute();
+    statistics.recordSuccess(URL, 10);
+    statistics.recordSuccess("http://other/", 30);
+    statistics.recordQueuedEvents(5);
+    clock.advance(2 * 60_000);
+    statistics.recordFailure(URL, 20, "down");
+    statistics.recordQueuedEvents(2);
+
+    List<MinuteStatistics> history = statistics.getHistory(0);
+    assertEquals(15, history.size());
+    MinuteStatistics first = history.get(12);
+    assertEquals(start, first.getStart());
+    assertEquals(2, first.getDelivered());
+    assertEquals(0, first.getFailed());
+    assertEquals(5, first.getMaxQueuedEvents());
+    assertEquals(30, first.getLatencyMax());
+    assertEquals(0, history.get(13).getDelivered());
+    MinuteStatistics current = history.get(14);
+    assertEquals(1, current.getFailed());
+    assertEquals(2, current.getMaxQueuedEvents());
+    assertEquals(20, current.getLatencyP50());
+  }
+
+  @Test
+  void returnOnlyMinutesSince() {
+    long start = startOfNextMinute();
+    statistics.recordSuccess(URL, 10);
+    clock.advance(3 * 60_000 + 1000);
+    statistics.recordSuccess(URL, 10);
+
+    List<MinuteStatistics> history = statistics.getHistory(start + 2 * 60_000 + 500);
+    assertEquals(2, history.size());
+    assertEquals(0, history.get(0).getDelivered());
+    assertEquals(1, history.get(1).getDelivered());
+  }
+
+  @Test
+  void forgetOutdatedMinutes() {
+    statistics.recordSuccess(URL, 10);
+    clock.advance(15 * 60_000);
+    statistics.recordFailure(URL, 10, "down");
+
+    List<MinuteStatistics> history = statistics.getHistory(0);
+    long delivered = 0;
+    for (MinuteStatistics minute : history) {
+      delivered += minute.getDelivered();
+    }
+    assertEquals(0, delivered);
+    assertEquals(1, history.get(14).getFailed());
+  }
+
+  private long startOfNextMinute() {
+    clock.advance(60_000 - clock.millis() % 60_000);
+    return clock.millis();
+  }
+
+  private void assertWithinPrecision(long expected, long actual) {
+    assertTrue(actual >= expected && actual <= expected * 1.07, "expected about " + expected + " but was " + actual);
+  }
+
+  private static class MutableClock extends Clock {
+
+    private long millis;
+
+    MutableClock(long millis) {
+      this.millis = millis;
+    }
+
+    void advance(long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.stats;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StageLatenciesTest {
+
+  private final StageLatencies latencies = new StageLatencies();
+
+  @Test
+  void recordLatenciesPerStage() {
+    long start = latencies.start() - TimeUnit.MILLISECONDS.toNanos(2);
+    long end = latencies.record(PipelineStage.HTTP, start);
+    latencies.record(PipelineStage.SERIALIZATION, end);
+
+    EndpointStatistics.LatencyPercentiles http = latencies.getLatency(PipelineStage.HTTP);
+    assertEquals(1, http.getCount());
+    assertTrue(http.getMax() >= 2000, "latency is reported in microseconds");
+    assertTrue(http.getP50() <= http.getMax());
+    assertEquals(1, latencies.getLatency(PipelineStage.SERIALIZATION).getCount());
+    assertEquals(0, latencies.getLatency(PipelineStage.MODIFICATIONS).getCount());
+  }
+
+  @Test
+  void returnEndOfStageAsStartOfNextStage() {
+    long start = latencies.start();
+    long end = latencies.record(PipelineStage.CHANGESET_ITERATION, start);
+    assertTrue(end >= start);
+  }
+
+  @Test
+  void recordManyLatenciesQuickly() {
+    // warm up, so that the measurement is not dominated by the interpreter
+    for (int i = 0; i < 200_000; i++) {
+      latencies.record(PipelineStage.DTO_BUILD, latencies.start());
+    }
+    int count = 1_000_000;
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      latencies.record(PipelineStage.DTO_BUILD, start);
+    }
+    long nanosPerRecord = (System.nanoTime() - start) / count;
+    assertEquals(1_200_000, latencies.getLatency(PipelineStage.DTO_BUILD).getCount());
+    // generous bound for slow build machines, usually a few tens of nanoseconds
+    assertTrue(nanosPerRecord < 1000, "recording took " + nanosPerRecord + "ns");
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.template;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jb.pushevent.dto.Commit;
+import com.jb.pushevent.dto.Event;
+import com.jb.pushevent.dto.FileChanges;
+import com.jb.pushevent.dto.Push;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the rendering of a payload template, which reproduces the default payload, with the default serializer.
+ * <p>
+ * Run with {@code gradle test -Dpushevent.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "pushevent.benchmark", matches = "true")
+class PayloadTemplateBenchmark {
+
+  private static final int COMMITS = 100;
+  private static final int WARMUP = 2_000;
+  private static final int ITERATIONS = 10_000;
+
+  private static final String TEMPLATE = "{"
+    + "\"application\":\"${application}\",\"type\":\"${type}\",\"id\":\"${id}\",\"time\":\"${time}\","
+    + "\"data\":{\"repositoryId\":\"${data.repositoryId}\",\"repositoryName\":\"${data.repositoryName}\","
+    + "\"commits\":{\"$each\":\"data.commits\",\"$template\":{"
+    + "\"commitId\":\"${commitId}\",\"message\":\"${message}\",\"dateCommitted\":\"${dateCommitted}\","
+    + "\"author\":\"${author}\",\"branches\":\"${branches}\",\"fileChanges\":{"
+    + "\"added\":{\"$each\":\"fileChanges.added\",\"$template\":\"${@}\"},"
+    + "\"modified\":{\"$each\":\"fileChanges.modified\",\"$template\":\"${@}\"},"
+    + "\"removed\":{\"$each\":\"fileChanges.removed\",\"$template\":\"${@}\"}}}},"
+    + "\"datePushed\":\"${data.datePushed}\"}}";
+
+  @Test
+  void compareWithDefaultSerializer() throws IOException {
+    Event event = createEvent();
+    PayloadTemplate template = PayloadTemplate.compile(TEMPLATE);
+    assertEquals(event.toBytes().length, template.render(event.toJsonNode()).length, 100);
+
+    for (int i = 0; i < WARMUP; i++) {
+      event.toBytes();
+      template.render(event.toJsonNode());
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      event.toBytes();
+    }
+    long serializer = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    for (int i = 0; i < ITERATIONS; i++) {
+      template.render(event.toJsonNode());
+    }
+    long rendered = System.nanoTime() - start;
+
+    System.out.printf("default serializer: %d events in %d ms%n", ITERATIONS, TimeUnit.NANOSECONDS.toMillis(serializer));
+    System.out.printf("payload template:   %d events in %d ms (%.2fx)%n", ITERATIONS, TimeUnit.NANOSECONDS.toMillis(rendered), (double) rendered / serializer);
+  }
+
+  private Event createEvent() {
+    ObjectMapper mapper = new ObjectMapper();
+    Push push = new Push(mapper.createObjectNode());
+    push.setRepositoryId("repository");
+    push.setRepositoryName("hog");
+    for (int i = 0; i < COMMITS; i++) {
+      Commit commit = new Commit(mapper.createObjectNode());
+      commit.setCommitId("commit-" + i);
+      commit.setCommitMessage("message of commit " + i);
+      commit.setDateCommitted(1_600_000_000_000L + i);
+      commit.setAuthor("Trillian <trillian@hitchhiker.com>");
+      commit.setBranches(Collections.singletonList("main"));
+      FileChanges fileChanges = new FileChanges(mapper.createObjectNode());
+      fileChanges.setAdded(Collections.singleton("src/added-" + i + ".txt"));
+      fileChanges.setModified(new LinkedHashSet<>(Arrays.asList("src/a.txt", "src/b.txt", "README.md")));
+      fileChanges.setRemoved(Collections.singleton("src/removed-" + i + ".txt"));
+      commit.setFilesChanged(fileChanges);
+      push.addCommit(commit);
+    }
+    push.setDatePushed(1_600_000_000_000L + COMMITS);
+    return Event.forPush(push);
+  }
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.template;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PayloadTemplateTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private ObjectNode event;
+
+  @BeforeEach
+  void setUp() {
+    event = mapper.createObjectNode();
+    event.put("id", "event-1");
+    ObjectNode data = event.putObject("data");
+    data.put("repositoryId", "repo-1");
+    data.put("repositoryName", "hog");
+    data.put("commitCount", 2);
+    ArrayNode commits = data.putArray("commits");
+    ObjectNode first = commits.addObject();
+    first.put("commitId", "c1");
+    first.putArray("branches").add("main").add("develop");
+    ObjectNode second = commits.addObject();
+    second.put("commitId", "c2");
+    second.putArray("branches");
+  }
+
+  @Test
+  void renderConstants() throws IOException {
+    JsonNode result = render("{\"source\":\"scm\",\"version\":2,\"tags\":[\"a\",true]}");
+
+    assertEquals("{\"source\":\"scm\",\"version\":2,\"tags\":[\"a\",true]}", result.toString());
+  }
+
+  @Test
+  void renderReferenceWithType() throws IOException {
+    JsonNode result = render("{\"repo\":\"${data.repositoryId}\",\"count\":\"${data.commitCount}\",\"missing\":\"${data.user}\"}");
+
+    assertEquals("repo-1", result.get("repo").asText());
+    assertTrue(result.get("count").isInt());
+    assertEquals(2, result.get("count").asInt());
+    assertTrue(result.get("missing").isNull());
+  }
+
+  @Test
+  void renderInterpolation() throws IOException {
+    JsonNode result = render("{\"text\":\"${data.commitCount} commits to ${data.repositoryName}${data.user}\"}");
+
+    assertEquals("2 commits to hog", result.get("text").asText());
+  }
+
+  @Test
+  void renderLoop() throws IOException {
+    JsonNode result = render("{\"commits\":{\"$each\":\"data.commits\",\"$template\":{\"id\":\"${commitId}\",\"event\":\"${$.id}\",\"branches\":{\"$each\":\"branches\",\"$template\":\"${@}\"}}}}");
+
+    JsonNode commits = result.get("commits");
+    assertEquals(2, commits.size());
+    assertEquals("c1", commits.get(0).get("id").asText());
+    assertEquals("event-1", commits.get(0).get("event").asText());
+    assertEquals("[\"main\",\"develop\"]", commits.get(0).get("branches").toString());
+    assertEquals("c2", commits.get(1).get("id").asText());
+    assertEquals(0, commits.get(1).get("branches").size());
+  }
+
+  @Test
+  void renderCopiesContainers() throws IOException {
+    JsonNode result = render("[\"${data.commits}\"]");
+
+    assertEquals(event.get("data").get("commits"), result.get(0));
+  }
+
+  @Test
+  void failOnInvalidTemplates() {
+    assertThrows(PayloadTemplateException.class, () -> PayloadTemplate.compile("{\"a\":"));
+    assertThrows(PayloadTemplateException.class, () -> PayloadTemplate.compile("{\"a\":\"${data\"}"));
+    assertThrows(PayloadTemplateException.class, () -> PayloadTemplate.compile("{\"a\":\"${}\"}"));
+    assertThrows(PayloadTemplateException.class, () -> PayloadTemplate.compile("{\"$each\":\"data.commits\"}"));
+  }
+
+  @Test
+  void cacheCompiledTemplate() {
+    PayloadTemplates templates = new PayloadTemplates();
+    String source = "{\"id\":\"${id}\"}";
+
+    templates.update(source);
+    PayloadTemplate template = templates.get(source);
+
+    assertSame(template, templates.get(source));
+    assertNull(templates.get(""));
+  }
+
+  private JsonNode render(String template) throws IOException {
+    return mapper.readTree(PayloadTemplate.compile(template).render(event));
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2020-present Cloudogu GmbH and Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.jb.pushevent.user;
+
+import com.jb.pushevent.CommitCache;
+import com.jb.pushevent.config.PushEventConfiguration;
+import com.jb.pushevent.dto.Commit;
+import com.jb.pushevent.dto.PreserializedNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import sonia.scm.repository.Person;
+import sonia.scm.user.User;
+import sonia.scm.user.UserEvent;
+import sonia.scm.user.UserManager;
+import sonia.scm.web.security.AdministrationContext;
+import sonia.scm.web.security.PrivilegedAction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AuthorResolverTest {
+
+  private final List<User> users = new ArrayList<>();
+
+  @Mock
+  private UserManager userManager;
+
+  @Mock
+  private AdministrationContext administrationContext;
+
+  @Mock
+  private UserEvent userEvent;
+
+  private final CommitCache commitCache = new CommitCache();
+
+  private AuthorResolver resolver;
+
+  @BeforeEach
+  void setUp() {
+    users.add(new User("trillian", "Tricia McMillan", "tricia@hitchhiker.com"));
+    users.add(new User("dent", "Arthur Dent", "arthur@hitchhiker.com"));
+    resolver = new AuthorResolver(userManager, administrationContext, commitCache);
+  }
+
+  private void mockUsers() {
+    when(userManager.getAll()).thenReturn(users);
+    doAnswer(invocation -> {
+      ((PrivilegedAction) invocation.getArgument(0)).run();
+      return null;
+    }).when(administrationContext).runAsAdmin(any(PrivilegedAction.class));
+  }
+
+  @Test
+  void resolveByMail() {
+    mockUsers();
+    assertEquals("trillian", resolver.resolve(new Person("Trillian", "Tricia@Hitchhiker.com")));
+  }
+
+  @Test
+  void resolveByNameWithoutMail() {
+    mockUsers();
+    assertEquals("dent", resolver.resolve(new Person("Arthur Dent", null)));
+    assertEquals("dent", resolver.resolve(new Person("dent", "")));
+  }
+
+  @Test
+  void returnNullForUnknownAuthors() {
+    mockUsers();
+    assertNull(resolver.resolve(new Person("Zaphod", "zaphod@hitchhiker.com")));
+    assertNull(resolver.resolve(null));
+  }
+
+  @Test
+  void cacheResults() {
+    mockUsers();
+    for (int i = 0; i < 100; i++) {
+      resolver.resolve(new Person("Trillian", "tricia@hitchhiker.com"));
+      resolver.resolve(new Person("Zaphod", "zaphod@hitchhiker.com"));
+    }
+
+    verify(userManager, times(2)).getAll();
+  }
+
+  @Test
+  void clearCacheOnUserEvents() {
+    mockUsers();
+    Person zaphod = new Person("Zaphod", "zaphod@hitchhiker.com");
+    assertNull(resolver.resolve(zaphod));
+
+    User user = new User("zaphod", "Zaphod Beeblebrox", "zaphod@hitchhiker.com");
+    users.add(user);
+    resolver.onEvent(userEvent);
+
+    assertEquals("zaphod", resolver.resolve(zaphod));
+  }
+
+  @Test
+  void clearCommitCacheOnUserEvents() {
+    PushEventConfiguration configuration = new PushEventConfiguration("http://localhost:8088/", "token", true);
+    Commit commit = new Commit(new PreserializedNode());
+    commit.setCommitId("42");
+    commit.setAuthorUser("trillian");
+    commitCache.put("hog", commit, configuration);
+    assertNotNull(commitCache.get("hog", "42", configuration));
+
+    resolver.onEvent(userEvent);
+
+    assertNull(commitCache.get("hog", "42", configuration));
+  }
+}